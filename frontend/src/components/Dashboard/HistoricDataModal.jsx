@@ -14,9 +14,11 @@ const HistoricDataModal = ({ userId, fundId, title, onClose, fetchData }) => {
     totalInvested: true,
     thisMonthInvested: true,
     totalValueBenchmark: false,
-    totalValueNifty50: false,
-    totalValueNifty100: false,
   });
+
+  // Comparison benchmarks come from the data (comparison map keyed by benchmark name); all start hidden
+  const [comparisonVisibility, setComparisonVisibility] = useState({});
+  const comparisonColors = ['#8c564b', '#e377c2', '#17becf', '#bcbd22', '#7f7f7f', '#9467bd'];
   
   // Visibility toggles for Graph 2 (Profit Analysis)
   const [graph2Visibility, setGraph2Visibility] = useState({
@@ -86,6 +88,12 @@ const HistoricDataModal = ({ userId, fundId, title, onClose, fetchData }) => {
     setGraph1Visibility(prev => ({ ...prev, [series]: !prev[series] }));
   };
   
+  const toggleComparison = (name) => {
+    setComparisonVisibility(prev => ({ ...prev, [name]: !prev[name] }));
+  };
+
+  const comparisonNames = data.length > 0 ? Object.keys(data[data.length - 1]?.comparison || {}) : [];
+
   const toggleGraph2Series = (series) => {
     setGraph2Visibility(prev => ({ ...prev, [series]: !prev[series] }));
   };
@@ -157,12 +165,11 @@ const HistoricDataModal = ({ userId, fundId, title, onClose, fetchData }) => {
                   <button onClick={() => toggleGraph1Series('totalValueBenchmark')} className={`px-3 py-1.5 rounded-lg border transition-colors ${graph1Visibility.totalValueBenchmark ? 'bg-orange-100 border-orange-500 text-orange-700' : 'bg-gray-100 border-gray-300 text-gray-500'}`}>
                     Benchmark
                   </button>
-                  <button onClick={() => toggleGraph1Series('totalValueNifty50')} className={`px-3 py-1.5 rounded-lg border transition-colors ${graph1Visibility.totalValueNifty50 ? 'bg-brown-100 border-brown-500 text-brown-700' : 'bg-gray-100 border-gray-300 text-gray-500'}`}>
-                    Nifty 50
-                  </button>
-                  <button onClick={() => toggleGraph1Series('totalValueNifty100')} className={`px-3 py-1.5 rounded-lg border transition-colors ${graph1Visibility.totalValueNifty100 ? 'bg-pink-100 border-pink-500 text-pink-700' : 'bg-gray-100 border-gray-300 text-gray-500'}`}>
-                    Nifty 100
-                  </button>
+                  {comparisonNames.map((name, index) => (
+                    <button key={name} onClick={() => toggleComparison(name)} className={`px-3 py-1.5 rounded-lg border transition-colors ${comparisonVisibility[name] ? 'bg-white text-gray-700' : 'bg-gray-100 border-gray-300 text-gray-500'}`} style={comparisonVisibility[name] ? { borderColor: comparisonColors[index % comparisonColors.length] } : undefined}>
+                      {name}
+                    </button>
+                  ))}
                 </div>
               </div>
               <ResponsiveContainer width="100%" height={500}>
@@ -205,8 +212,9 @@ const HistoricDataModal = ({ userId, fundId, title, onClose, fetchData }) => {
                   {graph1Visibility.totalValue && <Line type="monotone" dataKey="totalValue" stroke="#8884d8" strokeWidth={3} dot={{ fill: '#8884d8' }} activeDot={{ r: 6 }} name="Total Value" />}
                   {graph1Visibility.totalInvested && <Line type="monotone" dataKey="totalInvested" stroke="#82ca9d" strokeWidth={2} dot={{ fill: '#82ca9d' }} activeDot={{ r: 6 }} name="Total Investment" />}
                   {graph1Visibility.totalValueBenchmark && <Line type="monotone" dataKey="totalValueBenchmark" stroke="#ff7300" strokeWidth={2} strokeDasharray="5 5" dot={{ fill: '#ff7300' }} activeDot={{ r: 6 }} name="Benchmark" />}
-                  {graph1Visibility.totalValueNifty50 && <Line type="monotone" dataKey="totalValueNifty50" stroke="#8c564b" strokeWidth={2} strokeDasharray="3 3" dot={{ fill: '#8c564b' }} activeDot={{ r: 6 }} name="Nifty 50" />}
-                  {graph1Visibility.totalValueNifty100 && <Line type="monotone" dataKey="totalValueNifty100" stroke="#e377c2" strokeWidth={2} strokeDasharray="3 3" dot={{ fill: '#e377c2' }} activeDot={{ r: 6 }} name="Nifty 100" />}
+                  {comparisonNames.map((name, index) => comparisonVisibility[name] && (
+                    <Line key={name} type="monotone" dataKey={(point) => point.comparison?.[name]} stroke={comparisonColors[index % comparisonColors.length]} strokeWidth={2} strokeDasharray="3 3" dot={{ fill: comparisonColors[index % comparisonColors.length] }} activeDot={{ r: 6 }} name={name} />
+                  ))}
                   {graph1Visibility.thisMonthInvested && <Bar dataKey="thisMonthInvested" fill="#ffc658" name="Month's Investment" />}
                   <Brush dataKey="month" height={30} stroke="#8884d8" />
                 </ComposedChart>
@@ -77,6 +77,38 @@ const UserDashboard = ({ user, onLogout, onUserUpdate }) => {
     }
   }, [user.id, loadDashboardData]);
 
+  // Live updates: deltas carry absolute values for the funds that changed, plus the totals
+  useEffect(() => {
+    if (!user?.id) return undefined;
+    const source = dashboardAPI.subscribeDashboard(user.id, (delta) => {
+      setDashboardData((current) => {
+        if (!current) return current;
+        const removed = new Set(delta.removedFundIds || []);
+        const changed = new Map((delta.funds || []).map((fund) => [fund.fundId, fund]));
+        const fundSummaries = (current.fundSummaries || [])
+          .filter((fund) => !removed.has(fund.fundId))
+          .map((fund) => {
+            const update = changed.get(fund.fundId);
+            changed.delete(fund.fundId);
+            return update ? { ...fund, ...update } : fund;
+          });
+        changed.forEach((fund) => fundSummaries.push(fund));
+        return {
+          ...current,
+          fundSummaries,
+          totalInvested: delta.totalInvested,
+          totalValue: delta.totalValue,
+          profitLoss: delta.profitLoss,
+          profitLossPercent: delta.profitLossPercent,
+          totalEmergencyFundValue: delta.totalEmergencyFundValue,
+          todayProfit: delta.todayProfit,
+          todayMessage: delta.todayMessage,
+        };
+      });
+    });
+    return () => source.close();
+  }, [user.id]);
+
   const handleSearch = async (searchText) => {
     if (!searchText.trim()) {
       setSearchResults([]);
@@ -34,6 +34,10 @@ api.interceptors.response.use(
   }
 );
 
+// Chart query params; benchmarks go as one comma-separated value, which Spring binds to a list
+const chartParams = ({ benchmarks, ...options }) =>
+  benchmarks?.length ? { ...options, benchmarks: benchmarks.join(',') } : options;
+
 export const dashboardAPI = {
   // Get user dashboard data (basic metrics)
   getUserDashboard: async (userId) => {
@@ -53,6 +57,23 @@ export const dashboardAPI = {
     }
   },
 
+  // Subscribe to dashboard changes; onDelta receives each delta (the first one has full: true).
+  // Returns the EventSource, which reconnects on its own; call close() to unsubscribe.
+  subscribeDashboard: (userId, onDelta) => {
+    const source = new EventSource(`${API_BASE_URL}/api/dashboard/stream?userId=${encodeURIComponent(userId)}`);
+    source.addEventListener('delta', (event) => {
+      try {
+        onDelta(JSON.parse(event.data));
+      } catch (error) {
+        console.error('Error handling dashboard delta:', error);
+      }
+    });
+    source.onerror = (error) => {
+      console.error('Dashboard stream error:', error);
+    };
+    return source;
+  },
+
   // Get user dashboard extra metrics (XIRR, Long Term Gains, etc.)
   getUserDashboardExtra: async (userId) => {
     try {
@@ -108,9 +129,10 @@ export const dashboardAPI = {
   },
 
   // Get dashboard historic data
-  getDashboardHistoricData: async (userId) => {
+  // options: { resolution: 'daily' | 'weekly' | 'monthly', from, to (dd-MM-yyyy), maxPoints, benchmarks: [name] }
+  getDashboardHistoricData: async (userId, options = {}) => {
     try {
-      const response = await api.get(`/api/dashboard/performanceChart?userId=${userId}`);
+      const response = await api.get(`/api/dashboard/performanceChart`, { params: { userId, ...chartParams(options) } });
       console.log('Dashboard Historic Data API Response:', response.data);
       
       // Handle BaseResponse structure
@@ -124,6 +146,24 @@ export const dashboardAPI = {
       throw error;
     }
   },
+
+  // Get the stored end-of-day portfolio history written by the nightly valuation job
+  // options: { from, to (dd-MM-yyyy) }; defaults to the last 12 months
+  getDailyHistory: async (userId, options = {}) => {
+    try {
+      const response = await api.get(`/api/dashboard/dailyHistory`, { params: { userId, ...options } });
+
+      // Handle BaseResponse structure
+      if (response.data && response.data.success) {
+        return response.data.data;
+      } else {
+        throw new Error(response.data?.message || 'Failed to fetch daily history');
+      }
+    } catch (error) {
+      console.error('Error fetching daily history:', error);
+      throw error;
+    }
+  },
 };
 
 export const userAPI = {
@@ -249,6 +289,32 @@ export const transactionAPI = {
     }
   },
 
+  // Upload a CAMS/KFintech CSV statement; returns the queued import job
+  importStatement: async (userId, file) => {
+    try {
+      const formData = new FormData();
+      formData.append('file', file);
+      const response = await api.post(`/api/transaction/import?userId=${userId}`, formData, {
+        headers: { 'Content-Type': 'multipart/form-data' },
+      });
+      return response.data || null;
+    } catch (error) {
+      console.error('Error importing statement:', error);
+      throw error;
+    }
+  },
+
+  // Poll the status of an import job
+  getImportJob: async (jobId) => {
+    try {
+      const response = await api.get(`/api/transaction/import?jobId=${jobId}`);
+      return response.data || null;
+    } catch (error) {
+      console.error('Error fetching import job:', error);
+      throw error;
+    }
+  },
+
   // Delete transaction
   deleteTransaction: async (transactionId) => {
     try {
@@ -310,10 +376,47 @@ export const userFundAPI = {
     }
   },
 
+  // Get risk metrics (volatility, drawdown, Sharpe/Sortino, beta) of a user fund
+  getUserFundRisk: async (userId, fundId) => {
+    try {
+      const response = await api.get(`/api/userFund/risk?userId=${userId}&fundId=${fundId}`);
+      console.log('User Fund Risk API Response:', response.data);
+
+      // Handle BaseResponse structure
+      if (response.data && response.data.success) {
+        return response.data.data;
+      } else {
+        throw new Error(response.data?.message || 'Failed to fetch risk metrics');
+      }
+    } catch (error) {
+      console.error('Error fetching user fund risk metrics:', error);
+      throw error;
+    }
+  },
+
+  // Get the rolling-return distribution of a user fund over a window of `years` (default 3)
+  getUserFundRollingReturns: async (userId, fundId, years) => {
+    try {
+      const response = await api.get(`/api/userFund/rollingReturns`, { params: { userId, fundId, years } });
+      console.log('User Fund Rolling Returns API Response:', response.data);
+
+      // Handle BaseResponse structure
+      if (response.data && response.data.success) {
+        return response.data.data;
+      } else {
+        throw new Error(response.data?.message || 'Failed to fetch rolling returns');
+      }
+    } catch (error) {
+      console.error('Error fetching user fund rolling returns:', error);
+      throw error;
+    }
+  },
+
   // Get user fund historic data (NAV history)
-  getUserFundHistoricData: async (userId, fundId) => {
+  // options: { from, to (dd-MM-yyyy), format: 'objects' | 'columnar' }; the browser revalidates with the ETag
+  getUserFundHistoricData: async (userId, fundId, options = {}) => {
     try {
-      const response = await api.get(`/api/userFund/historicChart?userId=${userId}&fundId=${fundId}`);
+      const response = await api.get(`/api/userFund/historicChart`, { params: { userId, fundId, ...options } });
       console.log('User Fund Historic Data API Response:', response.data);
       
       // Handle BaseResponse structure
@@ -347,9 +450,10 @@ export const userFundAPI = {
   },
 
   // Get user fund performance chart data (old behavior)
-  getUserFundPerformanceData: async (userId, fundId) => {
+  // options: { resolution: 'daily' | 'weekly' | 'monthly', from, to (dd-MM-yyyy), maxPoints, benchmarks: [name] }
+  getUserFundPerformanceData: async (userId, fundId, options = {}) => {
     try {
-      const response = await api.get(`/api/userFund/performanceChart?userId=${userId}&fundId=${fundId}`);
+      const response = await api.get(`/api/userFund/performanceChart`, { params: { userId, fundId, ...chartParams(options) } });
       console.log('User Fund Performance Data API Response:', response.data);
       
       // Handle BaseResponse structure
@@ -457,4 +561,77 @@ export const sipAPI = {
   },
 };
 
+export const analyticsAPI = {
+  // Time-weighted and trailing returns per fund and for the portfolio
+  getReturns: async (userId) => {
+    try {
+      const response = await api.get(`/api/analytics/returns`, { params: { userId } });
+      console.log('Returns API Response:', response.data);
+
+      // Handle BaseResponse structure
+      if (response.data && response.data.success) {
+        return response.data.data;
+      } else {
+        throw new Error(response.data?.message || 'Failed to fetch returns');
+      }
+    } catch (error) {
+      console.error('Error fetching returns:', error);
+      throw error;
+    }
+  },
+
+  // Correlation matrix of daily returns between the user's funds
+  getCorrelations: async (userId) => {
+    try {
+      const response = await api.get(`/api/analytics/correlations`, { params: { userId } });
+      console.log('Correlations API Response:', response.data);
+
+      // Handle BaseResponse structure
+      if (response.data && response.data.success) {
+        return response.data.data;
+      } else {
+        throw new Error(response.data?.message || 'Failed to fetch correlations');
+      }
+    } catch (error) {
+      console.error('Error fetching correlations:', error);
+      throw error;
+    }
+  },
+
+  // Portfolio XIRR as of every month end, plus today
+  getXirrHistory: async (userId) => {
+    try {
+      const response = await api.get(`/api/analytics/xirrHistory`, { params: { userId } });
+      console.log('XIRR History API Response:', response.data);
+
+      // Handle BaseResponse structure
+      if (response.data && response.data.success) {
+        return response.data.data;
+      } else {
+        throw new Error(response.data?.message || 'Failed to fetch XIRR history');
+      }
+    } catch (error) {
+      console.error('Error fetching XIRR history:', error);
+      throw error;
+    }
+  },
+};
+
+export const graphqlAPI = {
+  // Run a GraphQL query; resolves to the data, or throws with the first error's message
+  query: async (query, variables = {}) => {
+    try {
+      const response = await api.post(`/api/graphql`, { query, variables });
+
+      if (response.data?.errors?.length) {
+        throw new Error(response.data.errors[0].message || 'GraphQL query failed');
+      }
+      return response.data?.data;
+    } catch (error) {
+      console.error('Error running GraphQL query:', error);
+      throw error;
+    }
+  },
+};
+
 export default api;
@@ -1,15 +1,46 @@
 package com.stonks.api;
 
+import com.stonks.service.impl.DashboardSnapshotStore;
+import com.stonks.service.impl.DashboardStreamHub;
+import com.stonks.service.impl.PortfolioFanOut;
+import com.stonks.service.impl.UserFundRefreshQueue;
+import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 @RestController
+@RequiredArgsConstructor
 public class HealthController {
 
+    private final UserFundRefreshQueue userFundRefreshQueue;
+    private final PortfolioFanOut portfolioFanOut;
+    private final DashboardSnapshotStore dashboardSnapshotStore;
+    private final DashboardStreamHub dashboardStreamHub;
+
     @GetMapping("/api/health")
     public String health() {
         return "ok";
     }
-}
 
+    @GetMapping("/api/health/refreshQueue")
+    public Map<String, Long> refreshQueueStats() {
+        return userFundRefreshQueue.getStats();
+    }
+
+    @GetMapping("/api/health/portfolioFanOut")
+    public Map<String, Long> portfolioFanOutStats() {
+        return portfolioFanOut.getStats();
+    }
+
+    @GetMapping("/api/health/dashboardSnapshots")
+    public Map<String, Long> dashboardSnapshotStats() {
+        return dashboardSnapshotStore.getStats();
+    }
 
+    @GetMapping("/api/health/dashboardStreams")
+    public Map<String, Long> dashboardStreamStats() {
+        return dashboardStreamHub.getStats();
+    }
+}
@@ -22,7 +22,8 @@ public class CacheConfig {
         cacheManager.setCacheNames(Arrays.asList(
                 "allMutualFunds",
                 "mutualFundDetails",
-                "latestNav"
+                "latestNav",
+                "navSeries"
         ));
         return cacheManager;
     }
@@ -0,0 +1,55 @@
+package com.stonks.controller;
+
+import java.util.Optional;
+
+import com.stonks.dto.BaseResponse;
+import com.stonks.dto.CorrelationMatrixDTO;
+import com.stonks.dto.PortfolioReturnsDTO;
+import com.stonks.dto.XirrHistoryDTO;
+import com.stonks.service.PortfolioAnalyticsService;
+import com.stonks.util.Response;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final PortfolioAnalyticsService portfolioAnalyticsService;
+
+    @GetMapping("/returns")
+    public ResponseEntity<BaseResponse<?>> getReturns(@RequestParam String userId) {
+        Optional<PortfolioReturnsDTO> returns = portfolioAnalyticsService.getReturns(userId);
+        if (returns.isPresent()) {
+            return Response.success(returns.get());
+        } else {
+            return Response.failure("Error: Could not compute returns for user: " + userId);
+        }
+    }
+
+    @GetMapping("/correlations")
+    public ResponseEntity<BaseResponse<?>> getCorrelations(@RequestParam String userId) {
+        Optional<CorrelationMatrixDTO> correlations = portfolioAnalyticsService.getCorrelations(userId);
+        if (correlations.isPresent()) {
+            return Response.success(correlations.get());
+        } else {
+            return Response.failure("Error: Could not compute correlations for user: " + userId);
+        }
+    }
+
+    @GetMapping("/xirrHistory")
+    public ResponseEntity<BaseResponse<?>> getXirrHistory(@RequestParam String userId) {
+        Optional<XirrHistoryDTO> history = portfolioAnalyticsService.getXirrHistory(userId);
+        if (history.isPresent()) {
+            return Response.success(history.get());
+        } else {
+            return Response.failure("Error: Could not compute XIRR history for user: " + userId);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.stonks.controller;
+
+import java.util.Optional;
+
+import com.stonks.dto.BaseResponse;
+import com.stonks.dto.CapitalGainsReportDTO;
+import com.stonks.service.CapitalGainsService;
+import com.stonks.util.Response;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/capitalGains")
+@RequiredArgsConstructor
+public class CapitalGainsController {
+
+    private final CapitalGainsService capitalGainsService;
+
+    @GetMapping
+    public ResponseEntity<BaseResponse<?>> getCapitalGainsReport(@RequestParam String userId) {
+        Optional<CapitalGainsReportDTO> report = capitalGainsService.getCapitalGainsReport(userId);
+        if (report.isPresent()) {
+            return Response.success(report.get());
+        } else {
+            return Response.failure("Error: Could not build capital gains report for user: " + userId);
+        }
+    }
+}
@@ -4,17 +4,22 @@ import java.util.List;
 import java.util.Optional;
 
 import com.stonks.dto.BaseResponse;
-import com.stonks.dto.HistoricDataDTO;
+import com.stonks.dto.CombinedChartDTO;
 import com.stonks.dto.MFAPIDTOs.MutualFundDTO;
+import com.stonks.dto.PortfolioDailyDTO;
 import com.stonks.dto.UserDashboardDTO;
 import com.stonks.dto.UserDashboardExtraDTO;
 import com.stonks.service.DashboardPageService;
+import com.stonks.service.PortfolioValuationService;
 import com.stonks.util.Response;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import lombok.RequiredArgsConstructor;
 
@@ -24,6 +29,7 @@ import lombok.RequiredArgsConstructor;
 public class DashboardController {
 
     private final DashboardPageService dashboardPageService;
+    private final PortfolioValuationService portfolioValuationService;
 
     @GetMapping
     public ResponseEntity<BaseResponse<?>> getUserDashboard(@RequestParam String userId) {
@@ -31,6 +37,13 @@ public class DashboardController {
         return Response.success(userDashboard.get());
     }
 
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUserDashboard(@RequestParam String userId, HttpServletResponse response) {
+        // Tells nginx not to buffer the stream even where the location does not disable it.
+        response.setHeader("X-Accel-Buffering", "no");
+        return dashboardPageService.streamUserDashboard(userId);
+    }
+
     @GetMapping("/extra")
     public ResponseEntity<BaseResponse<?>> getUserDashboardExtra(@RequestParam String userId) {
         Optional<UserDashboardExtraDTO> userDashboardExtra = dashboardPageService.getUserDashboardExtra(userId);
@@ -38,11 +51,24 @@ public class DashboardController {
     }
 
     @GetMapping("/performanceChart")
-    public ResponseEntity<BaseResponse<?>> getUserPerformanceGraph(@RequestParam String userId) {
-        List<HistoricDataDTO> historicData = dashboardPageService.getCombinedHistoricData(userId);
+    public ResponseEntity<BaseResponse<?>> getUserPerformanceGraph(@RequestParam String userId,
+                                                                   @RequestParam(required = false) String resolution,
+                                                                   @RequestParam(required = false) String from,
+                                                                   @RequestParam(required = false) String to,
+                                                                   @RequestParam(required = false) Integer maxPoints,
+                                                                   @RequestParam(required = false) List<String> benchmarks) {
+        CombinedChartDTO historicData = dashboardPageService.getCombinedHistoricData(userId, resolution, from, to, maxPoints, benchmarks);
         return Response.success(historicData);
     }
 
+    @GetMapping("/dailyHistory")
+    public ResponseEntity<BaseResponse<?>> getDailyHistory(@RequestParam String userId,
+                                                           @RequestParam(required = false) String from,
+                                                           @RequestParam(required = false) String to) {
+        List<PortfolioDailyDTO> dailyHistory = portfolioValuationService.getDailyHistory(userId, from, to);
+        return Response.success(dailyHistory);
+    }
+
     @GetMapping(value = "/searchFund")
     public ResponseEntity<BaseResponse<?>> searchFund(@RequestParam String searchText) {
         List<MutualFundDTO> fundsList = dashboardPageService.getAllFundSearchResults(searchText);
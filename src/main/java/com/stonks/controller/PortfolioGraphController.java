@@ -0,0 +1,179 @@
+package com.stonks.controller;
+
+import com.stonks.dto.BenchmarkValueDTO;
+import com.stonks.dto.CombinedChartDTO;
+import com.stonks.dto.FundSummaryDTO;
+import com.stonks.dto.HistoricDataDTO;
+import com.stonks.dto.NavSnapshotDTO;
+import com.stonks.dto.PortfolioDailyDTO;
+import com.stonks.dto.UserDashboardDTO;
+import com.stonks.dto.UserDashboardExtraDTO;
+import com.stonks.model.Transaction;
+import com.stonks.model.User;
+import com.stonks.model.UserFund;
+import com.stonks.service.DashboardPageService;
+import com.stonks.service.PortfolioGraphService;
+import com.stonks.service.PortfolioValuationService;
+import com.stonks.util.IstDate;
+import graphql.GraphQLContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * GraphQL view of the dashboard and fund pages (schema in graphql/schema.graphqls).
+ * <p>
+ * Nested lists are resolved with batch mappings, so each level of a query is loaded for all of its
+ * parents at once and memoized for the rest of the request. A user's funds and transactions are
+ * also kept in the request's {@link GraphQLContext}, so the dashboard, extras and chart fields
+ * compute from the rows the query already loaded instead of reading them again.
+ */
+@Controller
+@RequiredArgsConstructor
+public class PortfolioGraphController {
+
+    private final PortfolioGraphService portfolioGraphService;
+    private final DashboardPageService dashboardPageService;
+    private final PortfolioValuationService portfolioValuationService;
+
+    private static final String FUNDS_KEY = "portfolio.funds:";
+    private static final String TRANSACTIONS_KEY = "portfolio.transactions:";
+
+    @QueryMapping
+    public User user(@Argument String id) {
+        return portfolioGraphService.getUser(id).orElse(null);
+    }
+
+    @QueryMapping
+    public UserFund userFund(@Argument String userId, @Argument Integer fundId) {
+        return portfolioGraphService.getUserFund(userId, fundId).orElse(null);
+    }
+
+    @BatchMapping(typeName = "User", field = "funds")
+    public Map<User, List<UserFund>> funds(List<User> users, GraphQLContext context) {
+        Map<String, List<UserFund>> byUser = fundsOf(users.stream().map(User::getId).toList(), context);
+        Map<User, List<UserFund>> funds = new HashMap<>();
+        for (User user : users) {
+            funds.put(user, byUser.get(user.getId()));
+        }
+        return funds;
+    }
+
+    @SchemaMapping(typeName = "User", field = "dashboard")
+    public UserDashboardDTO dashboard(User user, GraphQLContext context) {
+        return dashboardPageService.getUserDashboard(user, fundsOf(user, context)).orElse(null);
+    }
+
+    @SchemaMapping(typeName = "User", field = "dashboardExtra")
+    public UserDashboardExtraDTO dashboardExtra(User user, GraphQLContext context) {
+        return dashboardPageService.getUserDashboardExtra(user, fundsOf(user, context), transactionsOf(user, context)).orElse(null);
+    }
+
+    @SchemaMapping(typeName = "User", field = "performanceChart")
+    public CombinedChartDTO performanceChart(User user,
+                                                  GraphQLContext context,
+                                                  @Argument String resolution,
+                                                  @Argument String from,
+                                                  @Argument String to,
+                                                  @Argument Integer maxPoints,
+                                                  @Argument List<String> benchmarks) {
+        return dashboardPageService.getCombinedHistoricData(user, fundsOf(user, context), transactionsOf(user, context), resolution, from, to, maxPoints, benchmarks);
+    }
+
+    @SchemaMapping(typeName = "User", field = "dailyHistory")
+    public List<PortfolioDailyDTO> dailyHistory(User user, @Argument String from, @Argument String to) {
+        return portfolioValuationService.getDailyHistory(user.getId(), from, to);
+    }
+
+    @BatchMapping(typeName = "UserFund", field = "transactions")
+    public Map<UserFund, List<Transaction>> transactions(List<UserFund> userFunds, GraphQLContext context) {
+        Map<String, List<Transaction>> byUser = transactionsOf(userFunds.stream().map(UserFund::getUserId).distinct().toList(), context);
+        Map<UserFund, List<Transaction>> transactions = new HashMap<>();
+        for (UserFund userFund : userFunds) {
+            transactions.put(userFund, byUser.get(userFund.getUserId()).stream().filter(transaction -> userFund.getFundId().equals(transaction.getFundId())).toList());
+        }
+        return transactions;
+    }
+
+    @BatchMapping(typeName = "UserFund", field = "nav")
+    public Map<UserFund, NavSnapshotDTO> nav(List<UserFund> userFunds) {
+        Map<Integer, NavSnapshotDTO> snapshots = portfolioGraphService.getNavSnapshots(userFunds.stream().map(UserFund::getFundId).toList());
+        Map<UserFund, NavSnapshotDTO> navs = new HashMap<>();
+        for (UserFund userFund : userFunds) {
+            navs.put(userFund, snapshots.get(userFund.getFundId()));
+        }
+        return navs;
+    }
+
+    @BatchMapping(typeName = "UserFund", field = "summary")
+    public Map<UserFund, FundSummaryDTO> summary(List<UserFund> userFunds) {
+        return portfolioGraphService.getFundSummaries(userFunds);
+    }
+
+    @SchemaMapping(typeName = "HistoricPoint", field = "comparison")
+    public List<BenchmarkValueDTO> comparison(HistoricDataDTO point) {
+        if (point.getComparison() == null) {
+            return null;
+        }
+        return point.getComparison().entrySet().stream().map(entry -> new BenchmarkValueDTO(entry.getKey(), entry.getValue())).toList();
+    }
+
+    @SchemaMapping(typeName = "Transaction", field = "date")
+    public String date(Transaction transaction) {
+        return transaction.getDate() == null ? null : IstDate.format(IstDate.fromEpochSecond(transaction.getDate()));
+    }
+
+    private List<UserFund> fundsOf(User user, GraphQLContext context) {
+        return fundsOf(List.of(user.getId()), context).get(user.getId());
+    }
+
+    private List<Transaction> transactionsOf(User user, GraphQLContext context) {
+        return transactionsOf(List.of(user.getId()), context).get(user.getId());
+    }
+
+    // Each user's funds, loaded once per request; users not seen yet are loaded together.
+    private Map<String, List<UserFund>> fundsOf(List<String> userIds, GraphQLContext context) {
+        return memoized(FUNDS_KEY, userIds, context, missing -> {
+            Map<String, List<UserFund>> loaded = portfolioGraphService.getFundsByUserIds(missing);
+            Map<String, List<UserFund>> byUser = new HashMap<>();
+            for (String userId : missing) {
+                byUser.put(userId, loaded.getOrDefault(userId, List.of()));
+            }
+            return byUser;
+        });
+    }
+
+    // Each user's transactions, oldest first, loaded once per request.
+    private Map<String, List<Transaction>> transactionsOf(List<String> userIds, GraphQLContext context) {
+        return memoized(TRANSACTIONS_KEY, userIds, context, portfolioGraphService::getTransactionsByUserIds);
+    }
+
+    private static <T> Map<String, T> memoized(String prefix, List<String> userIds, GraphQLContext context, Function<List<String>, Map<String, T>> loader) {
+        Map<String, T> values = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String userId : userIds) {
+            T value = context.get(prefix + userId);
+            if (value != null) {
+                values.put(userId, value);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            loader.apply(missing).forEach((userId, value) -> {
+                context.put(prefix + userId, value);
+                values.put(userId, value);
+            });
+        }
+        return values;
+    }
+}
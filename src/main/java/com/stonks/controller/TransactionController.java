@@ -1,9 +1,12 @@
 package com.stonks.controller;
 
 import java.util.List;
+import java.util.Optional;
 
 import com.stonks.dto.BaseResponse;
+import com.stonks.dto.ImportJobDTO;
 import com.stonks.dto.TransactionDTO;
+import com.stonks.service.TransactionImportService;
 import com.stonks.service.UserFundService;
 import com.stonks.util.Response;
 import jakarta.validation.Valid;
@@ -14,7 +17,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import lombok.RequiredArgsConstructor;
 
@@ -24,6 +29,7 @@ import lombok.RequiredArgsConstructor;
 public class TransactionController {
 
     private final UserFundService userFundService;
+    private final TransactionImportService transactionImportService;
 
     @PostMapping
     public ResponseEntity<BaseResponse<?>> addTransaction(@Valid @RequestBody TransactionDTO transaction) {
@@ -45,6 +51,27 @@ public class TransactionController {
         }
     }
 
+    @PostMapping("/import")
+    public ResponseEntity<BaseResponse<?>> importTransactions(@RequestParam String userId, @RequestPart("file") MultipartFile file) {
+        ImportJobDTO job = transactionImportService.startImport(userId, file);
+        return Response.success(job, "Success: Import job queued with ID: " + job.getJobId());
+    }
+
+    @GetMapping("/import")
+    public ResponseEntity<BaseResponse<?>> getImportJob(@RequestParam String jobId) {
+        Optional<ImportJobDTO> job = transactionImportService.getImportJob(jobId);
+        if (job.isPresent()) {
+            return Response.success(job.get());
+        } else {
+            return Response.failure("Error: Import job not found with ID: " + jobId);
+        }
+    }
+
+    @GetMapping("/import/history")
+    public ResponseEntity<BaseResponse<?>> getImportJobs(@RequestParam String userId) {
+        return Response.success(transactionImportService.getImportJobsByUserId(userId));
+    }
+
     @DeleteMapping
     public ResponseEntity<BaseResponse<?>> deleteTransaction(@RequestParam(value = "transactionId") String transactionId) {
         String result = userFundService.deleteTransaction(transactionId);
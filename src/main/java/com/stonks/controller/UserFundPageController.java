@@ -6,10 +6,14 @@ import java.util.Optional;
 import com.stonks.dto.BaseResponse;
 import com.stonks.dto.HistoricChartDTO;
 import com.stonks.dto.HistoricDataDTO;
+import com.stonks.dto.RiskMetricsDTO;
+import com.stonks.dto.RollingReturnsDTO;
 import com.stonks.dto.UserFundDTO;
 import com.stonks.dto.UserFundDetailsDTO;
+import com.stonks.service.RiskAnalyticsService;
 import com.stonks.service.UserFundService;
 import com.stonks.util.Response;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,6 +22,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import lombok.RequiredArgsConstructor;
 
@@ -27,6 +32,7 @@ import lombok.RequiredArgsConstructor;
 public class UserFundPageController {
 
     private final UserFundService userFundService;
+    private final RiskAnalyticsService riskAnalyticsService;
 
     @GetMapping
     public ResponseEntity<BaseResponse<?>> getUserFundDetails(@RequestParam String userId, @RequestParam Integer fundId) {
@@ -35,15 +41,52 @@ public class UserFundPageController {
     }
 
     @GetMapping("/performanceChart")
-    public ResponseEntity<BaseResponse<?>> getUserFundPerformanceChart(@RequestParam String userId, @RequestParam Integer fundId) {
-        List<HistoricDataDTO> data = userFundService.getPerformanceChart(userId, fundId);
+    public ResponseEntity<BaseResponse<?>> getUserFundPerformanceChart(@RequestParam String userId, @RequestParam Integer fundId,
+                                                                       @RequestParam(required = false) String resolution,
+                                                                       @RequestParam(required = false) String from,
+                                                                       @RequestParam(required = false) String to,
+                                                                       @RequestParam(required = false) Integer maxPoints,
+                                                                       @RequestParam(required = false) List<String> benchmarks) {
+        List<HistoricDataDTO> data = userFundService.getPerformanceChart(userId, fundId, resolution, from, to, maxPoints, benchmarks);
         return Response.success(data);
     }
 
     @GetMapping("/historicChart")
-    public ResponseEntity<BaseResponse<?>> getUserFundHistoricChart(@RequestParam Integer fundId) {
-        Optional<HistoricChartDTO> data = userFundService.getHistoricChart(fundId);
-        return Response.success(data);
+    public ResponseEntity<BaseResponse<?>> getUserFundHistoricChart(@RequestParam Integer fundId,
+                                                                    @RequestParam(required = false) String from,
+                                                                    @RequestParam(required = false) String to,
+                                                                    @RequestParam(required = false) String format,
+                                                                    WebRequest request) {
+        // NAVs only change when the scheme publishes a new one, so repeat views are answered with 304.
+        String eTag = userFundService.getHistoricChartETag(fundId, from, to, format);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        Optional<HistoricChartDTO> data = userFundService.getHistoricChart(fundId, from, to, format);
+        return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache()).body(Response.success(data).getBody());
+    }
+
+
+    @GetMapping("/risk")
+    public ResponseEntity<BaseResponse<?>> getUserFundRisk(@RequestParam String userId, @RequestParam Integer fundId) {
+        Optional<RiskMetricsDTO> data = riskAnalyticsService.getRiskMetrics(userId, fundId);
+        if (data.isPresent()) {
+            return Response.success(data.get());
+        } else {
+            return Response.failure("Error: Could not compute risk metrics for user: " + userId + " and fund: " + fundId);
+        }
+    }
+
+
+    @GetMapping("/rollingReturns")
+    public ResponseEntity<BaseResponse<?>> getUserFundRollingReturns(@RequestParam String userId, @RequestParam Integer fundId,
+                                                                     @RequestParam(required = false) Integer years) {
+        Optional<RollingReturnsDTO> data = riskAnalyticsService.getRollingReturns(userId, fundId, years);
+        if (data.isPresent()) {
+            return Response.success(data.get());
+        } else {
+            return Response.failure("Error: Could not compute rolling returns for user: " + userId + " and fund: " + fundId);
+        }
     }
 
 
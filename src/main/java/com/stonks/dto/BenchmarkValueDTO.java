@@ -0,0 +1,13 @@
+package com.stonks.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BenchmarkValueDTO {
+    private String name;
+    private Double value;
+}
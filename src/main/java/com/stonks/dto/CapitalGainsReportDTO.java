@@ -0,0 +1,15 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CapitalGainsReportDTO {
+    private String userId;
+    private String currentFinancialYear;
+    private List<FinancialYearGainsDTO> financialYears;
+    private Double totalRealizedProfit;
+    private Double unrealizedShortTermGains;
+    private Double unrealizedLongTermGains;
+}
@@ -0,0 +1,13 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CombinedChartDTO {
+    private List<HistoricDataDTO> chartData;
+    // The chart leaves out the funds whose charts timed out
+    private Boolean partial;
+    private List<Integer> timedOutFundIds;
+}
@@ -0,0 +1,21 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Pearson correlation of daily returns between a user's funds over the NAV dates they all share.
+ * correlations[i][j] pairs fundIds[i] with fundIds[j]; entries are null when undefined (a flat NAV
+ * or too few common dates).
+ */
+@Data
+public class CorrelationMatrixDTO {
+    private String userId;
+    private String fromDate;
+    private String asOfDate;
+    private Integer observations;
+    private List<Integer> fundIds;
+    private List<String> fundNames;
+    private Double[][] correlations;
+}
@@ -0,0 +1,37 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Change to a user's dashboard pushed on the dashboard stream. The first event of a connection
+ * is full and lists every fund; later ones list only the funds whose values moved.
+ */
+@Data
+public class DashboardDeltaDTO {
+    private Long sequence;
+    private Boolean full;
+    private List<FundDelta> funds;
+    private List<Integer> removedFundIds;
+    private Double totalInvested;
+    private Double totalValue;
+    private Double profitLoss;
+    private Double profitLossPercent;
+    private Double totalEmergencyFundValue;
+    private Double todayProfit;
+    private String todayMessage;
+
+    @Data
+    public static class FundDelta {
+        private Integer fundId;
+        private String name;
+        private Boolean isEmergency;
+        private Double totalInvested;
+        private Double totalValue;
+        private Double totalUnits;
+        private Double profitLoss;
+        private Double profitLossPercent;
+        private Double todayProfit;
+    }
+}
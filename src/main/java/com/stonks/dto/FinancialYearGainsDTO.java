@@ -0,0 +1,15 @@
+package com.stonks.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FinancialYearGainsDTO {
+    private String financialYear;
+    private Double shortTermGains;
+    private Double longTermGains;
+    private Double totalGains;
+}
@@ -14,5 +14,7 @@ public class FundSummaryDTO {
     private Double profitLoss;
     private Double profitLossPercent;
     private Double todayProfit;
+    // True when the summary missed the dashboard deadline; only identity and book values are set
+    private Boolean timedOut;
 }
 
@@ -7,4 +7,6 @@ import java.util.List;
 @Data
 public class HistoricChartDTO {
     List<NavDateDTO> historicNAVs;
+    // Set instead of historicNAVs when the columnar format is requested
+    NavColumnsDTO columns;
 }
@@ -4,14 +4,19 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 public class HistoricDataDTO {
     String month;
+    // Day the point is valued at (dd-MM-yyyy): the month end on monthly charts.
+    String date;
     Double totalValue;
     Double totalValueBenchmark;
-    Double totalValueNifty50;
-    Double totalValueNifty100;
+    // Value of the same cash flows invested in each comparison benchmark, keyed by benchmark name
+    Map<String, Double> comparison;
     Double totalInvested;
     Double totalProfit;
     Double thisMonthInvested;
@@ -21,6 +26,7 @@ public class HistoricDataDTO {
 
     public HistoricDataDTO(HistoricDataDTO other) {
         this.month = other.getMonth();
+        this.date = other.getDate();
         this.totalValue = other.getTotalValue();
         this.totalProfit = other.getTotalProfit();
         this.totalInvested = other.getTotalInvested();
@@ -29,7 +35,6 @@ public class HistoricDataDTO {
         this.growthPercent = other.getGrowthPercent();
         this.alphaPercent = other.getAlphaPercent();
         this.totalValueBenchmark = other.getTotalValueBenchmark();
-        this.totalValueNifty50 = other.getTotalValueNifty50();
-        this.totalValueNifty100 = other.getTotalValueNifty100();
+        this.comparison = other.getComparison() == null ? null : new LinkedHashMap<>(other.getComparison());
     }
 }
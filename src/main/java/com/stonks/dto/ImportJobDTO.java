@@ -0,0 +1,23 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ImportJobDTO {
+    private String jobId;
+    private String userId;
+    private String fileName;
+    private String status;
+    private Integer progressPercent;
+    private Integer rowsRead;
+    private Integer successCount;
+    private Integer failureCount;
+    private Integer skippedCount;
+    private List<String> errors;
+    private Boolean errorsTruncated;
+    private String message;
+    private String createdAt;
+    private String updatedAt;
+}
@@ -0,0 +1,16 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+/**
+ * NAV history as parallel arrays, oldest first. Dates are delta-encoded: {@code dayDeltas[0]} is 0
+ * (the day of {@code startDate}) and every later entry is the number of days since the previous NAV.
+ */
+@Data
+public class NavColumnsDTO {
+    Integer schemeCode;
+    String startDate;
+    String latestDate;
+    int[] dayDeltas;
+    double[] navs;
+}
@@ -0,0 +1,15 @@
+package com.stonks.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NavSnapshotDTO {
+    private Integer schemeCode;
+    private String date;
+    private Double nav;
+    private Double previousNav;
+}
@@ -0,0 +1,16 @@
+package com.stonks.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioDailyDTO {
+    private String date;
+    private Double value;
+    private Double invested;
+    private Double dayProfit;
+    private Double emergencyValue;
+}
@@ -0,0 +1,13 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PortfolioReturnsDTO {
+    private String userId;
+    private String asOfDate;
+    private ReturnsDTO portfolio;
+    private List<ReturnsDTO> funds;
+}
@@ -0,0 +1,20 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Time-weighted returns of one fund holding, or of the whole portfolio when fundId is null.
+ */
+@Data
+public class ReturnsDTO {
+    private Integer fundId;
+    private String fundName;
+    private String fromDate;
+    private String asOfDate;
+    private Double twrPercent;
+    private Double twrAnnualizedPercent;
+    // Trailing returns by window (1M..5Y); windows over a year are annualized, null when the holding is younger than the window
+    private Map<String, Double> trailingPercent;
+}
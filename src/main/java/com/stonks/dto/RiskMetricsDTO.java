@@ -0,0 +1,26 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+/**
+ * Risk metrics of a scheme over the lookback window, from daily NAV returns. Volatility, return and
+ * tracking error are annualized; beta and tracking error are null when the fund has no benchmark.
+ */
+@Data
+public class RiskMetricsDTO {
+    private Integer schemeCode;
+    private String benchmark;
+    private String fromDate;
+    private String asOfDate;
+    private Long observations;
+    private Double annualizedReturnPercent;
+    private Double annualizedVolatilityPercent;
+    private Double maxDrawdownPercent;
+    private String drawdownPeakDate;
+    private String drawdownTroughDate;
+    private Double riskFreeRatePercent;
+    private Double sharpeRatio;
+    private Double sortinoRatio;
+    private Double beta;
+    private Double trackingErrorPercent;
+}
@@ -0,0 +1,27 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Distribution of the CAGR over a fixed window started on every NAV date of a scheme.
+ * Percentiles are keyed "p5", "p25", ...; beatBenchmarkPercent is the share of windows the fund
+ * returned more than its benchmark over, among those the benchmark's history covers.
+ */
+@Data
+public class RollingReturnsDTO {
+    private Integer schemeCode;
+    private String benchmark;
+    private Integer windowYears;
+    private String firstStartDate;
+    private String lastStartDate;
+    private Integer periods;
+    private Double minPercent;
+    private Double maxPercent;
+    private Double meanPercent;
+    private Double medianPercent;
+    private Map<String, Double> percentiles;
+    private Integer benchmarkPeriods;
+    private Double beatBenchmarkPercent;
+}
@@ -16,5 +16,8 @@ public class UserDashboardDTO {
     private Double totalEmergencyFundValue;
     private Double todayProfit;
     private String todayMessage;
+    // Totals leave out the funds whose summaries timed out
+    private Boolean partial;
+    private List<Integer> timedOutFundIds;
 }
 
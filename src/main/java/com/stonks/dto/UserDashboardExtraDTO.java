@@ -2,10 +2,15 @@ package com.stonks.dto;
 
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class UserDashboardExtraDTO {
     private Double xirr;
     private Double totalRealizedProfit;
     private Double currentYearTotalRealizedProfit;
     private Double longTermGains;
+    // XIRR and long-term gains leave out the funds whose latest NAV did not arrive in time
+    private Boolean partial;
+    private List<Integer> timedOutFundIds;
 }
\ No newline at end of file
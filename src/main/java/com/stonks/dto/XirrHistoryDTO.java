@@ -0,0 +1,15 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Portfolio XIRR as of every month end since the first investment, oldest first. The last point is
+ * as of today when the current month has not closed yet.
+ */
+@Data
+public class XirrHistoryDTO {
+    private String userId;
+    private List<XirrPointDTO> points;
+}
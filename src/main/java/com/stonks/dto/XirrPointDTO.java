@@ -0,0 +1,12 @@
+package com.stonks.dto;
+
+import lombok.Data;
+
+@Data
+public class XirrPointDTO {
+    private String month;
+    private String date;
+    private Double xirrPercent;
+    private Double totalValue;
+    private Double netInvested;
+}
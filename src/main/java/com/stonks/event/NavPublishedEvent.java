@@ -0,0 +1,15 @@
+package com.stonks.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A scheme's NAV history advanced to a newer NAV date.
+ */
+@Getter
+@AllArgsConstructor
+public class NavPublishedEvent {
+    private final Integer schemeCode;
+    // IST epoch-day of the newest NAV.
+    private final int latestNavDay;
+}
@@ -0,0 +1,15 @@
+package com.stonks.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A user's holdings in a fund changed (transactions written, fund settings edited or the fund
+ * removed). A null fundId means every fund of the user.
+ */
+@Getter
+@AllArgsConstructor
+public class PortfolioChangedEvent {
+    private final String userId;
+    private final Integer fundId;
+}
@@ -0,0 +1,37 @@
+package com.stonks.exception;
+
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports {@link ApiException}s thrown under GraphQL fields with their message and an error type
+ * matching the HTTP status the REST endpoints would have used.
+ */
+@Component
+@Slf4j
+public class GraphQLExceptionResolver extends DataFetcherExceptionResolverAdapter {
+
+    @Override
+    protected GraphQLError resolveToSingleError(Throwable ex, DataFetchingEnvironment env) {
+        if (!(ex instanceof ApiException e)) {
+            return null;
+        }
+        log.error(e.getMessage(), e);
+        ErrorType errorType = ErrorType.INTERNAL_ERROR;
+        if (e.getHttpStatus() != null) {
+            errorType = switch (e.getHttpStatus()) {
+                case BAD_REQUEST -> ErrorType.BAD_REQUEST;
+                case NOT_FOUND -> ErrorType.NOT_FOUND;
+                case UNAUTHORIZED -> ErrorType.UNAUTHORIZED;
+                case FORBIDDEN -> ErrorType.FORBIDDEN;
+                default -> ErrorType.INTERNAL_ERROR;
+            };
+        }
+        return GraphqlErrorBuilder.newError(env).errorType(errorType).message(e.getMessage()).build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.stonks.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of one background statement import. Row errors are capped so a badly formatted
+ * file cannot grow the document without bound. The instance running a job refreshes its
+ * updatedAt while the job is queued or running, so any instance can tell an abandoned job from
+ * one that is merely slow.
+ */
+@Document(collection = "importJob")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJob {
+
+    @Id
+    private String id;
+    @Indexed
+    private String userId;
+    private String fileName;
+    // QUEUED, RUNNING, COMPLETED or FAILED
+    private String status;
+    private Long totalBytes;
+    private Long bytesRead;
+    private Integer rowsRead;
+    private Integer successCount;
+    private Integer failureCount;
+    private Integer skippedCount;
+    private List<ImportRowError> errors = new ArrayList<>();
+    private Boolean errorsTruncated;
+    private String message;
+    // Instance the job was submitted to, as pid@host
+    private String owner;
+    private Long createdAt;
+    private Long updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ImportRowError {
+        private Integer rowNumber;
+        private String message;
+    }
+}
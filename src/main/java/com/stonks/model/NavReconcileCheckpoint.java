@@ -0,0 +1,27 @@
+package com.stonks.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last NAV reconciliation pass over one scheme. A scheme checked recently is skipped until its
+ * refetch interval passes, so an interrupted run resumes with the schemes it had not reached.
+ */
+@Document(collection = "navReconcileCheckpoint")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NavReconcileCheckpoint {
+
+    @Id
+    private Integer schemeCode;
+    // IST epoch-day of the newest NAV seen for the scheme.
+    private Integer latestNavDay;
+    private Integer repricedRows;
+    private Integer pendingRows;
+    private Long checkedAt;
+}
@@ -0,0 +1,34 @@
+package com.stonks.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One user's portfolio valued at the close of one day by the nightly valuation job. Value,
+ * invested and day P/L cover invested funds; emergency funds are valued separately, as on the
+ * dashboard.
+ */
+@Document(collection = "portfolioDaily")
+@CompoundIndex(name = "user_day_idx", def = "{'userId': 1, 'day': 1}", unique = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioDaily {
+
+    @Id
+    private String id;
+    private String userId;
+    // IST epoch-day the row values.
+    private Integer day;
+    private Double value;
+    private Double invested;
+    private Double dayProfit;
+    private Double emergencyValue;
+    private Integer funds;
+    private Long valuedAt;
+}
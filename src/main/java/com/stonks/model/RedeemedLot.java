@@ -0,0 +1,22 @@
+package com.stonks.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A BUY lot consumed by a SELL, embedded in the SELL transaction so the sale can be reverted
+ * without rescanning the fund's history.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedeemedLot {
+
+    private String transactionId;
+    private Double units;
+    // Set when the lot was only partially consumed and its unsold units were split into a new BUY.
+    private String remainderTransactionId;
+    // Invested amount of the lot before this sale consumed it; null on lots recorded before it was kept.
+    private Double amount;
+}
@@ -0,0 +1,55 @@
+package com.stonks.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Maintained capital-gains state of one fund for one user: open lots split into long-term and
+ * still-ageing short-term buckets, plus realized STCG/LTCG per financial year.
+ */
+@Document(collection = "taxLotRegister")
+@CompoundIndex(name = "user_fund_idx", def = "{'userId': 1, 'fundId': 1}", unique = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaxLotRegister {
+
+    @Id
+    private String id;
+    private String userId;
+    private Integer fundId;
+    private Double openUnits;
+    private Double openInvested;
+    private Double longTermUnits;
+    private Double longTermInvested;
+    // Short-term open lots bucketed by the IST epoch-day they turn long-term, ascending.
+    private List<AgingBucket> agingBuckets = new ArrayList<>();
+    private List<FinancialYearGains> realizedGains = new ArrayList<>();
+    private Double totalRealizedProfit;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AgingBucket {
+        private Integer longTermFromDay;
+        private Double units;
+        private Double invested;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FinancialYearGains {
+        private Integer financialYear;
+        private Double shortTermGains;
+        private Double longTermGains;
+    }
+}
@@ -1,13 +1,18 @@
 package com.stonks.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.List;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Document(collection = "transaction")
+@CompoundIndex(name = "user_fund_type_date_idx", def = "{'userId': 1, 'fundId': 1, 'transactionType': 1, 'date': -1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -26,5 +31,9 @@ public class Transaction {
     private Double units;
     private Double price;
     private Double bookedProfit;
+    // False while priced at a provisional NAV; NAV reconciliation re-prices and flips it.
+    @Indexed(name = "provisional_nav_idx", partialFilter = "{ 'isUpdated': false }")
     private Boolean isUpdated;
+    // SELL only: the BUY lots this sale consumed, in redemption order.
+    private List<RedeemedLot> redeemedLots;
 }
@@ -0,0 +1,13 @@
+package com.stonks.repository;
+
+import com.stonks.model.ImportJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ImportJobRepository extends MongoRepository<ImportJob, String> {
+    List<ImportJob> findByUserIdOrderByCreatedAtDesc(String userId);
+
+    List<ImportJob> findByStatusInAndUpdatedAtLessThan(Collection<String> statuses, Long updatedAt);
+}
@@ -0,0 +1,7 @@
+package com.stonks.repository;
+
+import com.stonks.model.NavReconcileCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface NavReconcileCheckpointRepository extends MongoRepository<NavReconcileCheckpoint, Integer> {
+}
@@ -0,0 +1,10 @@
+package com.stonks.repository;
+
+import com.stonks.model.PortfolioDaily;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface PortfolioDailyRepository extends MongoRepository<PortfolioDaily, String> {
+    List<PortfolioDaily> findByUserIdAndDayBetweenOrderByDayAsc(String userId, Integer fromDay, Integer toDay);
+}
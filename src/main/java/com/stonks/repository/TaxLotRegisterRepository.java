@@ -0,0 +1,14 @@
+package com.stonks.repository;
+
+import com.stonks.model.TaxLotRegister;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TaxLotRegisterRepository extends MongoRepository<TaxLotRegister, String> {
+    List<TaxLotRegister> findByUserId(String userId);
+    Optional<TaxLotRegister> findByUserIdAndFundId(String userId, Integer fundId);
+    void deleteByUserId(String userId);
+    void deleteByUserIdAndFundId(String userId, Integer fundId);
+}
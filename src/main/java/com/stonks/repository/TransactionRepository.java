@@ -3,11 +3,19 @@ package com.stonks.repository;
 import com.stonks.model.Transaction;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface TransactionRepository extends MongoRepository<Transaction, String> {
     List<Transaction> findByUserIdAndFundIdOrderByDateDescIsRedeemedAsc(String userId, Integer fundId);
     List<Transaction> findByUserIdAndFundIdOrderByDateAsc(String userId, Integer fundId);
     List<Transaction> findByUserId(String userId);
+    List<Transaction> findByUserIdInOrderByDateAsc(Collection<String> userIds);
+    // Cursor-backed; close it (try-with-resources) once read
+    Stream<Transaction> streamByUserId(String userId);
     List<Transaction> findByTransactionType(String transactionType);
+    List<Transaction> findByIsUpdated(Boolean isUpdated);
+    Optional<Transaction> findFirstByUserIdAndFundIdAndTransactionTypeOrderByDateDesc(String userId, Integer fundId, String transactionType);
 }
@@ -0,0 +1,30 @@
+package com.stonks.service;
+
+import com.stonks.dto.CapitalGainsReportDTO;
+import com.stonks.model.TaxLotRegister;
+import com.stonks.model.Transaction;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface CapitalGainsService {
+    void rebuildRegister(String userId, Integer fundId);
+
+    void recordTransaction(String transactionId);
+
+    void recordTransactions(List<Transaction> transactions);
+
+    void removeTransaction(Transaction transaction);
+
+    Optional<TaxLotRegister> getRegister(String userId, Integer fundId);
+
+    List<TaxLotRegister> getRegisters(String userId, List<Integer> fundIds);
+
+    Double getCurrentFinancialYearRealizedProfit(TaxLotRegister register);
+
+    Optional<CapitalGainsReportDTO> getCapitalGainsReport(String userId);
+
+    String deleteRegister(String userId, Integer fundId);
+
+    String deleteRegisters(String userId);
+}
@@ -1,9 +1,13 @@
 package com.stonks.service;
 
-import com.stonks.dto.HistoricDataDTO;
+import com.stonks.dto.CombinedChartDTO;
 import com.stonks.dto.MFAPIDTOs.MutualFundDTO;
 import com.stonks.dto.UserDashboardDTO;
 import com.stonks.dto.UserDashboardExtraDTO;
+import com.stonks.model.Transaction;
+import com.stonks.model.User;
+import com.stonks.model.UserFund;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,9 +16,17 @@ public interface DashboardPageService {
 
     Optional<UserDashboardDTO> getUserDashboard(String userId);
 
+    Optional<UserDashboardDTO> getUserDashboard(User user, List<UserFund> userFunds);
+
+    SseEmitter streamUserDashboard(String userId);
+
     Optional<UserDashboardExtraDTO> getUserDashboardExtra(String userId);
 
-    List<HistoricDataDTO> getCombinedHistoricData(String userId);
+    Optional<UserDashboardExtraDTO> getUserDashboardExtra(User user, List<UserFund> userFunds, List<Transaction> transactions);
+
+    CombinedChartDTO getCombinedHistoricData(String userId, String resolution, String from, String to, Integer maxPoints, List<String> benchmarks);
+
+    CombinedChartDTO getCombinedHistoricData(User user, List<UserFund> userFunds, List<Transaction> transactions, String resolution, String from, String to, Integer maxPoints, List<String> benchmarks);
 
     List<MutualFundDTO> getAllFundSearchResults(String searchText);
 
@@ -3,9 +3,12 @@ package com.stonks.service;
 import com.stonks.dto.MFAPIDTOs.MutualFundDTO;
 import com.stonks.dto.MFAPIDTOs.MutualFundDetailDTO;
 import com.stonks.dto.MFAPIDTOs.MutualFundNavDTO;
+import com.stonks.util.NavSeries;
 import org.springframework.data.util.Pair;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface MutualFundDataService {
@@ -15,10 +18,14 @@ public interface MutualFundDataService {
 
     Double getLatestNav(Integer schemeCode);
 
+    Map<Integer, Double> getLatestNavs(Collection<Integer> schemeCodes);
+
     Double getYesterdaysNav(Integer schemeCode);
 
     List<MutualFundNavDTO> getNavHistory(Integer schemeCode);
 
+    NavSeries getNavSeries(Integer schemeCode);
+
     Pair<Double, Boolean> getNavForDate(Integer schemeCode, Long epochSeconds);
 
     Double getNAVFromNAVList(List<MutualFundNavDTO> navData, Long epochSeconds, Integer schemeCode);
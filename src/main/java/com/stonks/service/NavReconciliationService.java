@@ -0,0 +1,5 @@
+package com.stonks.service;
+
+public interface NavReconciliationService {
+    String reconcileProvisionalTransactions();
+}
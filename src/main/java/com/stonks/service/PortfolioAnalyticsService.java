@@ -0,0 +1,16 @@
+package com.stonks.service;
+
+import com.stonks.dto.CorrelationMatrixDTO;
+import com.stonks.dto.PortfolioReturnsDTO;
+import com.stonks.dto.XirrHistoryDTO;
+
+import java.util.Optional;
+
+public interface PortfolioAnalyticsService {
+
+    Optional<PortfolioReturnsDTO> getReturns(String userId);
+
+    Optional<CorrelationMatrixDTO> getCorrelations(String userId);
+
+    Optional<XirrHistoryDTO> getXirrHistory(String userId);
+}
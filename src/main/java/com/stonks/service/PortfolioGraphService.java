@@ -0,0 +1,32 @@
+package com.stonks.service;
+
+import com.stonks.dto.FundSummaryDTO;
+import com.stonks.dto.NavSnapshotDTO;
+import com.stonks.model.Transaction;
+import com.stonks.model.User;
+import com.stonks.model.UserFund;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Multi-key loads behind the GraphQL batch mappings; each call serves a whole batch of parents.
+ */
+public interface PortfolioGraphService {
+
+    Optional<User> getUser(String id);
+
+    Optional<UserFund> getUserFund(String userId, Integer fundId);
+
+    Map<String, List<UserFund>> getFundsByUserIds(Collection<String> userIds);
+
+    Map<UserFund, List<Transaction>> getTransactions(Collection<UserFund> userFunds);
+
+    Map<String, List<Transaction>> getTransactionsByUserIds(Collection<String> userIds);
+
+    Map<Integer, NavSnapshotDTO> getNavSnapshots(Collection<Integer> schemeCodes);
+
+    Map<UserFund, FundSummaryDTO> getFundSummaries(Collection<UserFund> userFunds);
+}
@@ -0,0 +1,12 @@
+package com.stonks.service;
+
+import com.stonks.dto.PortfolioDailyDTO;
+
+import java.util.List;
+
+public interface PortfolioValuationService {
+
+    String valuePortfolios();
+
+    List<PortfolioDailyDTO> getDailyHistory(String userId, String from, String to);
+}
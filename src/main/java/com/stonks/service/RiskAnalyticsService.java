@@ -0,0 +1,17 @@
+package com.stonks.service;
+
+import com.stonks.dto.RiskMetricsDTO;
+import com.stonks.dto.RollingReturnsDTO;
+
+import java.util.Optional;
+
+public interface RiskAnalyticsService {
+
+    Optional<RiskMetricsDTO> getRiskMetrics(String userId, Integer fundId);
+
+    RiskMetricsDTO getSchemeRiskMetrics(Integer schemeCode, String benchmark);
+
+    Optional<RollingReturnsDTO> getRollingReturns(String userId, Integer fundId, Integer windowYears);
+
+    RollingReturnsDTO getSchemeRollingReturns(Integer schemeCode, String benchmark, int windowYears);
+}
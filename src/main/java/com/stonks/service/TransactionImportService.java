@@ -0,0 +1,15 @@
+package com.stonks.service;
+
+import com.stonks.dto.ImportJobDTO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TransactionImportService {
+    ImportJobDTO startImport(String userId, MultipartFile file);
+
+    Optional<ImportJobDTO> getImportJob(String jobId);
+
+    List<ImportJobDTO> getImportJobsByUserId(String userId);
+}
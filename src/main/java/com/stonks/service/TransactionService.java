@@ -18,10 +18,14 @@ public interface TransactionService {
 
     String addBulkTransactions(List<TransactionDTO> transactions);
 
+    List<Pair<String, Transaction>> addBuyTransactions(List<TransactionDTO> transactions);
+
     Pair<Double, Double> getTotalUnitsAndInvestedAmount(String userId, Integer fundId);
 
     Double calculateXIRR(List<TransactionDTO> transactions, Double currentValue);
 
+    Double calculateXIRRFromEntities(List<Transaction> transactions, Double currentValue);
+
     String updateTransaction(Transaction transaction);
 
     Pair<String, Transaction> deleteTransaction(String id);
@@ -8,10 +8,12 @@ import com.stonks.dto.SIPDTO;
 import com.stonks.dto.TransactionDTO;
 import com.stonks.dto.UserFundDTO;
 import com.stonks.dto.UserFundDetailsDTO;
+import com.stonks.model.Transaction;
+import com.stonks.util.ChartWindow;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 public interface UserFundService {
     List<UserFundDTO> getUserFundsByUserId(String userId);
@@ -44,18 +46,29 @@ public interface UserFundService {
 
     Optional<FundSummaryDTO> getFundSummary(String userId, Integer fundId);
 
-    CompletableFuture<Optional<FundSummaryDTO>> getFundSummaryAsync(String userId, Integer fundId);
-
     Optional<FundSummaryExtraDTO> getFundSummaryExtra(String userId, Integer fundId);
 
     Optional<UserFundDetailsDTO> getUserFundDetails(String userId, Integer fundId);
 
     List<HistoricDataDTO> getPerformanceChart(String userId, Integer fundId);
 
-    Optional<HistoricChartDTO> getHistoricChart(Integer fundId);
+    List<HistoricDataDTO> getPerformanceChart(String userId, Integer fundId, String resolution, String from, String to, Integer maxPoints, List<String> benchmarks);
+
+    List<HistoricDataDTO> getPerformanceChart(String userId, Integer fundId, ChartWindow window, List<String> comparisons);
+
+    List<HistoricDataDTO> getPerformanceChart(UserFundDTO userFund, Supplier<List<Transaction>> transactions, ChartWindow window, List<String> comparisons);
 
+    /**
+     * Comparison benchmarks for a performance chart: the requested names, trimmed and without
+     * duplicates, or the default set when none are requested.
+     *
+     * @throws com.stonks.exception.ApiException (400) for an unknown benchmark name
+     */
+    List<String> resolveComparisons(List<String> benchmarks);
 
-    CompletableFuture<List<HistoricDataDTO>> getHistoricDataAsync(String userId, Integer fundId);
+    Optional<HistoricChartDTO> getHistoricChart(Integer fundId, String from, String to, String format);
+
+    String getHistoricChartETag(Integer fundId, String from, String to, String format);
 
     Boolean registerNewSIP(SIPDTO sipdto);
 
@@ -63,5 +76,7 @@ public interface UserFundService {
 
     String addBulkTransactions(List<TransactionDTO> transactionDTOList);
 
+    List<String> addBuyTransactions(List<TransactionDTO> transactions);
+
     String deleteTransaction(String transactionId);
 }
\ No newline at end of file
@@ -0,0 +1,447 @@
+package com.stonks.service.impl;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.stonks.dto.CapitalGainsReportDTO;
+import com.stonks.dto.FinancialYearGainsDTO;
+import com.stonks.model.RedeemedLot;
+import com.stonks.model.Transaction;
+import com.stonks.model.TaxLotRegister;
+import com.stonks.model.TaxLotRegister.AgingBucket;
+import com.stonks.model.TaxLotRegister.FinancialYearGains;
+import com.stonks.model.UserFund;
+import com.stonks.repository.TaxLotRegisterRepository;
+import com.stonks.repository.TransactionRepository;
+import com.stonks.repository.UserFundRepository;
+import com.stonks.service.CapitalGainsService;
+import com.stonks.service.MutualFundDataService;
+import com.stonks.service.TransactionService;
+
+import com.stonks.util.IstDate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CapitalGainsServiceImpl implements CapitalGainsService {
+
+    // Below this many units a bucket only holds rounding residue from released lots.
+    private static final double EMPTY_UNITS = 1e-9;
+
+    private final TaxLotRegisterRepository taxLotRegisterRepository;
+    private final UserFundRepository userFundRepository;
+    private final TransactionService transactionService;
+    private final MutualFundDataService mfapiService;
+    private final UserFundRefreshQueue userFundRefreshQueue;
+    private final TransactionRepository transactionRepository;
+
+    // Serializes read-modify-write of one register; weak values drop locks nobody holds.
+    private final LoadingCache<String, Object> registerLocks = Caffeine.newBuilder().weakValues().build(key -> new Object());
+
+    @Override
+    public void rebuildRegister(String userId, Integer fundId) {
+        try {
+            log.debug("Rebuilding tax lot register for user: {} and fund: {}", userId, fundId);
+            synchronized (lockFor(userId, fundId)) {
+                TaxLotRegister register = taxLotRegisterRepository.findByUserIdAndFundId(userId, fundId).orElseGet(TaxLotRegister::new);
+                fillRegister(register, userId, fundId, transactionService.getTransactionsByUserIdAndFundIdOrderByDateAsc(userId, fundId));
+                taxLotRegisterRepository.save(register);
+            }
+        } catch (Exception e) {
+            log.error("Error rebuilding tax lot register for user: {} and fund: {}", userId, fundId, e);
+        }
+    }
+
+    @Override
+    public void recordTransaction(String transactionId) {
+        transactionRepository.findById(transactionId).ifPresent(transaction -> recordTransactions(List.of(transaction)));
+    }
+
+    @Override
+    public void recordTransactions(List<Transaction> transactions) {
+        // One read and one save per register, however many of its writes the batch carries.
+        Map<String, List<Transaction>> byRegister = transactions.stream()
+                .collect(Collectors.groupingBy(transaction -> transaction.getUserId() + ":" + transaction.getFundId(), LinkedHashMap::new, Collectors.toList()));
+        for (List<Transaction> writes : byRegister.values()) {
+            record(writes);
+        }
+    }
+
+    @Override
+    public void removeTransaction(Transaction transaction) {
+        String userId = transaction.getUserId();
+        Integer fundId = transaction.getFundId();
+        if (!"BUY".equalsIgnoreCase(transaction.getTransactionType()) || Boolean.TRUE.equals(transaction.getIsRedeemed())) {
+            // A reverted SELL un-redeems and merges lots; that is rare enough to rebuild.
+            rebuildRegister(userId, fundId);
+            return;
+        }
+        try {
+            synchronized (lockFor(userId, fundId)) {
+                TaxLotRegister register = taxLotRegisterRepository.findByUserIdAndFundId(userId, fundId).orElse(null);
+                if (register == null) {
+                    return;
+                }
+                int today = IstDate.today();
+                rollMaturedLots(register, today);
+                applyBuy(register, transaction, -1.0, today);
+                taxLotRegisterRepository.save(register);
+            }
+        } catch (Exception e) {
+            log.error("Error removing transaction {} from tax lot register for user: {} and fund: {}", transaction.getId(), userId, fundId, e);
+        }
+    }
+
+    // Applies writes of one user and fund, in order, to its register under the register lock.
+    private void record(List<Transaction> writes) {
+        String userId = writes.get(0).getUserId();
+        Integer fundId = writes.get(0).getFundId();
+        try {
+            synchronized (lockFor(userId, fundId)) {
+                TaxLotRegister register = taxLotRegisterRepository.findByUserIdAndFundId(userId, fundId).orElse(null);
+                if (register == null) {
+                    // Built lazily on first read, from a history that already includes these writes.
+                    return;
+                }
+                int today = IstDate.today();
+                rollMaturedLots(register, today);
+                for (Transaction transaction : writes) {
+                    boolean applied = "SELL".equalsIgnoreCase(transaction.getTransactionType())
+                            ? applySell(register, transaction, today)
+                            : applyBuy(register, transaction, 1.0, today);
+                    if (!applied) {
+                        log.info("Rebuilding tax lot register for user: {} and fund: {}; transaction {} has no usable lot linkage", userId, fundId, transaction.getId());
+                        fillRegister(register, userId, fundId, transactionService.getTransactionsByUserIdAndFundIdOrderByDateAsc(userId, fundId));
+                        break;
+                    }
+                }
+                taxLotRegisterRepository.save(register);
+            }
+        } catch (Exception e) {
+            log.error("Error recording {} transactions in tax lot register for user: {} and fund: {}", writes.size(), userId, fundId, e);
+        }
+    }
+
+    @Override
+    public Optional<TaxLotRegister> getRegister(String userId, Integer fundId) {
+        try {
+            TaxLotRegister register = taxLotRegisterRepository.findByUserIdAndFundId(userId, fundId).orElse(null);
+            if (register == null) {
+                register = buildAndSave(userId, fundId);
+            } else if (rollMaturedLots(register, IstDate.today())) {
+                register = saveRolled(userId, fundId);
+            }
+            return Optional.of(register);
+        } catch (Exception e) {
+            log.error("Error getting tax lot register for user: {} and fund: {}", userId, fundId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public List<TaxLotRegister> getRegisters(String userId, List<Integer> fundIds) {
+        int today = IstDate.today();
+        Map<Integer, TaxLotRegister> existing = taxLotRegisterRepository.findByUserId(userId).stream().collect(Collectors.toMap(TaxLotRegister::getFundId, Function.identity(), (a, b) -> a));
+
+        List<TaxLotRegister> registers = new ArrayList<>();
+        for (Integer fundId : fundIds) {
+            TaxLotRegister register = existing.get(fundId);
+            if (register == null) {
+                // Funds written before the register existed are built once, lazily.
+                registers.add(buildAndSave(userId, fundId));
+                continue;
+            }
+            if (rollMaturedLots(register, today)) {
+                register = saveRolled(userId, fundId);
+            }
+            registers.add(register);
+        }
+        return registers;
+    }
+
+    @Override
+    public Double getCurrentFinancialYearRealizedProfit(TaxLotRegister register) {
+        int currentFinancialYear = IstDate.financialYear(IstDate.today());
+        for (FinancialYearGains gains : register.getRealizedGains()) {
+            if (gains.getFinancialYear() == currentFinancialYear) {
+                return gains.getShortTermGains() + gains.getLongTermGains();
+            }
+        }
+        return 0.0;
+    }
+
+    @Override
+    public Optional<CapitalGainsReportDTO> getCapitalGainsReport(String userId) {
+        try {
+            log.info("Getting capital gains report for user: {}", userId);
+
+            // Registers are rebuilt by the write-behind refresh, so settle it first
+            userFundRefreshQueue.flushUser(userId);
+
+            List<Integer> fundIds = userFundRepository.findByUserId(userId).stream().map(UserFund::getFundId).toList();
+            List<TaxLotRegister> registers = getRegisters(userId, fundIds);
+
+            Map<Integer, double[]> byFinancialYear = new TreeMap<>(Comparator.reverseOrder());
+            double totalRealizedProfit = 0.0;
+            double unrealizedShortTermGains = 0.0;
+            double unrealizedLongTermGains = 0.0;
+            for (TaxLotRegister register : registers) {
+                totalRealizedProfit += register.getTotalRealizedProfit();
+                for (FinancialYearGains gains : register.getRealizedGains()) {
+                    double[] bucket = byFinancialYear.computeIfAbsent(gains.getFinancialYear(), fy -> new double[2]);
+                    bucket[0] += gains.getShortTermGains();
+                    bucket[1] += gains.getLongTermGains();
+                }
+                if (register.getOpenUnits() > 0) {
+                    Double currentNav = mfapiService.getLatestNav(register.getFundId());
+                    if (currentNav != null) {
+                        double longTermGain = register.getLongTermUnits() * currentNav - register.getLongTermInvested();
+                        double openGain = register.getOpenUnits() * currentNav - register.getOpenInvested();
+                        unrealizedLongTermGains += longTermGain;
+                        unrealizedShortTermGains += openGain - longTermGain;
+                    }
+                }
+            }
+
+            List<FinancialYearGainsDTO> financialYears = new ArrayList<>();
+            byFinancialYear.forEach((fy, gains) -> financialYears.add(new FinancialYearGainsDTO(IstDate.financialYearLabel(fy), gains[0], gains[1], gains[0] + gains[1])));
+
+            CapitalGainsReportDTO report = new CapitalGainsReportDTO();
+            report.setUserId(userId);
+            report.setCurrentFinancialYear(IstDate.financialYearLabel(IstDate.financialYear(IstDate.today())));
+            report.setFinancialYears(financialYears);
+            report.setTotalRealizedProfit(totalRealizedProfit);
+            report.setUnrealizedShortTermGains(unrealizedShortTermGains);
+            report.setUnrealizedLongTermGains(unrealizedLongTermGains);
+            return Optional.of(report);
+        } catch (Exception e) {
+            log.error("Error getting capital gains report for user: {}", userId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public String deleteRegister(String userId, Integer fundId) {
+        try {
+            taxLotRegisterRepository.deleteByUserIdAndFundId(userId, fundId);
+            return "Success: Tax lot register deleted for user: " + userId + " and fund: " + fundId;
+        } catch (Exception e) {
+            log.error("Error deleting tax lot register for user: {} and fund: {}", userId, fundId, e);
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public String deleteRegisters(String userId) {
+        try {
+            taxLotRegisterRepository.deleteByUserId(userId);
+            return "Success: Tax lot registers deleted for user: " + userId;
+        } catch (Exception e) {
+            log.error("Error deleting tax lot registers for user: {}", userId, e);
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    // First build of a register; concurrent first reads of the same fund build it once.
+    private TaxLotRegister buildAndSave(String userId, Integer fundId) {
+        synchronized (lockFor(userId, fundId)) {
+            Optional<TaxLotRegister> existing = taxLotRegisterRepository.findByUserIdAndFundId(userId, fundId);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            TaxLotRegister register = new TaxLotRegister();
+            fillRegister(register, userId, fundId, transactionService.getTransactionsByUserIdAndFundIdOrderByDateAsc(userId, fundId));
+            try {
+                return taxLotRegisterRepository.save(register);
+            } catch (DuplicateKeyException e) {
+                // Another instance built it first; its copy is as current as ours.
+                log.debug("Tax lot register for user: {} and fund: {} was built concurrently", userId, fundId);
+                return taxLotRegisterRepository.findByUserIdAndFundId(userId, fundId).orElse(register);
+            }
+        }
+    }
+
+    private void fillRegister(TaxLotRegister register, String userId, Integer fundId, List<Transaction> transactions) {
+        int today = IstDate.today();
+        double openUnits = 0.0;
+        double openInvested = 0.0;
+        double longTermUnits = 0.0;
+        double longTermInvested = 0.0;
+        double totalRealizedProfit = 0.0;
+        TreeMap<Integer, AgingBucket> agingBuckets = new TreeMap<>();
+        TreeMap<Integer, FinancialYearGains> realizedGains = new TreeMap<>();
+
+        for (Transaction transaction : transactions) {
+            if (!"BUY".equalsIgnoreCase(transaction.getTransactionType())) {
+                continue;
+            }
+            int buyDay = IstDate.fromEpochSecond(transaction.getDate());
+            if (!Boolean.TRUE.equals(transaction.getIsRedeemed())) {
+                openUnits += transaction.getUnits();
+                openInvested += transaction.getAmount();
+                int longTermFromDay = IstDate.plusOneYear(buyDay);
+                if (longTermFromDay <= today) {
+                    longTermUnits += transaction.getUnits();
+                    longTermInvested += transaction.getAmount();
+                } else {
+                    AgingBucket bucket = agingBuckets.computeIfAbsent(longTermFromDay, day -> new AgingBucket(day, 0.0, 0.0));
+                    bucket.setUnits(bucket.getUnits() + transaction.getUnits());
+                    bucket.setInvested(bucket.getInvested() + transaction.getAmount());
+                }
+            } else if (transaction.getBookedProfit() != null && transaction.getSellDate() != null) {
+                int sellDay = IstDate.fromEpochSecond(transaction.getSellDate());
+                FinancialYearGains gains = realizedGains.computeIfAbsent(IstDate.financialYear(sellDay), fy -> new FinancialYearGains(fy, 0.0, 0.0));
+                if (IstDate.isOneYearOrMoreOld(buyDay, sellDay)) {
+                    gains.setLongTermGains(gains.getLongTermGains() + transaction.getBookedProfit());
+                } else {
+                    gains.setShortTermGains(gains.getShortTermGains() + transaction.getBookedProfit());
+                }
+                totalRealizedProfit += transaction.getBookedProfit();
+            }
+        }
+
+        register.setUserId(userId);
+        register.setFundId(fundId);
+        register.setOpenUnits(openUnits);
+        register.setOpenInvested(openInvested);
+        register.setLongTermUnits(longTermUnits);
+        register.setLongTermInvested(longTermInvested);
+        register.setAgingBuckets(new ArrayList<>(agingBuckets.values()));
+        register.setRealizedGains(new ArrayList<>(realizedGains.values()));
+        register.setTotalRealizedProfit(totalRealizedProfit);
+    }
+
+    // Persists a roll against the stored register, so a write applied since it was read is kept.
+    private TaxLotRegister saveRolled(String userId, Integer fundId) {
+        synchronized (lockFor(userId, fundId)) {
+            TaxLotRegister register = taxLotRegisterRepository.findByUserIdAndFundId(userId, fundId).orElse(null);
+            if (register == null) {
+                return buildAndSave(userId, fundId);
+            }
+            if (rollMaturedLots(register, IstDate.today())) {
+                taxLotRegisterRepository.save(register);
+            }
+            return register;
+        }
+    }
+
+    // Adds (sign 1) or removes (sign -1) an open BUY lot.
+    private static boolean applyBuy(TaxLotRegister register, Transaction buy, double sign, int today) {
+        if (Boolean.TRUE.equals(buy.getIsRedeemed())) {
+            return false;
+        }
+        addOpenLot(register, IstDate.fromEpochSecond(buy.getDate()), sign * buy.getUnits(), sign * buy.getAmount(), today);
+        return true;
+    }
+
+    // Releases the lots a SELL consumed, as recorded in its RedeemedLots, and books their gains
+    // into the financial year of the sale. Returns false, changing nothing, when the linkage is incomplete.
+    private boolean applySell(TaxLotRegister register, Transaction sell, int today) {
+        List<RedeemedLot> lots = sell.getRedeemedLots();
+        if (lots == null || lots.isEmpty() || lots.stream().anyMatch(lot -> lot.getAmount() == null)) {
+            return false;
+        }
+        List<String> ids = new ArrayList<>();
+        for (RedeemedLot lot : lots) {
+            ids.add(lot.getTransactionId());
+            if (lot.getRemainderTransactionId() != null) {
+                ids.add(lot.getRemainderTransactionId());
+            }
+        }
+        Map<String, Transaction> byId = transactionRepository.findAllById(ids).stream().collect(Collectors.toMap(Transaction::getId, Function.identity()));
+        if (!byId.keySet().containsAll(ids)) {
+            return false;
+        }
+
+        for (RedeemedLot lot : lots) {
+            Transaction consumed = byId.get(lot.getTransactionId());
+            Transaction remainder = lot.getRemainderTransactionId() == null ? null : byId.get(lot.getRemainderTransactionId());
+            int buyDay = IstDate.fromEpochSecond(consumed.getDate());
+            // The whole lot leaves the open position; an unsold remainder comes back as its own lot.
+            double released = lot.getAmount() - (remainder != null ? remainder.getAmount() : 0.0);
+            addOpenLot(register, buyDay, -lot.getUnits(), -released, today);
+
+            double profit = consumed.getBookedProfit() != null ? consumed.getBookedProfit() : 0.0;
+            int sellDay = IstDate.fromEpochSecond(consumed.getSellDate() != null ? consumed.getSellDate() : sell.getDate());
+            FinancialYearGains gains = realizedGains(register, IstDate.financialYear(sellDay));
+            if (IstDate.isOneYearOrMoreOld(buyDay, sellDay)) {
+                gains.setLongTermGains(gains.getLongTermGains() + profit);
+            } else {
+                gains.setShortTermGains(gains.getShortTermGains() + profit);
+            }
+            register.setTotalRealizedProfit(register.getTotalRealizedProfit() + profit);
+        }
+        return true;
+    }
+
+    private static void addOpenLot(TaxLotRegister register, int buyDay, double units, double invested, int today) {
+        register.setOpenUnits(register.getOpenUnits() + units);
+        register.setOpenInvested(register.getOpenInvested() + invested);
+        int longTermFromDay = IstDate.plusOneYear(buyDay);
+        if (longTermFromDay <= today) {
+            register.setLongTermUnits(register.getLongTermUnits() + units);
+            register.setLongTermInvested(register.getLongTermInvested() + invested);
+            return;
+        }
+        List<AgingBucket> buckets = register.getAgingBuckets();
+        int i = 0;
+        while (i < buckets.size() && buckets.get(i).getLongTermFromDay() < longTermFromDay) {
+            i++;
+        }
+        if (i == buckets.size() || buckets.get(i).getLongTermFromDay() != longTermFromDay) {
+            buckets.add(i, new AgingBucket(longTermFromDay, 0.0, 0.0));
+        }
+        AgingBucket bucket = buckets.get(i);
+        bucket.setUnits(bucket.getUnits() + units);
+        bucket.setInvested(bucket.getInvested() + invested);
+        if (bucket.getUnits() <= EMPTY_UNITS) {
+            buckets.remove(i);
+        }
+    }
+
+    private static FinancialYearGains realizedGains(TaxLotRegister register, int financialYear) {
+        List<FinancialYearGains> years = register.getRealizedGains();
+        int i = 0;
+        while (i < years.size() && years.get(i).getFinancialYear() < financialYear) {
+            i++;
+        }
+        if (i == years.size() || years.get(i).getFinancialYear() != financialYear) {
+            years.add(i, new FinancialYearGains(financialYear, 0.0, 0.0));
+        }
+        return years.get(i);
+    }
+
+    private Object lockFor(String userId, Integer fundId) {
+        return registerLocks.get(userId + ":" + fundId);
+    }
+
+    // Moves every bucket whose long-term day has arrived out of the short-term index; O(buckets rolled).
+    private boolean rollMaturedLots(TaxLotRegister register, int today) {
+        List<AgingBucket> buckets = register.getAgingBuckets();
+        int matured = 0;
+        while (matured < buckets.size() && buckets.get(matured).getLongTermFromDay() <= today) {
+            AgingBucket bucket = buckets.get(matured);
+            register.setLongTermUnits(register.getLongTermUnits() + bucket.getUnits());
+            register.setLongTermInvested(register.getLongTermInvested() + bucket.getInvested());
+            matured++;
+        }
+        if (matured == 0) {
+            return false;
+        }
+        buckets.subList(0, matured).clear();
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package com.stonks.service.impl;
+
+import com.stonks.exception.ApiException;
+import com.stonks.util.ChartWindow;
+import com.stonks.util.IstDate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds {@link ChartWindow}s from performance chart request parameters within the configured limits.
+ */
+@Component
+public class ChartWindowFactory {
+
+    private final int defaultMaxPoints;
+    private final int maxPointsLimit;
+    private final int maxPeriods;
+
+    public ChartWindowFactory(@Value("${stonks.chart.default-max-points:1000}") int defaultMaxPoints,
+                              @Value("${stonks.chart.max-points-limit:2000}") int maxPointsLimit,
+                              @Value("${stonks.chart.max-periods:4000}") int maxPeriods) {
+        this.defaultMaxPoints = defaultMaxPoints;
+        this.maxPointsLimit = maxPointsLimit;
+        this.maxPeriods = maxPeriods;
+    }
+
+    /**
+     * The whole monthly chart, as served before ranges and resolutions existed.
+     */
+    public ChartWindow monthly() {
+        return create(null, null, null, null);
+    }
+
+    /**
+     * @throws ApiException (400) for an invalid resolution, date or range
+     */
+    public ChartWindow create(String resolution, String from, String to, Integer maxPoints) {
+        int points = maxPoints == null ? defaultMaxPoints : Math.max(3, Math.min(maxPoints, maxPointsLimit));
+        try {
+            return ChartWindow.of(resolution, from, to, IstDate.today(), points, maxPeriods);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+}
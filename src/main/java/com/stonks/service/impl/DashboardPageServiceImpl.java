@@ -1,39 +1,50 @@
 package com.stonks.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stonks.dto.CombinedChartDTO;
 import com.stonks.dto.FundSummaryDTO;
-import com.stonks.dto.FundSummaryExtraDTO;
 import com.stonks.dto.HistoricDataDTO;
 import com.stonks.dto.MFAPIDTOs.MutualFundDTO;
-import com.stonks.dto.TransactionDTO;
 import com.stonks.dto.UserDashboardDTO;
 import com.stonks.dto.UserDashboardExtraDTO;
 import com.stonks.dto.UserFundDTO;
+import com.stonks.event.NavPublishedEvent;
+import com.stonks.event.PortfolioChangedEvent;
+import com.stonks.exception.ApiException;
+import com.stonks.model.TaxLotRegister;
+import com.stonks.model.Transaction;
 import com.stonks.model.User;
+import com.stonks.model.UserFund;
+import com.stonks.repository.TransactionRepository;
 import com.stonks.repository.UserRepository;
+import com.stonks.service.CapitalGainsService;
 import com.stonks.service.DashboardPageService;
 import com.stonks.service.MutualFundDataService;
-import com.stonks.service.TransactionService;
 import com.stonks.service.UserFundService;
+import com.stonks.service.impl.PortfolioFanOut.Outcome;
+import com.stonks.util.ChartWindow;
+import com.stonks.util.IstDate;
+import com.stonks.util.NavSeries;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.util.Pair;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
-import java.util.TreeMap;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Service
@@ -46,14 +57,103 @@ public class DashboardPageServiceImpl implements DashboardPageService {
 
 
     private final UserRepository userRepository;
-    private final TransactionService transactionService;
+    private final TransactionRepository transactionRepository;
     private final MutualFundDataService mutualFundDataService;
     private final UserFundService userFundService;
+    private final CapitalGainsService capitalGainsService;
+    private final ChartWindowFactory chartWindowFactory;
+    private final PortfolioFanOut portfolioFanOut;
+    private final DashboardSnapshotStore dashboardSnapshotStore;
+    private final DashboardStreamHub dashboardStreamHub;
+    private final UserFundRefreshQueue userFundRefreshQueue;
 
     @Override
     public Optional<UserDashboardDTO> getUserDashboard(String userId) {
         log.info("Getting user dashboard for user: {}", userId);
 
+        // Pending write-behind refreshes are applied first; they bump the write version.
+        userFundRefreshQueue.flushUser(userId);
+        UserDashboardDTO snapshot = currentSnapshot(userId);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+        return computeAndStoreDashboard(userId);
+    }
+
+    @Override
+    public Optional<UserDashboardDTO> getUserDashboard(User user, List<UserFund> userFunds) {
+        // The caller loaded the funds after flushing the user's pending refreshes.
+        UserDashboardDTO snapshot = currentSnapshot(user.getId());
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+        // Funds loaded earlier in the request may predate the write version read now, so this result
+        // is not stored; the snapshot is rebuilt in the background from a fresh load instead.
+        dashboardSnapshotStore.refreshLater(user.getId(), () -> computeAndStoreDashboard(user.getId()));
+        return computeUserDashboard(user, toUserFundDTOs(userFunds));
+    }
+
+    // The stored dashboard while its write and NAV versions still hold, otherwise null.
+    private UserDashboardDTO currentSnapshot(String userId) {
+        DashboardSnapshotStore.Snapshot snapshot = dashboardSnapshotStore.get(userId);
+        if (snapshot == null) {
+            return null;
+        }
+        if (snapshot.navVersion().equals(navVersion(snapshot.fundIds()))) {
+            dashboardSnapshotStore.recordHit();
+            return snapshot.dashboard();
+        }
+        dashboardSnapshotStore.recordStale();
+        return null;
+    }
+
+    @Override
+    public SseEmitter streamUserDashboard(String userId) {
+        UserDashboardDTO dashboard = getUserDashboard(userId)
+                .orElseThrow(() -> new ApiException("Dashboard not available for user: " + userId, HttpStatus.NOT_FOUND));
+        return dashboardStreamHub.subscribe(userId, dashboard);
+    }
+
+    @EventListener
+    public void onPortfolioChanged(PortfolioChangedEvent event) {
+        dashboardSnapshotStore.invalidate(event.getUserId());
+        // Users who have not opened the dashboard since it was last evicted, and are not streaming it, are computed on their next visit.
+        if (dashboardSnapshotStore.hasSnapshot(event.getUserId()) || dashboardStreamHub.hasSubscribers(event.getUserId())) {
+            dashboardSnapshotStore.refreshLater(event.getUserId(), () -> computeAndStoreDashboard(event.getUserId()));
+        }
+    }
+
+    @EventListener
+    public void onNavPublished(NavPublishedEvent event) {
+        for (String userId : dashboardSnapshotStore.usersHolding(event.getSchemeCode())) {
+            dashboardSnapshotStore.refreshLater(userId, () -> computeAndStoreDashboard(userId));
+        }
+    }
+
+    // Live computation, kept as the user's snapshot unless it is partial or a write raced it, and
+    // pushed to the user's open dashboard streams.
+    private Optional<UserDashboardDTO> computeAndStoreDashboard(String userId) {
+        long writeVersion = dashboardSnapshotStore.writeVersion(userId);
+        Optional<UserDashboardDTO> dashboard = computeUserDashboard(userId);
+        if (dashboard.isPresent() && !Boolean.TRUE.equals(dashboard.get().getPartial())) {
+            List<Integer> fundIds = dashboard.get().getFundSummaries().stream().map(FundSummaryDTO::getFundId).toList();
+            dashboardSnapshotStore.put(userId, new DashboardSnapshotStore.Snapshot(writeVersion, fundIds, navVersion(fundIds), dashboard.get()));
+            dashboardStreamHub.publish(userId, dashboard.get());
+        }
+        return dashboard;
+    }
+
+    // Latest NAV date of each fund, from the cached NAV series.
+    private String navVersion(List<Integer> fundIds) {
+        StringBuilder navVersion = new StringBuilder();
+        for (Integer fundId : fundIds) {
+            NavSeries series = mutualFundDataService.getNavSeries(fundId);
+            navVersion.append(fundId).append(':').append(series.isEmpty() ? 0 : series.latestDay()).append(',');
+        }
+        return navVersion.toString();
+    }
+
+    private Optional<UserDashboardDTO> computeUserDashboard(String userId) {
         try {
             // Get user details
             Optional<User> userOpt = userRepository.findById(userId);
@@ -62,23 +162,40 @@ public class DashboardPageServiceImpl implements DashboardPageService {
                 return Optional.empty();
             }
 
-            User user = userOpt.get();
-
             // Get all user funds
-            List<UserFundDTO> userFunds = userFundService.getUserFundsByUserId(userId);
+            return computeUserDashboard(userOpt.get(), userFundService.getUserFundsByUserId(userId));
+        } catch (Exception e) {
+            log.error("Error creating dashboard for user: {}", userId, e);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<UserDashboardDTO> computeUserDashboard(User user, List<UserFundDTO> userFunds) {
+        String userId = user.getId();
+        try {
             if (userFunds.isEmpty()) {
                 log.info("No funds found for user: {}", userId);
                 return createEmptyDashboard(userId, user.getName());
             }
 
-            // Fetch all fund summaries in parallel
-            List<CompletableFuture<Optional<FundSummaryDTO>>> futures = userFunds.stream().map(fund -> userFundService.getFundSummaryAsync(userId, fund.getFundId())).toList();
-
-            // Wait for all to complete
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-
-            // Collect results
-            List<FundSummaryDTO> fundSummaries = futures.stream().map(CompletableFuture::join).filter(Optional::isPresent).map(Optional::get).toList();
+            // Fetch all fund summaries in parallel, up to the fan-out deadline
+            List<Outcome<Optional<FundSummaryDTO>>> outcomes = portfolioFanOut.invokeAll(userFunds.stream().<Supplier<Optional<FundSummaryDTO>>>map(fund -> () -> userFundService.getFundSummary(userId, fund.getFundId())).toList());
+
+            // Collect results; funds that timed out are listed without values and left out of the totals
+            List<FundSummaryDTO> fundSummaries = new ArrayList<>(userFunds.size());
+            List<Integer> timedOutFundIds = new ArrayList<>();
+            for (int i = 0; i < userFunds.size(); i++) {
+                Outcome<Optional<FundSummaryDTO>> outcome = outcomes.get(i);
+                if (outcome.timedOut()) {
+                    timedOutFundIds.add(userFunds.get(i).getFundId());
+                    fundSummaries.add(timedOutSummary(userFunds.get(i)));
+                } else if (outcome.value() != null && outcome.value().isPresent()) {
+                    fundSummaries.add(outcome.value().get());
+                }
+            }
+            if (!timedOutFundIds.isEmpty()) {
+                log.warn("Dashboard for user: {} is partial; fund summaries timed out for funds: {}", userId, timedOutFundIds);
+            }
 
             // Calculate totals
             double totalInvested = 0.0;
@@ -88,6 +205,9 @@ public class DashboardPageServiceImpl implements DashboardPageService {
 
 
             for (FundSummaryDTO fundSummary : fundSummaries) {
+                if (Boolean.TRUE.equals(fundSummary.getTimedOut())) {
+                    continue;
+                }
                 if (Boolean.TRUE.equals(fundSummary.getIsEmergency())) {
                     totalEmergencyFundValue += fundSummary.getTotalValue();
                 } else {
@@ -112,6 +232,8 @@ public class DashboardPageServiceImpl implements DashboardPageService {
             dashboard.setTotalEmergencyFundValue(totalEmergencyFundValue);
             dashboard.setTodayProfit(todayTotalProfit);
             dashboard.setTodayMessage(getDailyInvestmentMessage(todayTotalProfit));
+            dashboard.setPartial(!timedOutFundIds.isEmpty());
+            dashboard.setTimedOutFundIds(timedOutFundIds);
 
             log.info("Successfully created dashboard for user: {} with {} funds", userId, fundSummaries.size());
             return Optional.of(dashboard);
@@ -125,7 +247,6 @@ public class DashboardPageServiceImpl implements DashboardPageService {
 
     @Override
     public Optional<UserDashboardExtraDTO> getUserDashboardExtra(String userId) {
-
         try {
             // Get user details
             Optional<User> userOpt = userRepository.findById(userId);
@@ -134,55 +255,47 @@ public class DashboardPageServiceImpl implements DashboardPageService {
                 return Optional.empty();
             }
 
-            User user = userOpt.get();
-
             // Get all user funds
-            List<UserFundDTO> userFunds = userFundService.getUserFundsByUserId(userId);
+            return computeDashboardExtra(userId, userFundService.getUserFundsByUserId(userId), () -> transactionRepository.streamByUserId(userId));
+        } catch (Exception e) {
+            log.error("Error creating dashboard for user: {}", userId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<UserDashboardExtraDTO> getUserDashboardExtra(User user, List<UserFund> userFunds, List<Transaction> transactions) {
+        return computeDashboardExtra(user.getId(), toUserFundDTOs(userFunds), transactions::stream);
+    }
+
+    private Optional<UserDashboardExtraDTO> computeDashboardExtra(String userId, List<UserFundDTO> userFunds, Supplier<Stream<Transaction>> transactions) {
+        try {
             if (userFunds.isEmpty()) {
                 log.info("No funds found for user: {}", userId);
                 return Optional.empty();
             }
 
 
-            Double totalLongTermGains = 0.0;
-            Double totalRealizedProfit = 0.0;
-            Double totalCurrentYearTotalRealizedProfit = 0.0;
-            Double currentValue = 0.0;
-            List<TransactionDTO> transactions = new ArrayList<>();
-            for (UserFundDTO userFund : userFunds) {
-                Optional<FundSummaryExtraDTO> fundSummaryExtraOpt = userFundService.getFundSummaryExtra(userId, userFund.getFundId());
-
-                if (fundSummaryExtraOpt.isPresent()) {
-                    FundSummaryExtraDTO fundSummaryExtra = fundSummaryExtraOpt.get();
-
-                    // Track emergency funds
-                    if (Boolean.FALSE.equals(userFund.getIsEmergency())) {
-                        totalCurrentYearTotalRealizedProfit += fundSummaryExtra.getCurrentYearTotalRealizedProfit();
-                        totalLongTermGains += fundSummaryExtra.getLongTermGains();
-                        totalRealizedProfit += fundSummaryExtra.getTotalRealizedProfit();
-                        List<TransactionDTO> fundTransactions = transactionService.getTransactionsByUserIdAndFundId(userId, userFund.getFundId());
-                        transactions.addAll(fundTransactions);
-                        Double currentNAV = mutualFundDataService.getLatestNav(userFund.getFundId());
-                        if (userFund.getUnits() == null) {
-                            Pair<Double, Double> result = transactionService.getTotalUnitsAndInvestedAmount(userFund.getUserId(), userFund.getFundId());
-                            userFund.setUnits(result.getFirst());
-                            userFundService.updateUserFundByUserIdAndFundId(userFund.getUserId(), userFund.getFundId(), userFund);
-                        }
-                        currentValue += (userFund.getUnits() * currentNAV);
-
-                    }
-                }
-            }
-
-            Double xirr = transactionService.calculateXIRR(transactions, currentValue);
+            // Emergency funds are excluded from the extras
+            List<UserFundDTO> investedFunds = userFunds.stream().filter(fund -> Boolean.FALSE.equals(fund.getIsEmergency())).toList();
 
+            // Three round trips whatever the fund count: the registers, one batch of latest NAVs
+            // and one cursor over the user's transactions
+            List<Integer> fundIds = investedFunds.stream().map(UserFundDTO::getFundId).toList();
+            List<TaxLotRegister> registers = capitalGainsService.getRegisters(userId, fundIds);
+            Map<Integer, Double> navs = mutualFundDataService.getLatestNavs(fundIds);
 
-            // Build dashboard extra DTO
-            UserDashboardExtraDTO dashboardExtra = new UserDashboardExtraDTO();
-            dashboardExtra.setXirr(xirr);
-            dashboardExtra.setLongTermGains(totalLongTermGains);
-            dashboardExtra.setTotalRealizedProfit(totalRealizedProfit);
-            dashboardExtra.setCurrentYearTotalRealizedProfit(totalCurrentYearTotalRealizedProfit);
+            PortfolioExtrasEngine engine = new PortfolioExtrasEngine(registers.stream().map(TaxLotRegister::getFundId).collect(Collectors.toSet()));
+            for (TaxLotRegister register : registers) {
+                engine.addRegister(register, navs.get(register.getFundId()), capitalGainsService.getCurrentFinancialYearRealizedProfit(register));
+            }
+            try (Stream<Transaction> userTransactions = transactions.get()) {
+                userTransactions.forEach(engine::addTransaction);
+            }
+            UserDashboardExtraDTO dashboardExtra = engine.result(IstDate.today());
+            if (dashboardExtra.getPartial()) {
+                log.warn("Dashboard extras for user: {} are partial; no latest NAV for funds: {}", userId, dashboardExtra.getTimedOutFundIds());
+            }
 
             return Optional.of(dashboardExtra);
 
@@ -193,7 +306,10 @@ public class DashboardPageServiceImpl implements DashboardPageService {
     }
 
 
-    public List<HistoricDataDTO> getCombinedHistoricData(String userId) {
+    @Override
+    public CombinedChartDTO getCombinedHistoricData(String userId, String resolution, String from, String to, Integer maxPoints, List<String> benchmarks) {
+        ChartWindow window = chartWindowFactory.create(resolution, from, to, maxPoints);
+        List<String> comparisons = userFundService.resolveComparisons(benchmarks);
 
         try {
             // Get user details
@@ -203,58 +319,67 @@ public class DashboardPageServiceImpl implements DashboardPageService {
                 return null;
             }
 
-            User user = userOpt.get();
-
             // Get all user funds
-            List<UserFundDTO> userFunds = userFundService.getUserFundsByUserId(userId);
+            return combinedHistoricData(userId, userFundService.getUserFundsByUserId(userId), window,
+                    userFund -> userFundService.getPerformanceChart(userId, userFund.getFundId(), window, comparisons));
+        } catch (Exception e) {
+            log.error("Error creating dashboard for user: {}", userId, e);
+            return combinedChart(new ArrayList<>(), new ArrayList<>());
+        }
+    }
+
+    @Override
+    public CombinedChartDTO getCombinedHistoricData(User user, List<UserFund> userFunds, List<Transaction> transactions, String resolution, String from, String to, Integer maxPoints, List<String> benchmarks) {
+        ChartWindow window = chartWindowFactory.create(resolution, from, to, maxPoints);
+        List<String> comparisons = userFundService.resolveComparisons(benchmarks);
+        Map<Integer, List<Transaction>> byFund = transactions.stream().collect(Collectors.groupingBy(Transaction::getFundId));
+        return combinedHistoricData(user.getId(), toUserFundDTOs(userFunds), window,
+                userFund -> userFundService.getPerformanceChart(userFund, () -> byFund.getOrDefault(userFund.getFundId(), List.of()), window, comparisons));
+    }
+
+    private CombinedChartDTO combinedHistoricData(String userId, List<UserFundDTO> userFunds, ChartWindow window, Function<UserFundDTO, List<HistoricDataDTO>> chart) {
+        try {
             if (userFunds.isEmpty()) {
                 log.info("No funds found for user: {}", userId);
-                return null;
+                return combinedChart(new ArrayList<>(), new ArrayList<>());
             }
 
-            List<CompletableFuture<List<HistoricDataDTO>>> futures = userFunds.stream().filter(f -> !f.getIsEmergency()).map(userFund -> userFundService.getHistoricDataAsync(userId, userFund.getFundId())).toList();
-
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-
-
-            List<List<HistoricDataDTO>> allFundData = futures.stream().map(CompletableFuture::join).toList();
-
-
-            Map<String, HistoricDataDTO> monthlyAggregate = new TreeMap<>();
-
-            for (List<HistoricDataDTO> fundData : allFundData) {
-                for (HistoricDataDTO data : fundData) {
-                    monthlyAggregate.merge(data.getMonth(), new HistoricDataDTO(data), (existing, next) -> {
-                        existing.setTotalValue(existing.getTotalValue() + next.getTotalValue());
-                        existing.setTotalProfit(existing.getTotalProfit() + next.getTotalProfit());
-                        existing.setTotalInvested(existing.getTotalInvested() + next.getTotalInvested());
-                        existing.setThisMonthProfit(existing.getThisMonthProfit() + next.getThisMonthProfit());
-                        existing.setThisMonthInvested(existing.getThisMonthInvested() + next.getThisMonthInvested());
-                        existing.setTotalValueBenchmark(existing.getTotalValueBenchmark() + next.getTotalValueBenchmark());
-                        existing.setTotalValueNifty50(existing.getTotalValueNifty50() + next.getTotalValueNifty50());
-                        existing.setTotalValueNifty100(existing.getTotalValueNifty100() + next.getTotalValueNifty100());
-                        if (existing.getTotalInvested() != 0) {
-                            existing.setGrowthPercent((existing.getTotalProfit() / existing.getTotalInvested()) * 100.0);
-                        }
-                        if (existing.getTotalValueBenchmark() != 0) {
-                            existing.setAlphaPercent((((existing.getTotalValue()) / existing.getTotalValueBenchmark()) - 1) * 100.0);
-                        }
-                        return existing;
-                    });
+            List<UserFundDTO> chartedFunds = userFunds.stream().filter(f -> !f.getIsEmergency()).toList();
+            List<Outcome<List<HistoricDataDTO>>> outcomes = portfolioFanOut.invokeAll(chartedFunds.stream().<Supplier<List<HistoricDataDTO>>>map(userFund -> () -> chart.apply(userFund)).toList());
+
+            // A fund whose chart missed the deadline is left out of this response rather than holding
+            // it up, and listed so the client can tell the chart is partial.
+            List<List<HistoricDataDTO>> allFundData = new ArrayList<>(outcomes.size());
+            List<Integer> timedOutFundIds = new ArrayList<>();
+            for (int i = 0; i < outcomes.size(); i++) {
+                Outcome<List<HistoricDataDTO>> outcome = outcomes.get(i);
+                if (outcome.timedOut()) {
+                    timedOutFundIds.add(chartedFunds.get(i).getFundId());
                 }
+                allFundData.add(outcome.value() == null ? List.of() : outcome.value());
+            }
+            if (!timedOutFundIds.isEmpty()) {
+                log.warn("Combined chart for user: {} is partial; charts timed out for funds: {}", userId, timedOutFundIds);
             }
 
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ENGLISH);
-
-            return monthlyAggregate.values().stream().sorted(Comparator.comparing(data -> {
-                return YearMonth.parse(data.getMonth(), formatter).atDay(1);
-            })).toList();
+            List<HistoricDataDTO> combined = window.isMonthly()
+                    ? PortfolioChartAggregator.aggregate(allFundData, IstDate.monthIndex(IstDate.today()))
+                    : PortfolioChartAggregator.aggregateAligned(allFundData);
+            return combinedChart(window.downsample(combined), timedOutFundIds);
         } catch (Exception e) {
             log.error("Error creating dashboard for user: {}", userId, e);
-            return new ArrayList<>();
+            return combinedChart(new ArrayList<>(), new ArrayList<>());
         }
     }
 
+    private static CombinedChartDTO combinedChart(List<HistoricDataDTO> chartData, List<Integer> timedOutFundIds) {
+        CombinedChartDTO chart = new CombinedChartDTO();
+        chart.setChartData(chartData);
+        chart.setPartial(!timedOutFundIds.isEmpty());
+        chart.setTimedOutFundIds(timedOutFundIds);
+        return chart;
+    }
+
 
     @Override
     public List<MutualFundDTO> getAllFundSearchResults(String searchText) {
@@ -374,8 +499,28 @@ public class DashboardPageServiceImpl implements DashboardPageService {
         dashboard.setProfitLoss(0.0);
         dashboard.setProfitLossPercent(0.0);
         dashboard.setTotalEmergencyFundValue(0.0);
+        dashboard.setPartial(false);
+        dashboard.setTimedOutFundIds(new ArrayList<>());
         return Optional.of(dashboard);
     }
 
+    private static List<UserFundDTO> toUserFundDTOs(List<UserFund> userFunds) {
+        return userFunds.stream().map(userFund -> new UserFundDTO(userFund.getUserId(), userFund.getFundId(), userFund.getFundName(), userFund.getIsEmergency(),
+                userFund.getTag(), userFund.getBenchmark(), userFund.getUnits(), userFund.getInvestmentAmount())).toList();
+    }
+
+    // Placeholder row for a fund whose summary missed the deadline: identity and book values only.
+    private static FundSummaryDTO timedOutSummary(UserFundDTO userFund) {
+        FundSummaryDTO fundSummary = new FundSummaryDTO();
+        fundSummary.setName(userFund.getFundName());
+        fundSummary.setFundId(userFund.getFundId());
+        fundSummary.setTag(userFund.getTag());
+        fundSummary.setIsEmergency(userFund.getIsEmergency());
+        fundSummary.setTotalInvested(userFund.getInvestmentAmount());
+        fundSummary.setTotalUnits(userFund.getUnits());
+        fundSummary.setTimedOut(true);
+        return fundSummary;
+    }
+
 
 }
@@ -0,0 +1,174 @@
+package com.stonks.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stonks.dto.UserDashboardDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Materialized dashboard per user.
+ * <p>
+ * A snapshot records the user's write version when its computation started and the latest NAV
+ * date of each of its funds. It is served only while both still hold: every portfolio write bumps
+ * the version, and a fund whose NAV moved on changes the NAV version. Recomputations are queued
+ * per user and coalesced, so a burst of writes or a day's NAV publications costs one refresh each.
+ * <p>
+ * Write versions are drawn from one counter and held in a cache bounded like the snapshots. A user
+ * whose version was evicted is given a fresh one on the next read, so eviction can only make a
+ * snapshot stale, never make a stale one current again.
+ */
+@Component
+@Slf4j
+public class DashboardSnapshotStore {
+
+    public record Snapshot(long writeVersion, List<Integer> fundIds, String navVersion, UserDashboardDTO dashboard) {
+    }
+
+    private final Cache<String, Snapshot> snapshots;
+    private final Cache<String, Long> writeVersions;
+    private final AtomicLong versions = new AtomicLong();
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public DashboardSnapshotStore(@Value("${stonks.dashboard-snapshot.max-size:10000}") long maxSize,
+                                  @Value("${stonks.dashboard-snapshot.threads:2}") int threads,
+                                  @Value("${stonks.dashboard-snapshot.queue-capacity:1000}") int queueCapacity) {
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofDays(7))
+                .build();
+        this.writeVersions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofDays(7))
+                .build();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-snapshot-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Current write version of the user; read it before loading anything a snapshot is built from.
+     */
+    public long writeVersion(String userId) {
+        return writeVersions.get(userId, id -> versions.incrementAndGet());
+    }
+
+    /**
+     * Marks the user's portfolio as written; snapshots computed before now are no longer served.
+     */
+    public void invalidate(String userId) {
+        writeVersions.put(userId, versions.incrementAndGet());
+    }
+
+    /**
+     * Whether the user has a snapshot, current or not; only such users are refreshed eagerly.
+     */
+    public boolean hasSnapshot(String userId) {
+        return snapshots.getIfPresent(userId) != null;
+    }
+
+    public Snapshot get(String userId) {
+        Snapshot snapshot = snapshots.getIfPresent(userId);
+        if (snapshot == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (snapshot.writeVersion() != writeVersion(userId)) {
+            stale.incrementAndGet();
+            return null;
+        }
+        return snapshot;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordStale() {
+        stale.incrementAndGet();
+    }
+
+    /**
+     * Stores the snapshot unless the user wrote since its computation started.
+     */
+    public void put(String userId, Snapshot snapshot) {
+        if (snapshot.writeVersion() == writeVersion(userId)) {
+            snapshots.put(userId, snapshot);
+        }
+    }
+
+    /**
+     * Users whose snapshot includes the scheme.
+     */
+    public List<String> usersHolding(Integer schemeCode) {
+        return snapshots.asMap().entrySet().stream().filter(entry -> entry.getValue().fundIds().contains(schemeCode)).map(Map.Entry::getKey).toList();
+    }
+
+    /**
+     * Queues a recomputation for the user unless one is already waiting. When the queue is full the
+     * request is dropped and the next read computes the dashboard live.
+     */
+    public void refreshLater(String userId, Runnable refresh) {
+        if (!queued.add(userId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                queued.remove(userId);
+                try {
+                    refresh.run();
+                    refreshed.incrementAndGet();
+                } catch (Exception e) {
+                    log.error("Error refreshing dashboard snapshot for user: {}", userId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(userId);
+            dropped.incrementAndGet();
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("snapshots", snapshots.estimatedSize());
+        stats.put("writeVersions", writeVersions.estimatedSize());
+        stats.put("queued", (long) queued.size());
+        stats.put("executorQueueSize", (long) executor.getQueue().size());
+        stats.put("hits", hits.get());
+        stats.put("stale", stale.get());
+        stats.put("misses", misses.get());
+        stats.put("refreshed", refreshed.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,371 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.DashboardDeltaDTO;
+import com.stonks.dto.DashboardDeltaDTO.FundDelta;
+import com.stonks.dto.FundSummaryDTO;
+import com.stonks.dto.UserDashboardDTO;
+import com.stonks.exception.ApiException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-sent dashboard updates per user.
+ * <p>
+ * Connections are held as {@link SseEmitter}s on the servlet container's async support, so an
+ * idle subscriber costs an open socket and no thread. Each user's channel remembers the last
+ * dashboard it pushed; a recomputed dashboard is diffed against it and only the funds whose
+ * values moved, plus the totals, are sent. Recomputations that change nothing are not sent.
+ * <p>
+ * Deltas are diffed and numbered under the channel's lock and queued on each connection's own
+ * outbox; the writes happen on the hub's bounded sender pool, at most one drain per connection at
+ * a time, so publishers only ever enqueue. A connection whose outbox falls more than
+ * {@code max-pending} events behind is dropped, and its client reconnects to a full dashboard.
+ * Heartbeats are queued the same way from the hub's own scheduler, so neither a slow client nor
+ * the heartbeat pass can hold up the dashboard-snapshot threads or the application's scheduled
+ * jobs.
+ */
+@Component
+@Slf4j
+public class DashboardStreamHub {
+
+    private static final class Channel {
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private UserDashboardDTO last;
+        private long sequence;
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<DashboardDeltaDTO> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Exception failure;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    // Queued in place of a delta; written as a comment line.
+    private static final DashboardDeltaDTO KEEPALIVE = new DashboardDeltaDTO();
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final long timeoutMillis;
+    private final int maxSubscribers;
+    private final int maxPending;
+    private final ScheduledExecutorService heartbeats;
+    private final ThreadPoolExecutor senders;
+
+    private final AtomicLong pushed = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong lagging = new AtomicLong();
+
+    public DashboardStreamHub(@Value("${stonks.dashboard-stream.timeout-ms:1800000}") long timeoutMillis,
+                              @Value("${stonks.dashboard-stream.max-subscribers:50000}") int maxSubscribers,
+                              @Value("${stonks.dashboard-stream.heartbeat-ms:25000}") long heartbeatMillis,
+                              @Value("${stonks.dashboard-stream.sender-threads:8}") int senderThreads,
+                              @Value("${stonks.dashboard-stream.max-pending:32}") int maxPending) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxSubscribers = maxSubscribers;
+        this.maxPending = maxPending;
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-stream-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        // At most one drain per connection is queued, so the subscriber limit bounds the queue.
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxSubscribers), runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-stream-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.senders.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Opens a stream for the user whose first event is the given dashboard in full.
+     *
+     * @throws ApiException 503 when the subscriber limit is reached
+     */
+    public SseEmitter subscribe(String userId, UserDashboardDTO current) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new ApiException("Too many dashboard subscribers, please retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        // Joining and queueing the baseline happen together, so every later delta reaches this
+        // connection after it.
+        channels.compute(userId, (id, existing) -> {
+            Channel c = existing != null ? existing : new Channel();
+            synchronized (c) {
+                c.subscribers.add(subscriber);
+                if (c.last == null) {
+                    c.last = current;
+                }
+                // Deltas carry absolute values, so later ones apply on top of this baseline too.
+                DashboardDeltaDTO full = delta(null, current);
+                full.setSequence(c.sequence);
+                subscriber.pending.incrementAndGet();
+                subscriber.outbox.add(full);
+            }
+            return c;
+        });
+        emitter.onCompletion(() -> remove(userId, subscriber));
+        emitter.onTimeout(() -> remove(userId, subscriber));
+        emitter.onError(e -> remove(userId, subscriber));
+        schedule(userId, subscriber);
+        return emitter;
+    }
+
+    public boolean hasSubscribers(String userId) {
+        return channels.containsKey(userId);
+    }
+
+    /**
+     * Queues what changed since the user's last pushed dashboard for all of their connections.
+     */
+    public void publish(String userId, UserDashboardDTO dashboard) {
+        Channel channel = channels.get(userId);
+        if (channel == null) {
+            return;
+        }
+        List<Subscriber> recipients;
+        synchronized (channel) {
+            DashboardDeltaDTO delta = delta(channel.last, dashboard);
+            if (delta == null) {
+                unchanged.incrementAndGet();
+                return;
+            }
+            channel.last = dashboard;
+            delta.setSequence(++channel.sequence);
+            recipients = List.copyOf(channel.subscribers);
+            for (Subscriber subscriber : recipients) {
+                enqueue(subscriber, delta);
+            }
+            pushed.incrementAndGet();
+        }
+        for (Subscriber subscriber : recipients) {
+            schedule(userId, subscriber);
+        }
+    }
+
+    // Comment lines keep proxies from closing idle streams and surface dead connections. Only
+    // idle connections get one; a connection with events queued is about to be written anyway.
+    void heartbeat() {
+        try {
+            for (Map.Entry<String, Channel> entry : channels.entrySet()) {
+                for (Subscriber subscriber : entry.getValue().subscribers) {
+                    if (subscriber.pending.get() == 0) {
+                        enqueue(subscriber, KEEPALIVE);
+                        schedule(entry.getKey(), subscriber);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; the next beat tries again.
+            log.error("Error sending dashboard stream heartbeats", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("users", (long) channels.size());
+        stats.put("subscribers", (long) subscribers.get());
+        stats.put("maxSubscribers", (long) maxSubscribers);
+        stats.put("pushed", pushed.get());
+        stats.put("unchanged", unchanged.get());
+        stats.put("failed", failed.get());
+        stats.put("lagging", lagging.get());
+        stats.put("sendQueue", (long) senders.getQueue().size());
+        return stats;
+    }
+
+    // Closed connections are skipped; one that has fallen behind is dropped when it is next scheduled.
+    private void enqueue(Subscriber subscriber, DashboardDeltaDTO delta) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        subscriber.pending.incrementAndGet();
+        subscriber.outbox.add(delta);
+    }
+
+    // Hands the connection to the sender pool unless a drain for it is already queued or running.
+    private void schedule(String userId, Subscriber subscriber) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (subscriber.pending.get() > maxPending) {
+            lagging.incrementAndGet();
+            drop(userId, subscriber, new IOException("Dashboard stream fell more than " + maxPending + " events behind"));
+            return;
+        }
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            senders.execute(() -> drain(userId, subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.draining.set(false);
+            drop(userId, subscriber, e);
+        }
+    }
+
+    // Writes the connection's queued events in order. The re-check covers an event queued just as
+    // the drain finished, whose publisher saw the drain still running.
+    private void drain(String userId, Subscriber subscriber) {
+        try {
+            DashboardDeltaDTO next;
+            while (!subscriber.closed.get() && (next = subscriber.outbox.poll()) != null) {
+                subscriber.pending.decrementAndGet();
+                try {
+                    // Event builders accumulate their output, so each connection gets its own.
+                    subscriber.emitter.send(next == KEEPALIVE ? SseEmitter.event().comment("keepalive") : event(next));
+                } catch (IOException | IllegalStateException e) {
+                    drop(userId, subscriber, e);
+                }
+            }
+        } finally {
+            subscriber.draining.set(false);
+        }
+        if (subscriber.failure != null) {
+            complete(subscriber);
+        } else if (!subscriber.outbox.isEmpty()) {
+            schedule(userId, subscriber);
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder event(DashboardDeltaDTO delta) {
+        return SseEmitter.event().name("delta").id(String.valueOf(delta.getSequence())).data(delta);
+    }
+
+    private void drop(String userId, Subscriber subscriber, Exception e) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        failed.incrementAndGet();
+        log.debug("Dropping dashboard stream for user: {}: {}", userId, e.getMessage());
+        subscriber.outbox.clear();
+        remove(userId, subscriber);
+        subscriber.failure = e;
+        complete(subscriber);
+    }
+
+    // Completing takes the emitter's write lock, so a connection mid-write is completed by its drain
+    // once the write returns rather than by the publisher or heartbeat thread that dropped it.
+    private static void complete(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            subscriber.emitter.completeWithError(subscriber.failure);
+        }
+    }
+
+    private void remove(String userId, Subscriber subscriber) {
+        subscriber.closed.set(true);
+        boolean[] removed = new boolean[1];
+        channels.computeIfPresent(userId, (id, channel) -> {
+            removed[0] = channel.subscribers.remove(subscriber);
+            return channel.subscribers.isEmpty() ? null : channel;
+        });
+        if (removed[0]) {
+            subscribers.decrementAndGet();
+        }
+    }
+
+    // Funds whose values moved and the totals, or null when nothing the stream carries changed.
+    private static DashboardDeltaDTO delta(UserDashboardDTO last, UserDashboardDTO current) {
+        Map<Integer, FundSummaryDTO> previous = new HashMap<>();
+        if (last != null && last.getFundSummaries() != null) {
+            for (FundSummaryDTO fund : last.getFundSummaries()) {
+                previous.put(fund.getFundId(), fund);
+            }
+        }
+        List<FundDelta> funds = new ArrayList<>();
+        if (current.getFundSummaries() != null) {
+            for (FundSummaryDTO fund : current.getFundSummaries()) {
+                FundSummaryDTO before = previous.remove(fund.getFundId());
+                if (last == null || before == null || !sameValues(before, fund)) {
+                    funds.add(fundDelta(fund));
+                }
+            }
+        }
+        List<Integer> removedFundIds = new ArrayList<>(previous.keySet());
+        if (last != null && funds.isEmpty() && removedFundIds.isEmpty()
+                && Objects.equals(last.getTotalValue(), current.getTotalValue())
+                && Objects.equals(last.getTotalInvested(), current.getTotalInvested())
+                && Objects.equals(last.getTodayProfit(), current.getTodayProfit())
+                && Objects.equals(last.getTotalEmergencyFundValue(), current.getTotalEmergencyFundValue())) {
+            return null;
+        }
+
+        DashboardDeltaDTO delta = new DashboardDeltaDTO();
+        delta.setFull(last == null);
+        delta.setFunds(funds);
+        delta.setRemovedFundIds(removedFundIds);
+        delta.setTotalInvested(current.getTotalInvested());
+        delta.setTotalValue(current.getTotalValue());
+        delta.setProfitLoss(current.getProfitLoss());
+        delta.setProfitLossPercent(current.getProfitLossPercent());
+        delta.setTotalEmergencyFundValue(current.getTotalEmergencyFundValue());
+        delta.setTodayProfit(current.getTodayProfit());
+        delta.setTodayMessage(current.getTodayMessage());
+        return delta;
+    }
+
+    private static boolean sameValues(FundSummaryDTO a, FundSummaryDTO b) {
+        return Objects.equals(a.getTotalValue(), b.getTotalValue())
+                && Objects.equals(a.getTotalInvested(), b.getTotalInvested())
+                && Objects.equals(a.getTotalUnits(), b.getTotalUnits())
+                && Objects.equals(a.getTodayProfit(), b.getTodayProfit())
+                && Objects.equals(a.getIsEmergency(), b.getIsEmergency());
+    }
+
+    private static FundDelta fundDelta(FundSummaryDTO fund) {
+        FundDelta delta = new FundDelta();
+        delta.setFundId(fund.getFundId());
+        delta.setName(fund.getName());
+        delta.setIsEmergency(fund.getIsEmergency());
+        delta.setTotalInvested(fund.getTotalInvested());
+        delta.setTotalValue(fund.getTotalValue());
+        delta.setTotalUnits(fund.getTotalUnits());
+        delta.setProfitLoss(fund.getProfitLoss());
+        delta.setProfitLossPercent(fund.getProfitLossPercent());
+        delta.setTodayProfit(fund.getTodayProfit());
+        return delta;
+    }
+}
@@ -0,0 +1,127 @@
+package com.stonks.service.impl;
+
+import com.stonks.model.Transaction;
+import com.stonks.util.IstDate;
+import com.stonks.util.NavSeries;
+import com.stonks.util.ReturnSeries;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds the daily {@link ReturnSeries} of one or more fund holdings from their NAV series and
+ * transaction ledgers in a single forward pass.
+ * <p>
+ * Valuation days are the union of the holdings' NAV dates, merged k-way. Each transaction is
+ * applied on the NAV day it was priced at (the first NAV on or after its date, or the latest NAV
+ * while it is still provisional), and holdings are valued at their last NAV on or before each day.
+ * Costs O(valuation days x holdings + transactions).
+ */
+final class HoldingReturnsBuilder {
+
+    record Holding(NavSeries series, List<Transaction> ascending) {
+    }
+
+    private HoldingReturnsBuilder() {
+    }
+
+    static ReturnSeries build(List<Holding> holdings) {
+        int count = holdings.size();
+        int[][] flowIndex = new int[count][];
+        double[][] flowUnits = new double[count][];
+        double[][] flowCash = new double[count][];
+        int start = Integer.MAX_VALUE;
+        int end = Integer.MIN_VALUE;
+        for (int h = 0; h < count; h++) {
+            Holding holding = holdings.get(h);
+            NavSeries series = holding.series();
+            List<Transaction> ascending = holding.ascending();
+            int n = series.isEmpty() ? 0 : ascending.size();
+            flowIndex[h] = new int[n];
+            flowUnits[h] = new double[n];
+            flowCash[h] = new double[n];
+            for (int i = 0; i < n; i++) {
+                Transaction tx = ascending.get(i);
+                int index = series.indexOnOrAfter(IstDate.fromEpochSecond(tx.getDate()));
+                boolean buy = "BUY".equalsIgnoreCase(tx.getTransactionType());
+                flowIndex[h][i] = index < 0 ? series.size() - 1 : index;
+                flowUnits[h][i] = buy ? tx.getUnits() : -tx.getUnits();
+                flowCash[h][i] = buy ? tx.getAmount() : -tx.getAmount();
+            }
+            if (n > 0) {
+                start = Math.min(start, series.dayAt(flowIndex[h][0]));
+                end = Math.max(end, series.latestDay());
+            }
+        }
+        if (start == Integer.MAX_VALUE) {
+            return ReturnSeries.empty();
+        }
+
+        int[] days = valuationDays(holdings, start, end);
+        double[] values = new double[days.length];
+        double[] flows = new double[days.length];
+        int[] navIndex = new int[count];
+        int[] nextFlow = new int[count];
+        double[] units = new double[count];
+        Arrays.fill(navIndex, -1);
+        for (int d = 0; d < days.length; d++) {
+            int day = days[d];
+            double value = 0.0;
+            double flow = 0.0;
+            for (int h = 0; h < count; h++) {
+                NavSeries series = holdings.get(h).series();
+                int index = navIndex[h];
+                while (index + 1 < series.size() && series.dayAt(index + 1) <= day) {
+                    index++;
+                }
+                navIndex[h] = index;
+                while (nextFlow[h] < flowIndex[h].length && flowIndex[h][nextFlow[h]] <= index) {
+                    units[h] += flowUnits[h][nextFlow[h]];
+                    flow += flowCash[h][nextFlow[h]];
+                    nextFlow[h]++;
+                }
+                if (index >= 0) {
+                    value += units[h] * series.navAt(index);
+                }
+            }
+            values[d] = value;
+            flows[d] = flow;
+        }
+        return ReturnSeries.of(days, values, flows, days.length);
+    }
+
+    // Sorted union of the holdings' NAV days in [start, end].
+    private static int[] valuationDays(List<Holding> holdings, int start, int end) {
+        int count = holdings.size();
+        int[] heads = new int[count];
+        int capacity = 0;
+        for (int h = 0; h < count; h++) {
+            NavSeries series = holdings.get(h).series();
+            int index = series.isEmpty() ? -1 : series.indexOnOrAfter(start);
+            heads[h] = index < 0 ? series.size() : index;
+            capacity += series.size() - heads[h];
+        }
+        int[] days = new int[capacity];
+        int size = 0;
+        while (true) {
+            int next = Integer.MAX_VALUE;
+            for (int h = 0; h < count; h++) {
+                NavSeries series = holdings.get(h).series();
+                if (heads[h] < series.size()) {
+                    next = Math.min(next, series.dayAt(heads[h]));
+                }
+            }
+            if (next > end) {
+                break;
+            }
+            days[size++] = next;
+            for (int h = 0; h < count; h++) {
+                NavSeries series = holdings.get(h).series();
+                if (heads[h] < series.size() && series.dayAt(heads[h]) == next) {
+                    heads[h]++;
+                }
+            }
+        }
+        return Arrays.copyOf(days, size);
+    }
+}
@@ -5,18 +5,22 @@ import com.stonks.dto.MFAPIDTOs.MutualFundDetailDTO;
 import com.stonks.dto.MFAPIDTOs.MutualFundNavDTO;
 import com.stonks.service.MutualFundAPIService;
 import com.stonks.service.MutualFundDataService;
+import com.stonks.service.impl.PortfolioFanOut.Outcome;
 
+import com.stonks.util.IstDate;
+import com.stonks.util.NavSeries;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-
-import static com.stonks.util.TimeUtils.convertEpochToISTDateString;
-import static com.stonks.util.TimeUtils.convertISTDateStringToEpoch;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -24,7 +28,8 @@ import static com.stonks.util.TimeUtils.convertISTDateStringToEpoch;
 public class MFAPIServiceImpl implements MutualFundDataService {
 
     private final MutualFundAPIService mutualFundAPIService;
-    private static final Map<String, Integer> BenchmarkMapping = Map.of("Nifty 100", 149868, "Nifty 500", 152731, "Nifty 150 Midcap", 150673, "Nifty 250 Smallcap", 150677, "Nifty Dividend Opportunities", 128639, "NASDAQ 100", 149219);
+    private final PortfolioFanOut portfolioFanOut;
+    private static final Map<String, Integer> BenchmarkMapping = Map.of("Nifty 50", 119063, "Nifty 100", 149868, "Nifty 500", 152731, "Nifty 150 Midcap", 150673, "Nifty 250 Smallcap", 150677, "Nifty Dividend Opportunities", 128639, "NASDAQ 100", 149219);
 
 
     @Override
@@ -60,6 +65,27 @@ public class MFAPIServiceImpl implements MutualFundDataService {
         return null;
     }
 
+    /**
+     * Latest NAVs of several schemes, fetched in parallel on the portfolio fan-out so a cold cache
+     * costs one round of requests rather than one per scheme. Schemes with no NAV, or whose fetch
+     * missed the fan-out deadline, are absent from the result.
+     */
+    @Override
+    public Map<Integer, Double> getLatestNavs(Collection<Integer> schemeCodes) {
+        List<Integer> codes = schemeCodes.stream().distinct().toList();
+        List<Outcome<Double>> outcomes = portfolioFanOut.invokeAll(codes.stream().<Supplier<Double>>map(code -> () -> getLatestNav(code)).toList());
+        Map<Integer, Double> navs = new HashMap<>();
+        for (int i = 0; i < codes.size(); i++) {
+            Double nav = outcomes.get(i).value();
+            if (nav != null) {
+                navs.put(codes.get(i), nav);
+            } else if (outcomes.get(i).timedOut()) {
+                log.warn("Latest NAV for scheme code: {} timed out", codes.get(i));
+            }
+        }
+        return navs;
+    }
+
     @Override
     public Double getYesterdaysNav(Integer schemeCode) {
 
@@ -105,6 +131,12 @@ public class MFAPIServiceImpl implements MutualFundDataService {
         return List.of();
     }
 
+    @Override
+    @Cacheable(value = "navSeries", key = "#schemeCode")
+    public NavSeries getNavSeries(Integer schemeCode) {
+        return NavSeries.of(schemeCode, getNavHistory(schemeCode));
+    }
+
     @Override
     public Pair<Double, Boolean> getNavForDate(Integer schemeCode, Long epochSeconds) {
         Optional<MutualFundDetailDTO> fundDetails = mutualFundAPIService.getMutualFundDetails(schemeCode);
@@ -116,12 +148,10 @@ public class MFAPIServiceImpl implements MutualFundDataService {
 
         List<MutualFundNavDTO> navData = fundDetails.get().getData();
 
-        // Convert epoch seconds to IST date string
-        String targetDateString = convertEpochToISTDateString(epochSeconds);
-        log.debug("Target date string (IST): {}", targetDateString);
+        int targetDay = IstDate.fromEpochSecond(epochSeconds);
 
         // Binary search for the target date
-        int index = binarySearchForDate(navData, targetDateString);
+        int index = binarySearchForDate(navData, targetDay);
 
         if (index < 0) {
             log.warn("No NAV data found for scheme code: {}", schemeCode);
@@ -133,12 +163,10 @@ public class MFAPIServiceImpl implements MutualFundDataService {
 
     @Override
     public Double getNAVFromNAVList(List<MutualFundNavDTO> navData, Long epochSeconds, Integer schemeCode) {
-        // Convert epoch seconds to IST date string
-        String targetDateString = convertEpochToISTDateString(epochSeconds);
-        log.debug("Target date string (IST): {}", targetDateString);
+        int targetDay = IstDate.fromEpochSecond(epochSeconds);
 
         // Binary search for the target date
-        int index = binarySearchForDate(navData, targetDateString);
+        int index = binarySearchForDate(navData, targetDay);
         if (index < 0) {
             return getLatestNav(schemeCode);
         }
@@ -179,17 +207,15 @@ public class MFAPIServiceImpl implements MutualFundDataService {
     }
 
 
-    private int binarySearchForDate(List<MutualFundNavDTO> navData, String targetDate) {
+    private int binarySearchForDate(List<MutualFundNavDTO> navData, int targetDay) {
         int left = 0;
         int right = navData.size() - 1;
-        Long targetEpochSeconds = convertISTDateStringToEpoch(targetDate);
 
         int ans = -1;
         while (left <= right) {
             int mid = left + (right - left) / 2;
-            String midDate = navData.get(mid).getDate();
-            Long midEpochSeconds = convertISTDateStringToEpoch(midDate);
-            if (midEpochSeconds >= targetEpochSeconds) {
+            int midDay = IstDate.parse(navData.get(mid).getDate());
+            if (midDay >= targetDay) {
                 ans = mid;
                 left = mid + 1;
             } else {
@@ -0,0 +1,59 @@
+package com.stonks.service.impl;
+
+import com.stonks.event.NavPublishedEvent;
+import com.stonks.service.MutualFundDataService;
+import com.stonks.util.IstDate;
+import com.stonks.util.MonthEndNavTable;
+import com.stonks.util.NavSeries;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Month-end NAV tables shared by every user's charts, one per scheme.
+ * <p>
+ * A table is built the first time its scheme is charted and follows the cached NAV series: when
+ * the series is reloaded with newer NAVs the table is extended by the months that closed since,
+ * and a {@link NavPublishedEvent} announces the new NAV date.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MonthEndNavRegistry {
+
+    private final MutualFundDataService mfapiService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Integer, MonthEndNavTable> tables = new ConcurrentHashMap<>();
+
+    public MonthEndNavTable getTable(Integer schemeCode) {
+        NavSeries series = mfapiService.getNavSeries(schemeCode);
+        MonthEndNavTable current = tables.get(schemeCode);
+        if (current != null && current.getSeries() == series) {
+            return current;
+        }
+
+        boolean[] advanced = new boolean[1];
+        MonthEndNavTable table = tables.compute(schemeCode, (code, existing) -> {
+            if (existing == null) {
+                return MonthEndNavTable.of(series);
+            }
+            if (existing.getSeries() == series) {
+                return existing;
+            }
+            NavSeries previous = existing.getSeries();
+            advanced[0] = !series.isEmpty() && (previous.isEmpty() || series.latestDay() > previous.latestDay());
+            return existing.extendedWith(series);
+        });
+
+        if (advanced[0]) {
+            log.info("NAV for scheme: {} advanced to {}; month-end table now ends {}", schemeCode, IstDate.format(series.latestDay()), IstDate.monthLabel(table.getLastMonth()));
+            eventPublisher.publishEvent(new NavPublishedEvent(schemeCode, series.latestDay()));
+        }
+        return table;
+    }
+}
@@ -0,0 +1,386 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.MFAPIDTOs.MutualFundDetailDTO;
+import com.stonks.model.NavReconcileCheckpoint;
+import com.stonks.model.RedeemedLot;
+import com.stonks.model.Transaction;
+import com.stonks.repository.NavReconcileCheckpointRepository;
+import com.stonks.repository.TransactionRepository;
+import com.stonks.service.CapitalGainsService;
+import com.stonks.service.MutualFundAPIService;
+import com.stonks.service.NavReconciliationService;
+import com.stonks.service.UserFundService;
+import com.stonks.util.IstDate;
+import com.stonks.util.NavSeries;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Re-prices transactions that were booked at a provisional NAV (isUpdated=false) once the NAV
+ * for their date is published.
+ * <p>
+ * Pending rows are grouped by scheme and each scheme's NAV history is fetched once per pass.
+ * Corrections, including the booked profit of SELLs linked through {@link RedeemedLot}, are
+ * written in one bulk operation per scheme, after which the affected UserFunds are refreshed
+ * through the write-behind queue.
+ */
+@Service
+@Slf4j
+public class NavReconciliationServiceImpl implements NavReconciliationService {
+
+    private final TransactionRepository transactionRepository;
+    private final NavReconcileCheckpointRepository checkpointRepository;
+    private final MutualFundAPIService mutualFundAPIService;
+    private final UserFundService userFundService;
+    private final CapitalGainsService capitalGainsService;
+    private final UserFundRefreshQueue userFundRefreshQueue;
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+    private final long refetchIntervalSeconds;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public NavReconciliationServiceImpl(TransactionRepository transactionRepository,
+                                        NavReconcileCheckpointRepository checkpointRepository,
+                                        MutualFundAPIService mutualFundAPIService,
+                                        UserFundService userFundService,
+                                        CapitalGainsService capitalGainsService,
+                                        UserFundRefreshQueue userFundRefreshQueue,
+                                        MongoTemplate mongoTemplate,
+                                        CacheManager cacheManager,
+                                        @Value("${stonks.nav-reconcile.refetch-interval-minutes:60}") long refetchIntervalMinutes) {
+        this.transactionRepository = transactionRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.mutualFundAPIService = mutualFundAPIService;
+        this.userFundService = userFundService;
+        this.capitalGainsService = capitalGainsService;
+        this.userFundRefreshQueue = userFundRefreshQueue;
+        this.mongoTemplate = mongoTemplate;
+        this.cacheManager = cacheManager;
+        this.refetchIntervalSeconds = refetchIntervalMinutes * 60;
+    }
+
+    @Scheduled(cron = "${stonks.nav-reconcile.cron:0 30 23,7 * * *}", zone = "Asia/Kolkata")
+    public void scheduledReconcile() {
+        String result = reconcileProvisionalTransactions();
+        log.info("Scheduled NAV reconciliation finished. {}", result);
+    }
+
+    @Override
+    public String reconcileProvisionalTransactions() {
+        if (!running.compareAndSet(false, true)) {
+            return "Error: NAV reconciliation is already running";
+        }
+        try {
+            List<Transaction> pending = transactionRepository.findByIsUpdated(false);
+            if (pending.isEmpty()) {
+                return "Success: No provisionally priced transactions";
+            }
+            Map<Integer, List<Transaction>> byScheme = pending.stream().collect(Collectors.groupingBy(Transaction::getFundId, TreeMap::new, Collectors.toList()));
+            log.info("Reconciling {} provisionally priced transactions across {} schemes", pending.size(), byScheme.size());
+
+            long now = System.currentTimeMillis() / 1000;
+            Map<Integer, NavReconcileCheckpoint> checkpoints = new HashMap<>();
+            checkpointRepository.findAllById(byScheme.keySet()).forEach(checkpoint -> checkpoints.put(checkpoint.getSchemeCode(), checkpoint));
+
+            int repriced = 0;
+            int skippedSchemes = 0;
+            for (Map.Entry<Integer, List<Transaction>> entry : byScheme.entrySet()) {
+                NavReconcileCheckpoint checkpoint = checkpoints.get(entry.getKey());
+                if (checkpoint != null && checkpoint.getCheckedAt() != null && now - checkpoint.getCheckedAt() < refetchIntervalSeconds) {
+                    skippedSchemes++;
+                    continue;
+                }
+                try {
+                    repriced += reconcileScheme(entry.getKey(), entry.getValue(), now);
+                } catch (Exception e) {
+                    // Leave the scheme without a fresh checkpoint so the next pass retries it.
+                    log.error("Error reconciling NAVs for scheme: {}", entry.getKey(), e);
+                }
+            }
+            return "Success: Re-priced " + repriced + " of " + pending.size() + " provisional transactions. Schemes skipped until refetch interval: " + skippedSchemes;
+        } catch (Exception e) {
+            log.error("Error reconciling provisional transactions", e);
+            return "Error: " + e.getMessage();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int reconcileScheme(Integer schemeCode, List<Transaction> pending, long now) {
+        NavSeries navSeries = fetchFreshNavSeries(schemeCode);
+        if (navSeries == null || navSeries.isEmpty()) {
+            saveCheckpoint(schemeCode, null, 0, pending.size(), now);
+            return 0;
+        }
+
+        // Only rows whose date now has a published NAV can be fixed.
+        Map<String, Transaction> repricable = new HashMap<>();
+        for (Transaction transaction : pending) {
+            if (IstDate.fromEpochSecond(transaction.getDate()) <= navSeries.latestDay()) {
+                repricable.put(transaction.getId(), transaction);
+            }
+        }
+        if (repricable.isEmpty()) {
+            saveCheckpoint(schemeCode, navSeries.latestDay(), 0, pending.size(), now);
+            return 0;
+        }
+
+        // SELLs that consumed a provisional lot, or whose split remainder is provisional.
+        Query linkedSellsQuery = Query.query(new Criteria().orOperator(
+                Criteria.where("redeemedLots.transactionId").in(repricable.keySet()),
+                Criteria.where("redeemedLots.remainderTransactionId").in(repricable.keySet())));
+        Map<String, Transaction> sells = new HashMap<>();
+        mongoTemplate.find(linkedSellsQuery, Transaction.class).forEach(sell -> sells.put(sell.getId(), sell));
+        repricable.values().stream().filter(t -> "SELL".equals(t.getTransactionType())).forEach(sell -> sells.put(sell.getId(), sell));
+
+        Set<String> remainderIds = new HashSet<>();
+        sells.values().forEach(sell -> lotsOf(sell).stream().map(RedeemedLot::getRemainderTransactionId).filter(Objects::nonNull).forEach(remainderIds::add));
+
+        // Every row written below, as it was read; each write is conditional on the row still matching.
+        Map<String, Transaction> read = new HashMap<>(repricable);
+        sells.values().forEach(sell -> read.putIfAbsent(sell.getId(), sell));
+
+        // BUYs first: SELL profits below are computed against the corrected lot prices.
+        Map<String, Double> lotPrices = new HashMap<>();
+        Map<String, Double> lotCostMoves = new HashMap<>();
+        Map<String, Update> updates = new HashMap<>();
+        for (Transaction transaction : repricable.values()) {
+            if (!"BUY".equals(transaction.getTransactionType())) {
+                continue;
+            }
+            double nav = navSeries.navOnOrAfter(IstDate.fromEpochSecond(transaction.getDate()));
+            Update update = new Update().set("price", nav).set("isUpdated", true);
+            if (Boolean.TRUE.equals(transaction.getIsRedeemed()) || remainderIds.contains(transaction.getId())) {
+                // Units of a sold or split lot are fixed by the SELL; only its cost moves.
+                update.set("amount", transaction.getUnits() * nav);
+                if (transaction.getBookedProfit() != null) {
+                    // Recomputed below when the consuming SELL is linked; otherwise shifted with it.
+                    lotCostMoves.put(transaction.getId(), -transaction.getUnits() * (nav - transaction.getPrice()));
+                }
+            } else {
+                update.set("units", (transaction.getAmount() * 0.99995) / nav);
+            }
+            lotPrices.put(transaction.getId(), nav);
+            updates.put(transaction.getId(), update);
+        }
+
+        // Every touched SELL recomputes its lots' booked profit from the (possibly corrected) prices.
+        Map<String, Double> lotProfits = new HashMap<>();
+        Map<String, Double> sellPriceMoves = new HashMap<>();
+        for (Transaction sell : sells.values()) {
+            List<RedeemedLot> lots = lotsOf(sell);
+            Update sellUpdate = updates.computeIfAbsent(sell.getId(), id -> new Update());
+            double sellPrice = sell.getPrice();
+            if (repricable.containsKey(sell.getId())) {
+                sellPrice = navSeries.navOnOrAfter(IstDate.fromEpochSecond(sell.getDate()));
+                sellUpdate.set("price", sellPrice).set("amount", sell.getUnits() * sellPrice * 1.000186).set("isUpdated", true);
+            }
+            if (lots.isEmpty()) {
+                // SELLs recorded before lot linkage are shifted together with their lots below.
+                if (sellPrice != sell.getPrice()) {
+                    sellPriceMoves.put(sell.getId(), sellPrice - sell.getPrice());
+                }
+                continue;
+            }
+            Map<String, Double> currentPrices = currentLotPrices(lots, lotPrices, read);
+            double totalBookedProfit = 0.0;
+            for (RedeemedLot lot : lots) {
+                Double lotPrice = currentPrices.get(lot.getTransactionId());
+                if (lotPrice == null) {
+                    continue;
+                }
+                double profit = lot.getUnits() * (sellPrice - lotPrice);
+                lotProfits.put(lot.getTransactionId(), profit);
+                totalBookedProfit += profit;
+            }
+            sellUpdate.set("bookedProfit", totalBookedProfit);
+        }
+        lotProfits.forEach((lotId, profit) -> updates.computeIfAbsent(lotId, id -> new Update()).set("bookedProfit", profit));
+        lotCostMoves.keySet().removeAll(lotProfits.keySet());
+        shiftLegacyBookedProfits(schemeCode, lotCostMoves, sellPriceMoves, read, updates);
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaction.class);
+        int guarded = 0;
+        for (Map.Entry<String, Update> entry : updates.entrySet()) {
+            Transaction expected = read.get(entry.getKey());
+            if (expected == null) {
+                log.warn("Skipping update of transaction {}; it was not read in this pass", entry.getKey());
+                continue;
+            }
+            bulk.updateOne(Query.query(expectedState(expected, repricable.containsKey(expected.getId()))), entry.getValue());
+            guarded++;
+        }
+        int matched = guarded == 0 ? 0 : bulk.execute().getMatchedCount();
+
+        Set<String> affectedUsers = new LinkedHashSet<>();
+        repricable.values().forEach(transaction -> affectedUsers.add(transaction.getUserId()));
+        sells.values().forEach(sell -> affectedUsers.add(sell.getUserId()));
+        for (String userId : affectedUsers) {
+            // Lot costs and booked profits moved under the register, so it is rebuilt rather than patched.
+            userFundRefreshQueue.enqueue(userId, schemeCode, () -> {
+                capitalGainsService.rebuildRegister(userId, schemeCode);
+                userFundService.refreshUserFundByUserIdAndFundId(userId, schemeCode);
+            });
+        }
+
+        if (matched < updates.size()) {
+            // A write landed on some of these rows after they were read. Those rows are left as they
+            // are and the scheme gets no checkpoint, so the next pass re-reads and retries it.
+            log.warn("Re-queued scheme: {}; {} of {} transactions changed since they were read", schemeCode, updates.size() - matched, updates.size());
+            return 0;
+        }
+        saveCheckpoint(schemeCode, navSeries.latestDay(), repricable.size(), pending.size() - repricable.size(), now);
+        log.info("Re-priced {} transactions for scheme: {} ({} bulk updates, {} users)", repricable.size(), schemeCode, updates.size(), affectedUsers.size());
+        return repricable.size();
+    }
+
+    // Matches the row only while it is as read: a SELL in between splits or redeems lots and changes
+    // their units, and a provisional row re-priced elsewhere is no longer provisional.
+    private static Criteria expectedState(Transaction expected, boolean provisional) {
+        Criteria criteria = Criteria.where("_id").is(expected.getId())
+                .and("units").is(expected.getUnits())
+                .and("isRedeemed").is(expected.getIsRedeemed());
+        return provisional ? criteria.and("isUpdated").is(false) : criteria;
+    }
+
+    // SELLs recorded before lot linkage are tied to their lots only by date: a sold lot carries its
+    // SELL's date as sellDate, and that SELL is the user's only unlinked one on the date. Whether a
+    // lot's cost or the SELL's price was corrected, the lot and the SELL move by the same amount;
+    // when the pairing cannot be established both keep their booked profit.
+    private void shiftLegacyBookedProfits(Integer schemeCode, Map<String, Double> lotCostMoves, Map<String, Double> sellPriceMoves,
+                                          Map<String, Transaction> read, Map<String, Update> updates) {
+        if (lotCostMoves.isEmpty() && sellPriceMoves.isEmpty()) {
+            return;
+        }
+        Set<String> userIds = new HashSet<>();
+        Set<Long> dates = new HashSet<>();
+        lotCostMoves.keySet().forEach(lotId -> {
+            Transaction lot = read.get(lotId);
+            userIds.add(lot.getUserId());
+            if (lot.getSellDate() != null) {
+                dates.add(lot.getSellDate());
+            }
+        });
+        sellPriceMoves.keySet().forEach(sellId -> {
+            userIds.add(read.get(sellId).getUserId());
+            dates.add(read.get(sellId).getDate());
+        });
+        Query legacyQuery = Query.query(new Criteria().andOperator(
+                Criteria.where("fundId").is(schemeCode),
+                Criteria.where("userId").in(userIds),
+                new Criteria().orOperator(
+                        Criteria.where("transactionType").is("SELL").and("date").in(dates),
+                        Criteria.where("transactionType").is("BUY").and("isRedeemed").is(true).and("sellDate").in(dates))));
+        Map<String, List<Transaction>> unlinkedSellsOn = new HashMap<>();
+        Map<String, List<Transaction>> lotsSoldOn = new HashMap<>();
+        for (Transaction transaction : mongoTemplate.find(legacyQuery, Transaction.class)) {
+            read.putIfAbsent(transaction.getId(), transaction);
+            if ("SELL".equals(transaction.getTransactionType())) {
+                if (lotsOf(transaction).isEmpty()) {
+                    unlinkedSellsOn.computeIfAbsent(transaction.getUserId() + ":" + transaction.getDate(), key -> new ArrayList<>()).add(transaction);
+                }
+            } else {
+                lotsSoldOn.computeIfAbsent(transaction.getUserId() + ":" + transaction.getSellDate(), key -> new ArrayList<>()).add(transaction);
+            }
+        }
+
+        Map<String, Double> profitMoves = new HashMap<>();
+        lotCostMoves.forEach((lotId, move) -> {
+            Transaction lot = read.get(lotId);
+            List<Transaction> candidates = lot.getSellDate() == null ? List.of() : unlinkedSellsOn.getOrDefault(lot.getUserId() + ":" + lot.getSellDate(), List.of());
+            if (candidates.size() != 1) {
+                log.warn("Leaving booked profit of lot {} and its SELL unchanged; {} unlinked SELLs on its sell date", lotId, candidates.size());
+                return;
+            }
+            profitMoves.merge(lotId, move, Double::sum);
+            profitMoves.merge(candidates.getFirst().getId(), move, Double::sum);
+        });
+        sellPriceMoves.forEach((sellId, move) -> {
+            Transaction sell = read.get(sellId);
+            String key = sell.getUserId() + ":" + sell.getDate();
+            List<Transaction> lots = lotsSoldOn.getOrDefault(key, List.of());
+            double soldUnits = lots.stream().mapToDouble(Transaction::getUnits).sum();
+            if (unlinkedSellsOn.getOrDefault(key, List.of()).size() != 1 || Math.abs(soldUnits - sell.getUnits()) > 1e-6 * Math.max(1.0, sell.getUnits())) {
+                log.warn("Leaving booked profit of SELL {} and its lots unchanged; its lots cannot be identified", sellId);
+                return;
+            }
+            for (Transaction lot : lots) {
+                profitMoves.merge(lot.getId(), lot.getUnits() * move, Double::sum);
+            }
+            profitMoves.merge(sellId, sell.getUnits() * move, Double::sum);
+        });
+        profitMoves.forEach((id, move) -> updates.computeIfAbsent(id, key -> new Update())
+                .set("bookedProfit", Objects.requireNonNullElse(read.get(id).getBookedProfit(), 0.0) + move));
+    }
+
+    // Lot prices after this pass: corrected ones from the BUY step, stored ones for the rest.
+    private Map<String, Double> currentLotPrices(List<RedeemedLot> lots, Map<String, Double> lotPrices, Map<String, Transaction> read) {
+        Map<String, Double> prices = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (RedeemedLot lot : lots) {
+            Double price = lotPrices.get(lot.getTransactionId());
+            if (price != null) {
+                prices.put(lot.getTransactionId(), price);
+            } else {
+                missing.add(lot.getTransactionId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            transactionRepository.findAllById(missing).forEach(lot -> {
+                prices.put(lot.getId(), lot.getPrice());
+                read.putIfAbsent(lot.getId(), lot);
+            });
+        }
+        return prices;
+    }
+
+    private static List<RedeemedLot> lotsOf(Transaction sell) {
+        return sell.getRedeemedLots() == null ? List.of() : sell.getRedeemedLots();
+    }
+
+    // Drops the cached details first; they may predate the NAVs we are waiting for.
+    private NavSeries fetchFreshNavSeries(Integer schemeCode) {
+        evict("mutualFundDetails", schemeCode);
+        evict("latestNav", schemeCode);
+        evict("navSeries", schemeCode);
+        Optional<MutualFundDetailDTO> details = mutualFundAPIService.getMutualFundDetails(schemeCode);
+        if (details.isEmpty() || details.get().getData() == null || details.get().getData().isEmpty()) {
+            log.warn("No NAV data found for scheme code: {}", schemeCode);
+            return null;
+        }
+        return NavSeries.of(schemeCode, details.get().getData());
+    }
+
+    private void evict(String cacheName, Integer schemeCode) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(schemeCode);
+        }
+    }
+
+    private void saveCheckpoint(Integer schemeCode, Integer latestNavDay, int repricedRows, int pendingRows, long now) {
+        checkpointRepository.save(new NavReconcileCheckpoint(schemeCode, latestNavDay, repricedRows, pendingRows, now));
+    }
+}
@@ -0,0 +1,125 @@
+package com.stonks.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stonks.dto.HistoricDataDTO;
+import com.stonks.event.PortfolioChangedEvent;
+import com.stonks.model.Transaction;
+import com.stonks.service.impl.PerformanceChartEngine.Checkpoint;
+import com.stonks.service.impl.PerformanceChartEngine.Result;
+import com.stonks.util.MonthEndNavTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Computed performance charts per (user, fund, comparison set), checked against the fund's benchmark.
+ * <p>
+ * An entry is dropped when the user's holdings in the fund change. When only the NAV tables moved
+ * on (a new NAV was published, or the calendar month rolled over) the chart is resumed from the
+ * checkpoint at its last fully published month and only the tail is recomputed.
+ */
+@Component
+@Slf4j
+public class PerformanceChartCache {
+
+    private final Cache<String, CachedChart> charts;
+    // Bumped on every invalidation so a chart computed across a write is not stored.
+    private final AtomicLong generation = new AtomicLong();
+
+    public PerformanceChartCache(@Value("${stonks.performance-chart-cache.max-size:10000}") long maxSize) {
+        this.charts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofHours(24))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Chart for the fund as of {@code lastMonth}, computed, resumed or served from cache.
+     *
+     * @param comparisons  the comparison benchmarks the engine was built with, in response order
+     * @param transactions loads the fund's transactions in date order; only called on a miss
+     */
+    public List<HistoricDataDTO> getChart(String userId, Integer fundId, String benchmark, List<String> comparisons, PerformanceChartEngine engine,
+                                          MonthEndNavTable[] tables, int lastMonth, Supplier<List<Transaction>> transactions) {
+        String key = key(userId, fundId, comparisons);
+        long startGeneration = generation.get();
+        CachedChart cached = charts.getIfPresent(key);
+        if (cached != null && Objects.equals(cached.benchmark, benchmark)) {
+            if (cached.lastMonth == lastMonth && sameTables(cached.tables, tables)) {
+                return cached.points;
+            }
+            if (cached.checkpoint != null) {
+                Result resumed = engine.resume(cached.transactions, cached.points, cached.checkpoint, lastMonth);
+                // A resumed run that did not reach a newer published month keeps the old checkpoint.
+                Checkpoint checkpoint = resumed.checkpoint() != null ? resumed.checkpoint() : cached.checkpoint;
+                log.debug("Resumed performance chart for user: {} and fund: {} from {} cached points", userId, fundId, cached.checkpoint.pointCount());
+                return store(key, new CachedChart(benchmark, tables, lastMonth, cached.transactions, resumed.points(), checkpoint), startGeneration);
+            }
+        }
+
+        List<Transaction> ascending = transactions.get();
+        Result result = engine.run(ascending, lastMonth);
+        return store(key, new CachedChart(benchmark, tables, lastMonth, ascending, result.points(), result.checkpoint()), startGeneration);
+    }
+
+    public void invalidate(String userId, Integer fundId) {
+        // Every comparison set of the fund is keyed under the same prefix.
+        String prefix = userId + ":" + fundId + ":";
+        generation.incrementAndGet();
+        charts.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public void invalidateUser(String userId) {
+        String prefix = userId + ":";
+        generation.incrementAndGet();
+        charts.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    @EventListener
+    public void onPortfolioChanged(PortfolioChangedEvent event) {
+        if (event.getFundId() == null) {
+            invalidateUser(event.getUserId());
+        } else {
+            invalidate(event.getUserId(), event.getFundId());
+        }
+    }
+
+    private List<HistoricDataDTO> store(String key, CachedChart chart, long startGeneration) {
+        if (generation.get() == startGeneration) {
+            charts.put(key, chart);
+        }
+        return chart.points;
+    }
+
+    private static boolean sameTables(MonthEndNavTable[] a, MonthEndNavTable[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String key(String userId, Integer fundId, List<String> comparisons) {
+        return userId + ":" + fundId + ":" + String.join(",", comparisons);
+    }
+
+    private record CachedChart(String benchmark, MonthEndNavTable[] tables, int lastMonth, List<Transaction> transactions,
+                               List<HistoricDataDTO> points, Checkpoint checkpoint) {
+        private CachedChart {
+            points = List.copyOf(points);
+        }
+    }
+}
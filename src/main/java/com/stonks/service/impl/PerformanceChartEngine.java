@@ -0,0 +1,345 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.HistoricDataDTO;
+import com.stonks.model.Transaction;
+import com.stonks.util.IstDate;
+import com.stonks.util.MonthEndNavTable;
+import com.stonks.util.NavSeries;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Monthly performance series of one fund against any set of comparison benchmarks.
+ * <p>
+ * Every comparison answers "what if the same cash flows had gone into benchmark X". Transactions
+ * (sorted by date) and the month-end grid are merged in a single forward walk that mirrors each
+ * cash flow into all comparison series at once, keeping their units in one primitive array;
+ * benchmarks backed by the same scheme share a slot. Month ends are read from the shared
+ * {@link MonthEndNavTable}s in O(1); transaction dates are non-decreasing, so each NAV series is
+ * read through one forward cursor and the whole chart costs O(transactions x series + months x
+ * series + NAV points). A date past the newest NAV falls back to the scheme's latest NAV, fetched
+ * at most once per series.
+ * <p>
+ * The walk can leave a {@link Checkpoint} at a month end and later resume from it, so a cached
+ * chart only recomputes the months after its last fully published month.
+ */
+class PerformanceChartEngine {
+
+    private final MonthEndNavTable fundTable;
+    // Distinct comparison series; names map onto them through seriesOf.
+    private final MonthEndNavTable[] seriesTables;
+    private final String[] names;
+    private final int[] seriesOf;
+    private final int benchmarkSeries;
+    private final Function<Integer, Double> latestNavLookup;
+
+    /**
+     * @param comparisons     benchmark name to its month-end NAV table, in response order
+     * @param benchmark       name of the comparison alpha is measured against; when null or absent
+     *                        the fund itself is reported as its benchmark
+     * @param latestNavLookup latest NAV by scheme code, used for dates past the end of a series
+     */
+    PerformanceChartEngine(MonthEndNavTable fund, Map<String, MonthEndNavTable> comparisons, String benchmark, Function<Integer, Double> latestNavLookup) {
+        this.fundTable = fund;
+        this.names = comparisons.keySet().toArray(new String[0]);
+        this.seriesOf = new int[names.length];
+        List<MonthEndNavTable> distinct = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            MonthEndNavTable table = comparisons.get(names[i]);
+            int series = indexOf(distinct, table);
+            if (series < 0) {
+                series = distinct.size();
+                distinct.add(table);
+            }
+            seriesOf[i] = series;
+        }
+        this.seriesTables = distinct.toArray(new MonthEndNavTable[0]);
+        int benchmarkName = benchmark == null ? -1 : List.of(names).indexOf(benchmark);
+        this.benchmarkSeries = benchmarkName < 0 ? -1 : seriesOf[benchmarkName];
+        this.latestNavLookup = latestNavLookup;
+    }
+
+    /**
+     * The fund's table followed by every distinct comparison table; a chart computed from the same
+     * tables is still current.
+     */
+    MonthEndNavTable[] tables() {
+        MonthEndNavTable[] tables = new MonthEndNavTable[seriesTables.length + 1];
+        tables[0] = fundTable;
+        System.arraycopy(seriesTables, 0, tables, 1, seriesTables.length);
+        return tables;
+    }
+
+    /**
+     * One point per month from the first transaction's month through {@code lastMonth} (a month index).
+     */
+    List<HistoricDataDTO> build(List<Transaction> ascending, int lastMonth) {
+        return run(ascending, lastMonth, Integer.MIN_VALUE).points();
+    }
+
+    /**
+     * Builds the chart and keeps a checkpoint at the end of the last month whose NAVs are published
+     * for every series; that month and everything before it will not change until a transaction does.
+     */
+    Result run(List<Transaction> ascending, int lastMonth) {
+        return run(ascending, lastMonth, lastPublishedMonth());
+    }
+
+    /**
+     * Continues a chart from a checkpoint of an earlier run over the same transactions, appending
+     * the months after it to a copy of the prefix it covered.
+     */
+    Result resume(List<Transaction> ascending, List<HistoricDataDTO> prefix, Checkpoint from, int lastMonth) {
+        List<HistoricDataDTO> points = new ArrayList<>(prefix.subList(0, from.pointCount));
+        Walk walk = new Walk(ascending, from, points);
+        return walk.advance(lastMonth, lastPublishedMonth());
+    }
+
+    /**
+     * Points valued on each of the ascending days after the first, which only serves as the baseline
+     * for the first point's period fields. Days before the first transaction produce no point.
+     */
+    List<HistoricDataDTO> sample(List<Transaction> ascending, int[] days) {
+        if (ascending.isEmpty() || days.length < 2) {
+            return new ArrayList<>();
+        }
+        int firstDay = Math.min(IstDate.fromEpochSecond(ascending.get(0).getDate()), days[0]);
+        Checkpoint start = new Checkpoint(IstDate.monthIndex(firstDay), 0, 0, 0.0, 0.0, 0.0, 0.0, new double[seriesTables.length]);
+        return new Walk(ascending, start, new ArrayList<>()).sample(days);
+    }
+
+    /**
+     * Last month every series has a published month-end NAV for.
+     */
+    int lastPublishedMonth() {
+        int month = fundTable.getLastMonth();
+        for (MonthEndNavTable table : seriesTables) {
+            month = Math.min(month, table.getLastMonth());
+        }
+        return month;
+    }
+
+    private Result run(List<Transaction> ascending, int lastMonth, int checkpointMonth) {
+        if (ascending.isEmpty()) {
+            return new Result(new ArrayList<>(), null);
+        }
+        int firstMonth = IstDate.monthIndex(IstDate.fromEpochSecond(ascending.get(0).getDate()));
+        Checkpoint start = new Checkpoint(firstMonth, 0, 0, 0.0, 0.0, 0.0, 0.0, new double[seriesTables.length]);
+        return new Walk(ascending, start, new ArrayList<>()).advance(lastMonth, checkpointMonth);
+    }
+
+    private static int indexOf(List<MonthEndNavTable> tables, MonthEndNavTable table) {
+        for (int i = 0; i < tables.size(); i++) {
+            // Tables are shared per scheme, so the same scheme is the same instance.
+            if (tables.get(i) == table) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Engine state at the end of a month: everything needed to continue the walk from the next one.
+     * {@code seriesUnits} holds the units of each distinct comparison series and is never modified.
+     */
+    record Checkpoint(int nextMonth, int txIndex, int pointCount,
+                      double totalUnits, double totalInvested, double previousProfit, double previousInvested,
+                      double[] seriesUnits) {
+    }
+
+    /**
+     * Chart points plus the checkpoint left at the last published month (null if none was reached).
+     */
+    record Result(List<HistoricDataDTO> points, Checkpoint checkpoint) {
+    }
+
+    private final class Walk {
+        private final List<Transaction> ascending;
+        private final List<HistoricDataDTO> points;
+        private final SeriesWalker fund;
+        private final SeriesWalker[] series;
+        // Units held in each comparison series, indexed like seriesTables
+        private final double[] units;
+        // Scratch row of per-series values for the point being built
+        private final double[] values;
+
+        private int currentMonth;
+        private int txIndex;
+        private double totalUnits;
+        private double totalInvested;
+        private double previousProfit;
+        private double previousInvested;
+
+        Walk(List<Transaction> ascending, Checkpoint from, List<HistoricDataDTO> points) {
+            this.ascending = ascending;
+            this.points = points;
+            this.currentMonth = from.nextMonth;
+            this.txIndex = from.txIndex;
+            this.totalUnits = from.totalUnits;
+            this.totalInvested = from.totalInvested;
+            this.previousProfit = from.previousProfit;
+            this.previousInvested = from.previousInvested;
+            this.units = from.seriesUnits.clone();
+            this.values = new double[seriesTables.length];
+            int fromDay = IstDate.monthStart(from.nextMonth);
+            this.fund = new SeriesWalker(fundTable, latestNavLookup, fromDay);
+            this.series = new SeriesWalker[seriesTables.length];
+            for (int s = 0; s < series.length; s++) {
+                series[s] = new SeriesWalker(seriesTables[s], latestNavLookup, fromDay);
+            }
+        }
+
+        Result advance(int lastMonth, int checkpointMonth) {
+            Checkpoint checkpoint = null;
+            while (currentMonth <= lastMonth) {
+                int monthEnd = IstDate.monthEnd(currentMonth);
+                double totalInvestmentSold = applyThrough(monthEnd);
+
+                // Value everything at the end of the month
+                double totalValue = fund.monthEndNav(currentMonth, monthEnd) * totalUnits;
+                for (int s = 0; s < series.length; s++) {
+                    values[s] = units[s] * series[s].monthEndNav(currentMonth, monthEnd);
+                }
+                points.add(point(currentMonth, monthEnd, totalValue, totalInvestmentSold, points.isEmpty()));
+
+                if (currentMonth == checkpointMonth) {
+                    checkpoint = new Checkpoint(currentMonth + 1, txIndex, points.size(), totalUnits, totalInvested, previousProfit, previousInvested, units.clone());
+                }
+                currentMonth++;
+            }
+            return new Result(points, checkpoint);
+        }
+
+        // Values the holdings on each day; days[0] only sets the baseline for the first point's deltas.
+        List<HistoricDataDTO> sample(int[] days) {
+            for (int k = 0; k < days.length; k++) {
+                int day = days[k];
+                boolean held = txIndex > 0;
+                double totalInvestmentSold = applyThrough(day);
+                double totalValue = fund.navOnOrAfter(day) * totalUnits;
+                if (k == 0 || txIndex == 0) {
+                    previousProfit = totalValue - totalInvested;
+                    previousInvested = totalInvested;
+                    continue;
+                }
+                for (int s = 0; s < series.length; s++) {
+                    values[s] = units[s] * series[s].navOnOrAfter(day);
+                }
+                points.add(point(IstDate.monthIndex(day), day, totalValue, totalInvestmentSold, !held));
+            }
+            return points;
+        }
+
+        // Applies the transactions dated on or before the day and returns the cost of the units sold.
+        private double applyThrough(int day) {
+            double totalInvestmentSold = 0.0;
+            int txCount = ascending.size();
+            while (txIndex < txCount) {
+                Transaction tx = ascending.get(txIndex);
+                int txDay = IstDate.fromEpochSecond(tx.getDate());
+                if (txDay > day) {
+                    break;
+                }
+                boolean buy = "BUY".equalsIgnoreCase(tx.getTransactionType());
+                double amount = tx.getAmount();
+                if (buy) {
+                    totalUnits += tx.getUnits();
+                    totalInvested += amount;
+                } else {
+                    double costSold = amount - tx.getBookedProfit();
+                    totalUnits -= tx.getUnits();
+                    totalInvested -= costSold;
+                    totalInvestmentSold += costSold;
+                }
+
+                // Mirror the cash flow into every comparison series; redemptions sell units.
+                double signedAmount = buy ? amount : -amount;
+                for (int s = 0; s < series.length; s++) {
+                    double nav = series[s].navOnOrAfter(txDay);
+                    if (nav != 0.0) {
+                        units[s] += signedAmount / nav;
+                    }
+                }
+                txIndex++;
+            }
+            return totalInvestmentSold;
+        }
+
+        // One chart point from the series values in 'values'; the period fields cover everything since the previous point.
+        private HistoricDataDTO point(int monthIndex, int day, double totalValue, double totalInvestmentSold, boolean first) {
+            double totalProfit = totalValue - totalInvested;
+            double benchmarkValue = benchmarkSeries < 0 ? totalValue : values[benchmarkSeries];
+
+            HistoricDataDTO data = new HistoricDataDTO();
+            data.setMonth(IstDate.monthLabel(monthIndex));
+            data.setDate(IstDate.format(day));
+            data.setTotalValue(totalValue);
+            data.setTotalProfit(totalProfit);
+            data.setTotalInvested(totalInvested);
+            data.setTotalValueBenchmark(benchmarkValue);
+            Map<String, Double> comparison = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                comparison.put(names[i], values[seriesOf[i]]);
+            }
+            data.setComparison(comparison);
+
+            if (first) {
+                data.setThisMonthProfit(totalProfit);
+                data.setThisMonthInvested(totalInvested);
+                data.setGrowthPercent(totalInvested == 0 ? 0.0 : (totalProfit / totalInvested) * 100.0);
+            } else {
+                data.setThisMonthProfit(totalProfit - previousProfit);
+                data.setThisMonthInvested(totalInvested - previousInvested + totalInvestmentSold);
+                data.setGrowthPercent(previousInvested == 0 ? 0.0 : (data.getThisMonthProfit() / previousInvested) * 100.0);
+            }
+            data.setAlphaPercent(((totalValue - benchmarkValue) * 100) / benchmarkValue);
+
+            previousProfit = totalProfit;
+            previousInvested = totalInvested;
+            return data;
+        }
+    }
+
+    /**
+     * Forward cursor over one NAV series with the latest-NAV fallback.
+     */
+    private static final class SeriesWalker {
+        private final MonthEndNavTable table;
+        private final NavSeries series;
+        private final NavSeries.Cursor cursor;
+        private final Function<Integer, Double> latestNavLookup;
+        private double fallbackNav = Double.NaN;
+        private boolean fallbackLoaded;
+
+        SeriesWalker(MonthEndNavTable table, Function<Integer, Double> latestNavLookup, int fromDay) {
+            this.table = table;
+            this.series = table.getSeries();
+            this.cursor = series.cursor(fromDay);
+            this.latestNavLookup = latestNavLookup;
+        }
+
+        // Closed months come from the shared table; only the open month walks the series.
+        double monthEndNav(int monthIndex, int monthEnd) {
+            double nav = table.navAtMonthEnd(monthIndex);
+            return Double.isNaN(nav) ? navOnOrAfter(monthEnd) : nav;
+        }
+
+        // NAV on or after the day, else the scheme's latest NAV, else 0.
+        double navOnOrAfter(int day) {
+            double nav = cursor.navOnOrAfter(day);
+            if (!Double.isNaN(nav)) {
+                return nav;
+            }
+            if (!fallbackLoaded) {
+                Double latest = series.getSchemeCode() == null ? null : latestNavLookup.apply(series.getSchemeCode());
+                fallbackNav = latest == null ? 0.0 : latest;
+                fallbackLoaded = true;
+            }
+            return fallbackNav;
+        }
+    }
+}
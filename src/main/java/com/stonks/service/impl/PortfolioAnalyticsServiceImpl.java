@@ -0,0 +1,277 @@
+package com.stonks.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stonks.dto.CorrelationMatrixDTO;
+import com.stonks.dto.PortfolioReturnsDTO;
+import com.stonks.dto.ReturnsDTO;
+import com.stonks.dto.UserFundDTO;
+import com.stonks.dto.XirrHistoryDTO;
+import com.stonks.event.PortfolioChangedEvent;
+import com.stonks.model.Transaction;
+import com.stonks.service.MutualFundDataService;
+import com.stonks.service.PortfolioAnalyticsService;
+import com.stonks.service.TransactionService;
+import com.stonks.service.UserFundService;
+import com.stonks.service.impl.HoldingReturnsBuilder.Holding;
+import com.stonks.util.CorrelationMatrix;
+import com.stonks.util.IstDate;
+import com.stonks.util.MonthEndNavTable;
+import com.stonks.util.NavSeries;
+import com.stonks.util.ReturnSeries;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Time-weighted and trailing returns per fund and for the portfolio, and the correlation of daily
+ * returns between funds, and the portfolio XIRR at every month end.
+ * <p>
+ * Results are cached per user and tagged with the latest NAV date of every fund they were computed
+ * from, so they are reused until a NAV is published or the user's transactions change. The XIRR
+ * history keeps its solved months instead, and a NAV publication only adds the months that closed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PortfolioAnalyticsServiceImpl implements PortfolioAnalyticsService {
+
+    private static final String[] TrailingWindows = {"1M", "3M", "6M", "1Y", "3Y", "5Y"};
+    private static final int[] TrailingMonths = {1, 3, 6, 12, 36, 60};
+    private static final int CorrelationLookbackMonths = 36;
+
+    private final UserFundService userFundService;
+    private final TransactionService transactionService;
+    private final MutualFundDataService mfapiService;
+    private final UserFundRefreshQueue userFundRefreshQueue;
+    private final MonthEndNavRegistry monthEndNavRegistry;
+
+    private final Cache<String, CachedReturns> returnsCache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofHours(24))
+            .build();
+    private final Cache<String, CachedCorrelations> correlationCache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofHours(24))
+            .build();
+    private final Cache<String, CachedXirrHistory> xirrCache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofHours(24))
+            .build();
+    // Bumped on every invalidation so results computed across a write are not stored.
+    private final AtomicLong generation = new AtomicLong();
+
+    @Override
+    public Optional<PortfolioReturnsDTO> getReturns(String userId) {
+        try {
+            userFundRefreshQueue.flushUser(userId);
+            long startGeneration = generation.get();
+            List<UserFundDTO> userFunds = userFundService.getUserFundsByUserId(userId);
+
+            List<NavSeries> series = navSeries(userFunds);
+            String navVersion = navVersion(userFunds, series);
+            CachedReturns cached = returnsCache.getIfPresent(userId);
+            if (cached != null && cached.navVersion.equals(navVersion)) {
+                return Optional.of(cached.returns);
+            }
+
+            List<ReturnsDTO> funds = new ArrayList<>(userFunds.size());
+            List<Holding> portfolio = new ArrayList<>();
+            for (int i = 0; i < userFunds.size(); i++) {
+                UserFundDTO userFund = userFunds.get(i);
+                Holding holding = new Holding(series.get(i), transactionService.getTransactionsByUserIdAndFundIdOrderByDateAsc(userId, userFund.getFundId()));
+                funds.add(toReturns(HoldingReturnsBuilder.build(List.of(holding)), userFund.getFundId(), userFund.getFundName()));
+                // The portfolio follows the combined chart and leaves emergency funds out.
+                if (!Boolean.TRUE.equals(userFund.getIsEmergency())) {
+                    portfolio.add(holding);
+                }
+            }
+
+            PortfolioReturnsDTO returns = new PortfolioReturnsDTO();
+            returns.setUserId(userId);
+            returns.setPortfolio(toReturns(HoldingReturnsBuilder.build(portfolio), null, null));
+            returns.setAsOfDate(returns.getPortfolio().getAsOfDate());
+            returns.setFunds(funds);
+
+            if (generation.get() == startGeneration) {
+                returnsCache.put(userId, new CachedReturns(navVersion, returns));
+            }
+            return Optional.of(returns);
+        } catch (Exception e) {
+            log.error("Error computing returns for user: {}", userId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<CorrelationMatrixDTO> getCorrelations(String userId) {
+        try {
+            long startGeneration = generation.get();
+            List<UserFundDTO> userFunds = userFundService.getUserFundsByUserId(userId);
+            List<NavSeries> series = navSeries(userFunds);
+            String navVersion = navVersion(userFunds, series);
+            CachedCorrelations cached = correlationCache.getIfPresent(userId);
+            if (cached != null && cached.navVersion.equals(navVersion)) {
+                return Optional.of(cached.correlations);
+            }
+
+            // Look back from the oldest latest NAV so a scheme that lags by a day still lines up.
+            int asOf = Integer.MAX_VALUE;
+            for (NavSeries navSeries : series) {
+                asOf = Math.min(asOf, navSeries.isEmpty() ? Integer.MAX_VALUE : navSeries.latestDay());
+            }
+            int fromDay = asOf == Integer.MAX_VALUE ? 0 : IstDate.minusMonths(asOf, CorrelationLookbackMonths);
+            CorrelationMatrix matrix = CorrelationMatrix.of(series, fromDay);
+
+            CorrelationMatrixDTO correlations = new CorrelationMatrixDTO();
+            correlations.setUserId(userId);
+            correlations.setFundIds(userFunds.stream().map(UserFundDTO::getFundId).toList());
+            correlations.setFundNames(userFunds.stream().map(UserFundDTO::getFundName).toList());
+            correlations.setObservations(matrix.getObservations());
+            if (matrix.getFirstDay() >= 0) {
+                correlations.setFromDate(IstDate.format(matrix.getFirstDay()));
+                correlations.setAsOfDate(IstDate.format(matrix.getLastDay()));
+            }
+            Double[][] values = new Double[matrix.size()][matrix.size()];
+            for (int a = 0; a < matrix.size(); a++) {
+                for (int b = 0; b < matrix.size(); b++) {
+                    double value = matrix.get(a, b);
+                    values[a][b] = Double.isNaN(value) ? null : value;
+                }
+            }
+            correlations.setCorrelations(values);
+
+            if (generation.get() == startGeneration) {
+                correlationCache.put(userId, new CachedCorrelations(navVersion, correlations));
+            }
+            return Optional.of(correlations);
+        } catch (Exception e) {
+            log.error("Error computing correlations for user: {}", userId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<XirrHistoryDTO> getXirrHistory(String userId) {
+        try {
+            userFundRefreshQueue.flushUser(userId);
+            long startGeneration = generation.get();
+            // Emergency funds are left out, as in the dashboard XIRR.
+            List<UserFundDTO> userFunds = userFundService.getUserFundsByUserId(userId).stream().filter(fund -> !Boolean.TRUE.equals(fund.getIsEmergency())).toList();
+            String funds = userFunds.stream().map(fund -> String.valueOf(fund.getFundId())).collect(Collectors.joining(","));
+
+            CachedXirrHistory cached = xirrCache.getIfPresent(userId);
+            if (cached == null || !cached.funds.equals(funds)) {
+                List<List<Transaction>> ledgers = new ArrayList<>(userFunds.size());
+                for (UserFundDTO userFund : userFunds) {
+                    ledgers.add(transactionService.getTransactionsByUserIdAndFundIdOrderByDateAsc(userId, userFund.getFundId()));
+                }
+                cached = new CachedXirrHistory(funds, new RollingXirrBuilder(ledgers));
+                if (generation.get() == startGeneration) {
+                    xirrCache.put(userId, cached);
+                }
+            }
+
+            NavSeries[] series = new NavSeries[userFunds.size()];
+            MonthEndNavTable[] tables = new MonthEndNavTable[userFunds.size()];
+            // Months closed for every fund that has NAV data
+            int lastMonth = Integer.MAX_VALUE;
+            for (int i = 0; i < userFunds.size(); i++) {
+                tables[i] = monthEndNavRegistry.getTable(userFunds.get(i).getFundId());
+                series[i] = tables[i].getSeries();
+                if (!series[i].isEmpty()) {
+                    lastMonth = Math.min(lastMonth, tables[i].getLastMonth());
+                }
+            }
+            if (lastMonth == Integer.MAX_VALUE) {
+                lastMonth = IstDate.monthIndex(IstDate.today()) - 1;
+            }
+
+            XirrHistoryDTO history = new XirrHistoryDTO();
+            history.setUserId(userId);
+            RollingXirrBuilder builder = cached.builder;
+            synchronized (builder) {
+                builder.extendTo(tables, lastMonth);
+                history.setPoints(builder.pointsWithLive(series, IstDate.today()));
+            }
+            return Optional.of(history);
+        } catch (Exception e) {
+            log.error("Error computing XIRR history for user: {}", userId, e);
+            return Optional.empty();
+        }
+    }
+
+    @EventListener
+    public void onPortfolioChanged(PortfolioChangedEvent event) {
+        generation.incrementAndGet();
+        returnsCache.invalidate(event.getUserId());
+        correlationCache.invalidate(event.getUserId());
+        xirrCache.invalidate(event.getUserId());
+    }
+
+    private List<NavSeries> navSeries(List<UserFundDTO> userFunds) {
+        List<NavSeries> series = new ArrayList<>(userFunds.size());
+        for (UserFundDTO userFund : userFunds) {
+            series.add(mfapiService.getNavSeries(userFund.getFundId()));
+        }
+        return series;
+    }
+
+    // The funds and the latest NAV date of each, which together decide every cached result.
+    private static String navVersion(List<UserFundDTO> userFunds, List<NavSeries> series) {
+        StringBuilder navVersion = new StringBuilder();
+        for (int i = 0; i < userFunds.size(); i++) {
+            NavSeries navSeries = series.get(i);
+            navVersion.append(userFunds.get(i).getFundId()).append(':').append(navSeries.isEmpty() ? 0 : navSeries.latestDay()).append(',');
+        }
+        return navVersion.toString();
+    }
+
+    private static ReturnsDTO toReturns(ReturnSeries series, Integer fundId, String fundName) {
+        ReturnsDTO dto = new ReturnsDTO();
+        dto.setFundId(fundId);
+        dto.setFundName(fundName);
+        Map<String, Double> trailing = new LinkedHashMap<>();
+        if (series.isEmpty()) {
+            dto.setTrailingPercent(trailing);
+            return dto;
+        }
+
+        int asOf = series.latestDay();
+        dto.setFromDate(IstDate.format(series.firstDay()));
+        dto.setAsOfDate(IstDate.format(asOf));
+        double sinceInception = series.returnSinceInception();
+        dto.setTwrPercent(percent(sinceInception));
+        dto.setTwrAnnualizedPercent(percent(ReturnSeries.annualize(sinceInception, asOf - series.firstDay())));
+        for (int w = 0; w < TrailingWindows.length; w++) {
+            int from = IstDate.minusMonths(asOf, TrailingMonths[w]);
+            double windowReturn = series.returnSince(from);
+            trailing.put(TrailingWindows[w], percent(TrailingMonths[w] > 12 ? ReturnSeries.annualize(windowReturn, asOf - from) : windowReturn));
+        }
+        dto.setTrailingPercent(trailing);
+        return dto;
+    }
+
+    private static Double percent(double fraction) {
+        return Double.isNaN(fraction) || Double.isInfinite(fraction) ? null : fraction * 100.0;
+    }
+
+    private record CachedReturns(String navVersion, PortfolioReturnsDTO returns) {
+    }
+
+    private record CachedXirrHistory(String funds, RollingXirrBuilder builder) {
+    }
+
+    private record CachedCorrelations(String navVersion, CorrelationMatrixDTO correlations) {
+    }
+}
@@ -0,0 +1,215 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.HistoricDataDTO;
+import com.stonks.util.IstDate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Sums per-fund monthly charts into the combined portfolio chart.
+ * <p>
+ * Points are addressed by slot (a {@link IstDate#monthIndex} on monthly charts, a position on the
+ * shared valuation grid otherwise) offset from the earliest slot of any fund, and every metric is
+ * accumulated into a primitive column; DTOs are only created for the final rows. Per-fund charts
+ * are contiguous runs that end at the same point, so a point's slot follows from its position and
+ * no month label is parsed.
+ */
+final class PortfolioChartAggregator {
+
+    // Below this many funds the column pass is cheaper than forking.
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    private PortfolioChartAggregator() {
+    }
+
+    /**
+     * Sums monthly charts, each ending in the current month or (when computed just before the month
+     * rolled over) the previous one.
+     */
+    static List<HistoricDataDTO> aggregate(List<List<HistoricDataDTO>> funds, int currentMonth) {
+        int[] endMonths = new int[funds.size()];
+        for (int f = 0; f < funds.size(); f++) {
+            if (!funds.get(f).isEmpty()) {
+                endMonths[f] = endMonth(funds.get(f), currentMonth);
+            }
+        }
+        return aggregate(funds, endMonths);
+    }
+
+    /**
+     * Sums charts sampled on one valuation grid, which all end on its last day.
+     */
+    static List<HistoricDataDTO> aggregateAligned(List<List<HistoricDataDTO>> funds) {
+        return aggregate(funds, new int[funds.size()]);
+    }
+
+    private static List<HistoricDataDTO> aggregate(List<List<HistoricDataDTO>> funds, int[] endSlots) {
+        int baseSlot = Integer.MAX_VALUE;
+        int lastSlot = Integer.MIN_VALUE;
+        for (int f = 0; f < funds.size(); f++) {
+            List<HistoricDataDTO> fund = funds.get(f);
+            if (fund.isEmpty()) {
+                continue;
+            }
+            baseSlot = Math.min(baseSlot, endSlots[f] - fund.size() + 1);
+            lastSlot = Math.max(lastSlot, endSlots[f]);
+        }
+        if (baseSlot == Integer.MAX_VALUE) {
+            return new ArrayList<>();
+        }
+
+        int first = baseSlot;
+        int last = lastSlot;
+        Columns columns = funds.size() >= PARALLEL_THRESHOLD
+                ? IntStream.range(0, funds.size()).parallel().collect(() -> new Columns(first, last), (acc, f) -> acc.add(funds.get(f), endSlots[f]), Columns::merge)
+                : addAll(new Columns(first, last), funds, endSlots);
+        return columns.toRows();
+    }
+
+    private static Columns addAll(Columns columns, List<List<HistoricDataDTO>> funds, int[] endSlots) {
+        for (int f = 0; f < funds.size(); f++) {
+            columns.add(funds.get(f), endSlots[f]);
+        }
+        return columns;
+    }
+
+    // A chart computed just before a month rolled over ends in the previous month.
+    private static int endMonth(List<HistoricDataDTO> fund, int currentMonth) {
+        String last = fund.getLast().getMonth();
+        return IstDate.monthLabel(currentMonth - 1).equals(last) ? currentMonth - 1 : currentMonth;
+    }
+
+    private static final class Columns {
+        private final int baseSlot;
+        private final int[] funds;
+        // Any fund's point in the slot, for the month label and date.
+        private final HistoricDataDTO[] labels;
+        private final double[] totalValue;
+        private final double[] totalProfit;
+        private final double[] totalInvested;
+        private final double[] thisMonthProfit;
+        private final double[] thisMonthInvested;
+        private final double[] totalValueBenchmark;
+        // Comparison benchmark columns and how many funds contributed to each slot
+        private final Map<String, double[]> comparison = new LinkedHashMap<>();
+        private final Map<String, int[]> comparisonFunds = new LinkedHashMap<>();
+        // Growth and alpha of the only fund in a month, reported as-is when nothing is summed.
+        private final double[] singleGrowthPercent;
+        private final double[] singleAlphaPercent;
+
+        Columns(int baseSlot, int lastSlot) {
+            int months = lastSlot - baseSlot + 1;
+            this.baseSlot = baseSlot;
+            this.funds = new int[months];
+            this.labels = new HistoricDataDTO[months];
+            this.totalValue = new double[months];
+            this.totalProfit = new double[months];
+            this.totalInvested = new double[months];
+            this.thisMonthProfit = new double[months];
+            this.thisMonthInvested = new double[months];
+            this.totalValueBenchmark = new double[months];
+            this.singleGrowthPercent = new double[months];
+            this.singleAlphaPercent = new double[months];
+        }
+
+        void add(List<HistoricDataDTO> fund, int endSlot) {
+            int offset = endSlot - fund.size() + 1 - baseSlot;
+            for (int i = 0; i < fund.size(); i++) {
+                HistoricDataDTO data = fund.get(i);
+                int m = offset + i;
+                funds[m]++;
+                labels[m] = data;
+                totalValue[m] += data.getTotalValue();
+                totalProfit[m] += data.getTotalProfit();
+                totalInvested[m] += data.getTotalInvested();
+                thisMonthProfit[m] += data.getThisMonthProfit();
+                thisMonthInvested[m] += data.getThisMonthInvested();
+                totalValueBenchmark[m] += data.getTotalValueBenchmark();
+                if (data.getComparison() != null) {
+                    for (Map.Entry<String, Double> entry : data.getComparison().entrySet()) {
+                        comparisonColumn(entry.getKey())[m] += entry.getValue();
+                        comparisonFunds.get(entry.getKey())[m]++;
+                    }
+                }
+                singleGrowthPercent[m] = data.getGrowthPercent();
+                singleAlphaPercent[m] = data.getAlphaPercent();
+            }
+        }
+
+        Columns merge(Columns other) {
+            for (int m = 0; m < funds.length; m++) {
+                if (other.funds[m] == 0) {
+                    continue;
+                }
+                if (funds[m] == 0) {
+                    labels[m] = other.labels[m];
+                    singleGrowthPercent[m] = other.singleGrowthPercent[m];
+                    singleAlphaPercent[m] = other.singleAlphaPercent[m];
+                }
+                funds[m] += other.funds[m];
+                totalValue[m] += other.totalValue[m];
+                totalProfit[m] += other.totalProfit[m];
+                totalInvested[m] += other.totalInvested[m];
+                thisMonthProfit[m] += other.thisMonthProfit[m];
+                thisMonthInvested[m] += other.thisMonthInvested[m];
+                totalValueBenchmark[m] += other.totalValueBenchmark[m];
+            }
+            for (Map.Entry<String, double[]> entry : other.comparison.entrySet()) {
+                double[] column = comparisonColumn(entry.getKey());
+                int[] contributors = comparisonFunds.get(entry.getKey());
+                int[] otherContributors = other.comparisonFunds.get(entry.getKey());
+                for (int m = 0; m < column.length; m++) {
+                    column[m] += entry.getValue()[m];
+                    contributors[m] += otherContributors[m];
+                }
+            }
+            return this;
+        }
+
+        private double[] comparisonColumn(String name) {
+            double[] column = comparison.get(name);
+            if (column == null) {
+                column = new double[funds.length];
+                comparison.put(name, column);
+                comparisonFunds.put(name, new int[funds.length]);
+            }
+            return column;
+        }
+
+        List<HistoricDataDTO> toRows() {
+            List<HistoricDataDTO> rows = new ArrayList<>(funds.length);
+            for (int m = 0; m < funds.length; m++) {
+                if (funds[m] == 0) {
+                    continue;
+                }
+                HistoricDataDTO data = new HistoricDataDTO();
+                data.setMonth(labels[m].getMonth());
+                data.setDate(labels[m].getDate());
+                data.setTotalValue(totalValue[m]);
+                data.setTotalProfit(totalProfit[m]);
+                data.setTotalInvested(totalInvested[m]);
+                data.setThisMonthProfit(thisMonthProfit[m]);
+                data.setThisMonthInvested(thisMonthInvested[m]);
+                data.setTotalValueBenchmark(totalValueBenchmark[m]);
+                // A benchmark is only comparable when every fund in the slot reports it.
+                Map<String, Double> values = new LinkedHashMap<>();
+                for (Map.Entry<String, double[]> entry : comparison.entrySet()) {
+                    if (comparisonFunds.get(entry.getKey())[m] == funds[m]) {
+                        values.put(entry.getKey(), entry.getValue()[m]);
+                    }
+                }
+                data.setComparison(values);
+                // Summed months report the portfolio's cumulative growth and alpha.
+                boolean summed = funds[m] > 1;
+                data.setGrowthPercent(summed && totalInvested[m] != 0 ? (totalProfit[m] / totalInvested[m]) * 100.0 : singleGrowthPercent[m]);
+                data.setAlphaPercent(summed && totalValueBenchmark[m] != 0 ? ((totalValue[m] / totalValueBenchmark[m]) - 1) * 100.0 : singleAlphaPercent[m]);
+                rows.add(data);
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.UserDashboardExtraDTO;
+import com.stonks.model.TaxLotRegister;
+import com.stonks.model.Transaction;
+import com.stonks.util.IstDate;
+import com.stonks.util.XirrUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dashboard extras of a portfolio accumulated in one pass: realized, current-year and long-term
+ * gains from each fund's tax lot register, and the portfolio XIRR from the user's transactions.
+ * <p>
+ * Transactions are fed straight from a single cursor over all of the user's funds; only the cash
+ * flows of the included funds are kept, in primitive arrays handed to the solver as they are.
+ * Registers are added before transactions, so a fund still holding units without a NAV to value
+ * them at can be dropped from the XIRR instead of counting its purchases against nothing.
+ */
+final class PortfolioExtrasEngine {
+
+    private final Set<Integer> fundIds;
+    private final List<Integer> timedOutFundIds = new ArrayList<>();
+    private double totalLongTermGains;
+    private double totalRealizedProfit;
+    private double currentYearRealizedProfit;
+    private double currentValue;
+
+    private double[] amounts = new double[64];
+    private int[] days = new int[64];
+    private int flows;
+
+    PortfolioExtrasEngine(Set<Integer> fundIds) {
+        this.fundIds = new HashSet<>(fundIds);
+    }
+
+    /**
+     * Adds a fund's gains, valued at its latest NAV. A fund without one contributes realized gains
+     * only, and if it still holds units its cash flows are left out of the XIRR and the result is
+     * marked partial.
+     */
+    void addRegister(TaxLotRegister register, Double currentNav, double currentYearRealized) {
+        currentYearRealizedProfit += currentYearRealized;
+        totalRealizedProfit += register.getTotalRealizedProfit();
+        if (currentNav != null) {
+            totalLongTermGains += (register.getLongTermUnits() * currentNav) - register.getLongTermInvested();
+            currentValue += register.getOpenUnits() * currentNav;
+        } else if (register.getOpenUnits() > 0) {
+            fundIds.remove(register.getFundId());
+            timedOutFundIds.add(register.getFundId());
+        }
+    }
+
+    void addTransaction(Transaction tx) {
+        if (!fundIds.contains(tx.getFundId())) {
+            return;
+        }
+        boolean buy = "BUY".equalsIgnoreCase(tx.getTransactionType());
+        if (!buy && !"SELL".equalsIgnoreCase(tx.getTransactionType())) {
+            return;
+        }
+        addFlow(buy ? -tx.getAmount() : tx.getAmount(), IstDate.fromEpochSecond(tx.getDate()));
+    }
+
+    UserDashboardExtraDTO result(int today) {
+        // Current value closes the cash flows as of today
+        if (currentValue > 0) {
+            addFlow(currentValue, today);
+        }
+        double xirr = flows < 2 ? Double.NaN : XirrUtils.solve(amounts, days, flows, 0.10);
+
+        UserDashboardExtraDTO dashboardExtra = new UserDashboardExtraDTO();
+        dashboardExtra.setXirr(Double.isNaN(xirr) ? 0.0 : xirr * 100);
+        dashboardExtra.setLongTermGains(totalLongTermGains);
+        dashboardExtra.setTotalRealizedProfit(totalRealizedProfit);
+        dashboardExtra.setCurrentYearTotalRealizedProfit(currentYearRealizedProfit);
+        dashboardExtra.setPartial(!timedOutFundIds.isEmpty());
+        dashboardExtra.setTimedOutFundIds(timedOutFundIds);
+        return dashboardExtra;
+    }
+
+    private void addFlow(double amount, int day) {
+        if (flows == amounts.length) {
+            amounts = Arrays.copyOf(amounts, flows * 2);
+            days = Arrays.copyOf(days, flows * 2);
+        }
+        amounts[flows] = amount;
+        days[flows] = day;
+        flows++;
+    }
+}
@@ -0,0 +1,131 @@
+package com.stonks.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for per-fund work fanned out by a portfolio request (fund summaries, charts).
+ * <p>
+ * Every fan-out shares one deadline: whatever has not finished when it passes is reported as timed
+ * out and the request answers with the rest, so one slow scheme fetch cannot stall a dashboard.
+ * Late tasks keep running and still warm the caches for the next request. When the queue is full
+ * a task is rejected and reported as timed out straight away, so an overloaded pool sheds work
+ * instead of running it on, and stalling, the request thread.
+ */
+@Component
+@Slf4j
+public class PortfolioFanOut {
+
+    /**
+     * Result of one task: its value, or timedOut when the deadline passed first.
+     */
+    public record Outcome<T>(T value, boolean timedOut) {
+    }
+
+    private final long deadlineMillis;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public PortfolioFanOut(@Value("${stonks.portfolio-fanout.threads:16}") int threads,
+                           @Value("${stonks.portfolio-fanout.queue-capacity:500}") int queueCapacity,
+                           @Value("${stonks.portfolio-fanout.deadline-ms:5000}") long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-fanout-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the tasks on the pool and waits for them until the shared deadline. Outcomes are in task
+     * order; a task that threw has a null value, and one the full pool rejected is timed out.
+     */
+    public <T> List<Outcome<T>> invokeAll(List<Supplier<T>> tasks) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            submitted.incrementAndGet();
+            try {
+                futures.add(CompletableFuture.supplyAsync(task, executor));
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                futures.add(null);
+            }
+        }
+
+        List<Outcome<T>> outcomes = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            if (future == null) {
+                outcomes.add(new Outcome<>(null, true));
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            try {
+                if (remaining <= 0 && !future.isDone()) {
+                    throw new TimeoutException();
+                }
+                T value = future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+                completed.incrementAndGet();
+                outcomes.add(new Outcome<>(value, false));
+            } catch (TimeoutException e) {
+                timedOut.incrementAndGet();
+                outcomes.add(new Outcome<>(null, true));
+            } catch (ExecutionException e) {
+                failed.incrementAndGet();
+                log.error("Portfolio fan-out task failed", e.getCause());
+                outcomes.add(new Outcome<>(null, false));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                timedOut.incrementAndGet();
+                outcomes.add(new Outcome<>(null, true));
+            }
+        }
+        return outcomes;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("poolSize", (long) executor.getPoolSize());
+        stats.put("activeThreads", (long) executor.getActiveCount());
+        stats.put("largestPoolSize", (long) executor.getLargestPoolSize());
+        stats.put("queueSize", (long) executor.getQueue().size());
+        stats.put("queueRemainingCapacity", (long) executor.getQueue().remainingCapacity());
+        stats.put("submitted", submitted.get());
+        stats.put("completed", completed.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        log.info("Portfolio fan-out executor stopped. Stats: {}", getStats());
+    }
+}
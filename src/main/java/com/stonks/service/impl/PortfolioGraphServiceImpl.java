@@ -0,0 +1,125 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.FundSummaryDTO;
+import com.stonks.dto.NavSnapshotDTO;
+import com.stonks.model.Transaction;
+import com.stonks.model.User;
+import com.stonks.model.UserFund;
+import com.stonks.repository.TransactionRepository;
+import com.stonks.repository.UserFundRepository;
+import com.stonks.repository.UserRepository;
+import com.stonks.service.MutualFundDataService;
+import com.stonks.service.PortfolioGraphService;
+import com.stonks.service.UserFundService;
+import com.stonks.service.impl.PortfolioFanOut.Outcome;
+import com.stonks.util.IstDate;
+import com.stonks.util.NavSeries;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Batch loads for the GraphQL layer. Every method takes all the keys a request needs at one level
+ * of the query and answers them with one repository query, or one fan-out over the cached NAV
+ * series and fund summaries, instead of one call per parent.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PortfolioGraphServiceImpl implements PortfolioGraphService {
+
+    private final UserRepository userRepository;
+    private final UserFundRepository userFundRepository;
+    private final TransactionRepository transactionRepository;
+    private final MutualFundDataService mutualFundDataService;
+    private final UserFundService userFundService;
+    private final UserFundRefreshQueue userFundRefreshQueue;
+    private final PortfolioFanOut portfolioFanOut;
+
+    @Override
+    public Optional<User> getUser(String id) {
+        return userRepository.findById(id);
+    }
+
+    @Override
+    public Optional<UserFund> getUserFund(String userId, Integer fundId) {
+        userFundRefreshQueue.flush(userId, fundId);
+        return userFundRepository.findByUserIdAndFundId(userId, fundId).stream().findFirst();
+    }
+
+    @Override
+    public Map<String, List<UserFund>> getFundsByUserIds(Collection<String> userIds) {
+        // Pending write-behind refreshes are applied first so units and invested amounts are current.
+        userIds.forEach(userFundRefreshQueue::flushUser);
+        return userFundRepository.findByUserIdIn(userIds).stream().collect(Collectors.groupingBy(UserFund::getUserId));
+    }
+
+    @Override
+    public Map<UserFund, List<Transaction>> getTransactions(Collection<UserFund> userFunds) {
+        Set<String> userIds = userFunds.stream().map(UserFund::getUserId).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, List<Transaction>> byUserAndFund = new HashMap<>();
+        for (Transaction transaction : transactionRepository.findByUserIdInOrderByDateAsc(userIds)) {
+            byUserAndFund.computeIfAbsent(transaction.getUserId() + ":" + transaction.getFundId(), key -> new ArrayList<>()).add(transaction);
+        }
+        Map<UserFund, List<Transaction>> transactions = new HashMap<>();
+        for (UserFund userFund : userFunds) {
+            transactions.put(userFund, byUserAndFund.getOrDefault(userFund.getUserId() + ":" + userFund.getFundId(), List.of()));
+        }
+        return transactions;
+    }
+
+    @Override
+    public Map<String, List<Transaction>> getTransactionsByUserIds(Collection<String> userIds) {
+        Map<String, List<Transaction>> byUser = new HashMap<>();
+        for (String userId : userIds) {
+            byUser.put(userId, new ArrayList<>());
+        }
+        for (Transaction transaction : transactionRepository.findByUserIdInOrderByDateAsc(userIds)) {
+            byUser.get(transaction.getUserId()).add(transaction);
+        }
+        return byUser;
+    }
+
+    @Override
+    public Map<Integer, NavSnapshotDTO> getNavSnapshots(Collection<Integer> schemeCodes) {
+        List<Integer> codes = List.copyOf(new LinkedHashSet<>(schemeCodes));
+        List<Outcome<NavSeries>> outcomes = portfolioFanOut.invokeAll(codes.stream().<Supplier<NavSeries>>map(code -> () -> mutualFundDataService.getNavSeries(code)).toList());
+        Map<Integer, NavSnapshotDTO> snapshots = new HashMap<>();
+        for (int i = 0; i < codes.size(); i++) {
+            NavSeries series = outcomes.get(i).value();
+            if (outcomes.get(i).timedOut() || series == null || series.isEmpty()) {
+                continue;
+            }
+            Double previousNav = series.size() > 1 ? series.navAt(series.size() - 2) : null;
+            snapshots.put(codes.get(i), new NavSnapshotDTO(codes.get(i), IstDate.format(series.latestDay()), series.latestNav(), previousNav));
+        }
+        return snapshots;
+    }
+
+    @Override
+    public Map<UserFund, FundSummaryDTO> getFundSummaries(Collection<UserFund> userFunds) {
+        List<UserFund> funds = List.copyOf(userFunds);
+        List<Outcome<Optional<FundSummaryDTO>>> outcomes = portfolioFanOut.invokeAll(funds.stream().<Supplier<Optional<FundSummaryDTO>>>map(fund -> () -> userFundService.getFundSummary(fund.getUserId(), fund.getFundId())).toList());
+        Map<UserFund, FundSummaryDTO> summaries = new HashMap<>();
+        for (int i = 0; i < funds.size(); i++) {
+            Outcome<Optional<FundSummaryDTO>> outcome = outcomes.get(i);
+            if (outcome.timedOut()) {
+                log.warn("Fund summary timed out for user: {}, fund: {}", funds.get(i).getUserId(), funds.get(i).getFundId());
+            } else if (outcome.value() != null && outcome.value().isPresent()) {
+                summaries.put(funds.get(i), outcome.value().get());
+            }
+        }
+        return summaries;
+    }
+}
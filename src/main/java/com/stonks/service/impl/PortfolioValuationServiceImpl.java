@@ -0,0 +1,269 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.PortfolioDailyDTO;
+import com.stonks.exception.ApiException;
+import com.stonks.model.PortfolioDaily;
+import com.stonks.model.Transaction;
+import com.stonks.model.UserFund;
+import com.stonks.repository.PortfolioDailyRepository;
+import com.stonks.service.MutualFundDataService;
+import com.stonks.service.PortfolioValuationService;
+import com.stonks.util.IstDate;
+import com.stonks.util.NavSeries;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Values every user's holdings once a night, after the day's NAVs are published, and appends one
+ * {@link PortfolioDaily} row per user and day.
+ * <p>
+ * Each scheme held by anyone is refreshed once per pass. Users are then partitioned into batches,
+ * most recently active first, and valued in parallel on a bounded pool; each batch is written in
+ * one bulk upsert keyed by (userId, day). Rows already written for the day act as the checkpoint,
+ * so a pass that fails part-way is resumed by running it again.
+ */
+@Service
+@Slf4j
+public class PortfolioValuationServiceImpl implements PortfolioValuationService {
+
+    private final PortfolioDailyRepository portfolioDailyRepository;
+    private final UserFundRefreshQueue userFundRefreshQueue;
+    private final MutualFundDataService mutualFundDataService;
+    private final MonthEndNavRegistry monthEndNavRegistry;
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+    private final int batchSize;
+    private final ThreadPoolExecutor executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public PortfolioValuationServiceImpl(PortfolioDailyRepository portfolioDailyRepository,
+                                         UserFundRefreshQueue userFundRefreshQueue,
+                                         MutualFundDataService mutualFundDataService,
+                                         MonthEndNavRegistry monthEndNavRegistry,
+                                         MongoTemplate mongoTemplate,
+                                         CacheManager cacheManager,
+                                         @Value("${stonks.portfolio-valuation.threads:4}") int threads,
+                                         @Value("${stonks.portfolio-valuation.batch-size:200}") int batchSize) {
+        this.portfolioDailyRepository = portfolioDailyRepository;
+        this.userFundRefreshQueue = userFundRefreshQueue;
+        this.mutualFundDataService = mutualFundDataService;
+        this.monthEndNavRegistry = monthEndNavRegistry;
+        this.mongoTemplate = mongoTemplate;
+        this.cacheManager = cacheManager;
+        this.batchSize = Math.max(1, batchSize);
+        AtomicInteger counter = new AtomicInteger();
+        // Idle for all but a few minutes a night, so the core threads are allowed to time out.
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 4), runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-valuation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Scheduled(cron = "${stonks.portfolio-valuation.cron:0 45 23 * * *}", zone = "Asia/Kolkata")
+    public void scheduledValuation() {
+        String result = valuePortfolios();
+        log.info("Scheduled portfolio valuation finished. {}", result);
+    }
+
+    @Override
+    public String valuePortfolios() {
+        if (!running.compareAndSet(false, true)) {
+            return "Error: Portfolio valuation is already running";
+        }
+        try {
+            // Pending write-behind refreshes would otherwise be valued at yesterday's units.
+            userFundRefreshQueue.flushAll();
+            int day = IstDate.today();
+
+            Map<String, List<UserFund>> byUser = mongoTemplate.findAll(UserFund.class).stream()
+                    .filter(userFund -> userFund.getUnits() != null && userFund.getUnits() > 0)
+                    .collect(Collectors.groupingBy(UserFund::getUserId));
+            Set<String> done = new HashSet<>(mongoTemplate.findDistinct(Query.query(Criteria.where("day").is(day)), "userId", PortfolioDaily.class, String.class));
+            byUser.keySet().removeAll(done);
+            if (byUser.isEmpty()) {
+                return "Success: All portfolios already valued for " + IstDate.format(day);
+            }
+
+            Set<Integer> schemes = new HashSet<>();
+            byUser.values().forEach(funds -> funds.forEach(userFund -> schemes.add(userFund.getFundId())));
+            Map<Integer, NavSeries> navs = refreshNavs(schemes);
+
+            List<String> users = activeFirst(byUser.keySet());
+            log.info("Valuing {} portfolios across {} schemes for {} ({} already valued)", users.size(), schemes.size(), IstDate.format(day), done.size());
+
+            List<Future<Integer>> batches = new ArrayList<>();
+            for (int from = 0; from < users.size(); from += batchSize) {
+                List<String> batch = users.subList(from, Math.min(users.size(), from + batchSize));
+                batches.add(executor.submit(() -> valueBatch(batch, byUser, navs, day)));
+            }
+            int valued = 0;
+            int failedBatches = 0;
+            for (Future<Integer> batch : batches) {
+                try {
+                    valued += batch.get();
+                } catch (ExecutionException e) {
+                    // The batch has no rows for today, so the next pass picks it up again.
+                    failedBatches++;
+                    log.error("Error valuing portfolio batch", e.getCause());
+                }
+            }
+            return "Success: Valued " + valued + " of " + users.size() + " portfolios for " + IstDate.format(day) + ". Failed batches: " + failedBatches;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error: Portfolio valuation interrupted";
+        } catch (Exception e) {
+            log.error("Error valuing portfolios", e);
+            return "Error: " + e.getMessage();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Override
+    public List<PortfolioDailyDTO> getDailyHistory(String userId, String from, String to) {
+        int toDay;
+        int fromDay;
+        try {
+            toDay = to == null || to.isBlank() ? IstDate.today() : IstDate.parse(to.trim());
+            fromDay = from == null || from.isBlank() ? IstDate.minusMonths(toDay, 12) : IstDate.parse(from.trim());
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        if (fromDay > toDay) {
+            throw new ApiException("From date must not be after to date", HttpStatus.BAD_REQUEST);
+        }
+        return portfolioDailyRepository.findByUserIdAndDayBetweenOrderByDayAsc(userId, fromDay - 1, toDay + 1).stream()
+                .map(row -> new PortfolioDailyDTO(IstDate.format(row.getDay()), row.getValue(), row.getInvested(), row.getDayProfit(), row.getEmergencyValue()))
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Fetches each scheme's NAV history once, in parallel; the month-end registry announces any
+    // scheme whose NAV moved on so snapshots and analytics caches refresh with it.
+    private Map<Integer, NavSeries> refreshNavs(Set<Integer> schemes) throws InterruptedException {
+        Map<Integer, Future<NavSeries>> pending = new HashMap<>();
+        for (Integer schemeCode : schemes) {
+            pending.put(schemeCode, executor.submit(() -> {
+                evict("mutualFundDetails", schemeCode);
+                evict("latestNav", schemeCode);
+                evict("navSeries", schemeCode);
+                return monthEndNavRegistry.getTable(schemeCode).getSeries();
+            }));
+        }
+        Map<Integer, NavSeries> navs = new HashMap<>();
+        for (Map.Entry<Integer, Future<NavSeries>> entry : pending.entrySet()) {
+            try {
+                navs.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                // Value the scheme at whatever history is still reachable rather than drop its holders.
+                log.warn("Error refreshing NAV for scheme: {}", entry.getKey(), e.getCause());
+                navs.put(entry.getKey(), mutualFundDataService.getNavSeries(entry.getKey()));
+            }
+        }
+        return navs;
+    }
+
+    // Users ordered by their latest transaction, newest first; users without any come last.
+    private List<String> activeFirst(Set<String> userIds) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").in(userIds)),
+                Aggregation.group("userId").max("date").as("lastDate"),
+                Aggregation.sort(Sort.Direction.DESC, "lastDate"));
+        LinkedHashMap<String, Boolean> ordered = new LinkedHashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, Transaction.class, Document.class)) {
+            ordered.put(row.getString("_id"), Boolean.TRUE);
+        }
+        List<String> users = new ArrayList<>(userIds.size());
+        users.addAll(ordered.keySet());
+        for (String userId : userIds) {
+            if (!ordered.containsKey(userId)) {
+                users.add(userId);
+            }
+        }
+        return users;
+    }
+
+    private int valueBatch(List<String> users, Map<String, List<UserFund>> byUser, Map<Integer, NavSeries> navs, int day) {
+        long now = System.currentTimeMillis() / 1000;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioDaily.class);
+        for (String userId : users) {
+            double value = 0.0;
+            double invested = 0.0;
+            double dayProfit = 0.0;
+            double emergencyValue = 0.0;
+            List<UserFund> funds = byUser.get(userId);
+            for (UserFund userFund : funds) {
+                NavSeries series = navs.get(userFund.getFundId());
+                if (series == null || series.isEmpty()) {
+                    continue;
+                }
+                double units = userFund.getUnits();
+                double latest = series.latestNav();
+                if (Boolean.TRUE.equals(userFund.getIsEmergency())) {
+                    emergencyValue += units * latest;
+                    continue;
+                }
+                value += units * latest;
+                invested += userFund.getInvestmentAmount() != null ? userFund.getInvestmentAmount() : 0.0;
+                // A scheme with no NAV for the day (weekend, holiday, late publish) moved by nothing today.
+                if (series.size() > 1 && series.latestDay() == day) {
+                    dayProfit += units * (latest - series.navAt(series.size() - 2));
+                }
+            }
+            Query key = Query.query(Criteria.where("userId").is(userId).and("day").is(day));
+            Update update = new Update()
+                    .set("value", value)
+                    .set("invested", invested)
+                    .set("dayProfit", dayProfit)
+                    .set("emergencyValue", emergencyValue)
+                    .set("funds", funds.size())
+                    .set("valuedAt", now);
+            bulk.upsert(key, update);
+        }
+        bulk.execute();
+        return users.size();
+    }
+
+    private void evict(String cacheName, Integer schemeCode) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(schemeCode);
+        }
+    }
+}
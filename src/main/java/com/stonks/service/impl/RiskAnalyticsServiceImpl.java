@@ -0,0 +1,245 @@
+package com.stonks.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stonks.dto.RiskMetricsDTO;
+import com.stonks.dto.RollingReturnsDTO;
+import com.stonks.dto.UserFundDTO;
+import com.stonks.exception.ApiException;
+import com.stonks.service.MutualFundDataService;
+import com.stonks.service.RiskAnalyticsService;
+import com.stonks.service.UserFundService;
+import com.stonks.util.CoMoments;
+import com.stonks.util.IstDate;
+import com.stonks.util.NavSeries;
+import com.stonks.util.ReturnMoments;
+import com.stonks.util.RollingReturnDistribution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Volatility, drawdown, Sharpe/Sortino, beta/tracking error and rolling returns of a scheme from its
+ * daily NAVs.
+ * <p>
+ * Metrics depend only on the scheme, its benchmark and their NAV data, so they are cached by
+ * (scheme, benchmark, latest NAV dates) and shared by every user viewing the fund; a new NAV makes
+ * a new key and the old entry simply ages out. Each computation is one pass over primitive arrays.
+ */
+@Service
+@Slf4j
+public class RiskAnalyticsServiceImpl implements RiskAnalyticsService {
+
+    // NAVs are published on trading days
+    private static final double PeriodsPerYear = 252.0;
+    private static final int MaxRollingWindowYears = 10;
+    private static final double[] RollingPercentiles = {5, 10, 25, 75, 90, 95};
+
+    private final UserFundService userFundService;
+    private final MutualFundDataService mfapiService;
+    private final double riskFreeRate;
+    private final int lookbackYears;
+    private final Cache<String, RiskMetricsDTO> metricsCache = Caffeine.newBuilder()
+            .maximumSize(5_000)
+            .expireAfterWrite(Duration.ofDays(2))
+            .build();
+    private final Cache<String, RollingReturnsDTO> rollingCache = Caffeine.newBuilder()
+            .maximumSize(5_000)
+            .expireAfterWrite(Duration.ofDays(2))
+            .build();
+
+    public RiskAnalyticsServiceImpl(UserFundService userFundService, MutualFundDataService mfapiService,
+                                    @Value("${stonks.risk.risk-free-rate-percent:6.5}") double riskFreeRatePercent,
+                                    @Value("${stonks.risk.lookback-years:3}") int lookbackYears) {
+        this.userFundService = userFundService;
+        this.mfapiService = mfapiService;
+        this.riskFreeRate = riskFreeRatePercent / 100.0;
+        this.lookbackYears = lookbackYears;
+    }
+
+    @Override
+    public Optional<RiskMetricsDTO> getRiskMetrics(String userId, Integer fundId) {
+        try {
+            Optional<UserFundDTO> userFund = userFundService.getUserFundByUserIdAndFundId(userId, fundId);
+            if (userFund.isEmpty()) {
+                log.warn("UserFund not found for user: {} and fund: {}", userId, fundId);
+                return Optional.empty();
+            }
+            return Optional.of(getSchemeRiskMetrics(fundId, userFund.get().getBenchmark()));
+        } catch (Exception e) {
+            log.error("Error computing risk metrics for user: {} and fund: {}", userId, fundId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public RiskMetricsDTO getSchemeRiskMetrics(Integer schemeCode, String benchmark) {
+        NavSeries fund = mfapiService.getNavSeries(schemeCode);
+        Integer benchmarkCode = mfapiService.getBenchmarkSchemeCode(benchmark);
+        NavSeries benchmarkSeries = benchmarkCode == null ? NavSeries.empty() : mfapiService.getNavSeries(benchmarkCode);
+        String key = schemeCode + ":" + (fund.isEmpty() ? 0 : fund.latestDay()) + ":" + benchmarkCode + ":" + (benchmarkSeries.isEmpty() ? 0 : benchmarkSeries.latestDay());
+        return metricsCache.get(key, k -> compute(schemeCode, fund, benchmarkCode == null ? null : benchmark, benchmarkSeries));
+    }
+
+    @Override
+    public Optional<RollingReturnsDTO> getRollingReturns(String userId, Integer fundId, Integer windowYears) {
+        int years = windowYears == null ? 3 : windowYears;
+        if (years < 1 || years > MaxRollingWindowYears) {
+            throw new ApiException("Invalid window. Expected 1 to " + MaxRollingWindowYears + " years, got: " + windowYears, HttpStatus.BAD_REQUEST);
+        }
+        try {
+            Optional<UserFundDTO> userFund = userFundService.getUserFundByUserIdAndFundId(userId, fundId);
+            if (userFund.isEmpty()) {
+                log.warn("UserFund not found for user: {} and fund: {}", userId, fundId);
+                return Optional.empty();
+            }
+            return Optional.of(getSchemeRollingReturns(fundId, userFund.get().getBenchmark(), years));
+        } catch (Exception e) {
+            log.error("Error computing rolling returns for user: {} and fund: {}", userId, fundId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public RollingReturnsDTO getSchemeRollingReturns(Integer schemeCode, String benchmark, int windowYears) {
+        NavSeries fund = mfapiService.getNavSeries(schemeCode);
+        Integer benchmarkCode = mfapiService.getBenchmarkSchemeCode(benchmark);
+        NavSeries benchmarkSeries = benchmarkCode == null ? NavSeries.empty() : mfapiService.getNavSeries(benchmarkCode);
+        String key = schemeCode + ":" + windowYears + ":" + (fund.isEmpty() ? 0 : fund.latestDay()) + ":" + benchmarkCode + ":" + (benchmarkSeries.isEmpty() ? 0 : benchmarkSeries.latestDay());
+        return rollingCache.get(key, k -> computeRolling(schemeCode, fund, benchmarkCode == null ? null : benchmark, benchmarkSeries, windowYears));
+    }
+
+    private static RollingReturnsDTO computeRolling(Integer schemeCode, NavSeries fund, String benchmark, NavSeries benchmarkSeries, int windowYears) {
+        RollingReturnDistribution distribution = RollingReturnDistribution.of(fund, benchmarkSeries, 12 * windowYears);
+        RollingReturnsDTO dto = new RollingReturnsDTO();
+        dto.setSchemeCode(schemeCode);
+        dto.setBenchmark(benchmark);
+        dto.setWindowYears(windowYears);
+        dto.setPeriods(distribution.getCount());
+        if (distribution.isEmpty()) {
+            return dto;
+        }
+        dto.setFirstStartDate(IstDate.format(distribution.getFirstStartDay()));
+        dto.setLastStartDate(IstDate.format(distribution.getLastStartDay()));
+        dto.setMinPercent(percent(distribution.getMin()));
+        dto.setMaxPercent(percent(distribution.getMax()));
+        dto.setMeanPercent(percent(distribution.getMean()));
+        dto.setMedianPercent(percent(distribution.percentile(50)));
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (double p : RollingPercentiles) {
+            percentiles.put("p" + (int) p, percent(distribution.percentile(p)));
+        }
+        dto.setPercentiles(percentiles);
+        dto.setBenchmarkPeriods(distribution.getBenchmarkPeriods());
+        if (benchmark != null && distribution.getBenchmarkPeriods() > 0) {
+            dto.setBeatBenchmarkPercent(100.0 * distribution.getBeatingPeriods() / distribution.getBenchmarkPeriods());
+        }
+        return dto;
+    }
+
+    private RiskMetricsDTO compute(Integer schemeCode, NavSeries fund, String benchmark, NavSeries benchmarkSeries) {
+        RiskMetricsDTO dto = new RiskMetricsDTO();
+        dto.setSchemeCode(schemeCode);
+        dto.setBenchmark(benchmark);
+        dto.setRiskFreeRatePercent(riskFreeRate * 100.0);
+        if (fund.size() < 2) {
+            return dto;
+        }
+
+        int latest = fund.latestDay();
+        int first = Math.max(0, fund.indexOnOrAfter(IstDate.minusMonths(latest, 12 * lookbackYears)));
+        double dailyRiskFree = Math.pow(1.0 + riskFreeRate, 1.0 / PeriodsPerYear) - 1.0;
+        ReturnMoments moments = new ReturnMoments(dailyRiskFree);
+
+        // Returns, running peak and deepest drawdown in one pass
+        double peak = fund.navAt(first);
+        int peakIndex = first;
+        double maxDrawdown = 0.0;
+        int drawdownPeak = first;
+        int drawdownTrough = first;
+        for (int i = first + 1; i < fund.size(); i++) {
+            double nav = fund.navAt(i);
+            double previous = fund.navAt(i - 1);
+            if (previous > 0.0) {
+                moments.add(nav / previous - 1.0);
+            }
+            if (nav > peak) {
+                peak = nav;
+                peakIndex = i;
+            } else if (peak > 0.0 && (peak - nav) / peak > maxDrawdown) {
+                maxDrawdown = (peak - nav) / peak;
+                drawdownPeak = peakIndex;
+                drawdownTrough = i;
+            }
+        }
+
+        dto.setFromDate(IstDate.format(fund.dayAt(first)));
+        dto.setAsOfDate(IstDate.format(latest));
+        dto.setObservations(moments.getCount());
+        double annualReturn = moments.getMean() * PeriodsPerYear;
+        double volatility = moments.getStandardDeviation() * Math.sqrt(PeriodsPerYear);
+        double downside = moments.getDownsideDeviation() * Math.sqrt(PeriodsPerYear);
+        dto.setAnnualizedReturnPercent(percent(annualReturn));
+        dto.setAnnualizedVolatilityPercent(percent(volatility));
+        dto.setMaxDrawdownPercent(maxDrawdown * 100.0);
+        dto.setDrawdownPeakDate(IstDate.format(fund.dayAt(drawdownPeak)));
+        dto.setDrawdownTroughDate(IstDate.format(fund.dayAt(drawdownTrough)));
+        dto.setSharpeRatio(ratio(annualReturn - riskFreeRate, volatility));
+        dto.setSortinoRatio(ratio(annualReturn - riskFreeRate, downside));
+
+        if (benchmark != null && benchmarkSeries.size() >= 2) {
+            CoMoments coMoments = pairedMoments(fund, benchmarkSeries, fund.dayAt(first));
+            dto.setBeta(finite(coMoments.getBeta()));
+            dto.setTrackingErrorPercent(percent(coMoments.getTrackingError() * Math.sqrt(PeriodsPerYear)));
+        }
+        return dto;
+    }
+
+    // Returns between consecutive days both series have a NAV for, found with a two-pointer walk.
+    private static CoMoments pairedMoments(NavSeries fund, NavSeries benchmark, int fromDay) {
+        CoMoments coMoments = new CoMoments();
+        int i = Math.max(0, fund.indexOnOrAfter(fromDay));
+        int j = Math.max(0, benchmark.indexOnOrAfter(fromDay));
+        double previousFund = Double.NaN;
+        double previousBenchmark = Double.NaN;
+        while (i < fund.size() && j < benchmark.size()) {
+            int fundDay = fund.dayAt(i);
+            int benchmarkDay = benchmark.dayAt(j);
+            if (fundDay < benchmarkDay) {
+                i++;
+            } else if (benchmarkDay < fundDay) {
+                j++;
+            } else {
+                double fundNav = fund.navAt(i);
+                double benchmarkNav = benchmark.navAt(j);
+                if (previousFund > 0.0 && previousBenchmark > 0.0) {
+                    coMoments.add(fundNav / previousFund - 1.0, benchmarkNav / previousBenchmark - 1.0);
+                }
+                previousFund = fundNav;
+                previousBenchmark = benchmarkNav;
+                i++;
+                j++;
+            }
+        }
+        return coMoments;
+    }
+
+    private static Double ratio(double numerator, double denominator) {
+        return denominator > 0.0 ? finite(numerator / denominator) : null;
+    }
+
+    private static Double percent(double fraction) {
+        Double value = finite(fraction);
+        return value == null ? null : value * 100.0;
+    }
+
+    private static Double finite(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? null : value;
+    }
+}
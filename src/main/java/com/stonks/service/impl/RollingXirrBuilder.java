@@ -0,0 +1,152 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.XirrPointDTO;
+import com.stonks.model.Transaction;
+import com.stonks.util.IstDate;
+import com.stonks.util.MonthEndNavTable;
+import com.stonks.util.NavSeries;
+import com.stonks.util.XirrUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Portfolio XIRR as of each month end, extended a month at a time.
+ * <p>
+ * The ledgers of all funds are merged once into date-ordered flow arrays. Each month end takes the
+ * flows dated up to it as a prefix of those arrays, adds the holdings' month-end value as the
+ * closing flow in the slot after the prefix, and solves warm-started from the previous month's
+ * rate. Closed months never change, so an instance is kept per user and later calls only solve the
+ * months that closed since. Not thread-safe; callers synchronize on the instance.
+ */
+final class RollingXirrBuilder {
+
+    private record Flow(int day, double amount, int fund, double units) {
+    }
+
+    private final int[] flowDays;
+    private final double[] flowAmounts;
+    private final int[] flowFund;
+    private final double[] flowUnits;
+    // Flows with room for the closing value after any prefix
+    private final int[] workDays;
+    private final double[] workAmounts;
+    private final double[] units;
+
+    private final List<XirrPointDTO> points = new ArrayList<>();
+    private int applied;
+    private int nextMonth;
+    private double netInvested;
+    private double rate = 0.10;
+
+    RollingXirrBuilder(List<List<Transaction>> ledgers) {
+        List<Flow> flows = new ArrayList<>();
+        for (int f = 0; f < ledgers.size(); f++) {
+            for (Transaction tx : ledgers.get(f)) {
+                boolean buy = "BUY".equalsIgnoreCase(tx.getTransactionType());
+                boolean sell = "SELL".equalsIgnoreCase(tx.getTransactionType());
+                if (buy || sell) {
+                    flows.add(new Flow(IstDate.fromEpochSecond(tx.getDate()), buy ? -tx.getAmount() : tx.getAmount(), f, buy ? tx.getUnits() : -tx.getUnits()));
+                }
+            }
+        }
+        flows.sort(Comparator.comparingInt(Flow::day));
+
+        int n = flows.size();
+        flowDays = new int[n];
+        flowAmounts = new double[n];
+        flowFund = new int[n];
+        flowUnits = new double[n];
+        for (int i = 0; i < n; i++) {
+            Flow flow = flows.get(i);
+            flowDays[i] = flow.day();
+            flowAmounts[i] = flow.amount();
+            flowFund[i] = flow.fund();
+            flowUnits[i] = flow.units();
+        }
+        workDays = new int[n + 1];
+        workAmounts = new double[n + 1];
+        units = new double[ledgers.size()];
+        nextMonth = n == 0 ? Integer.MAX_VALUE : IstDate.monthIndex(flowDays[0]);
+    }
+
+    /**
+     * Solves every month end up to and including lastMonth that has not been solved yet.
+     */
+    void extendTo(MonthEndNavTable[] tables, int lastMonth) {
+        for (; nextMonth <= lastMonth; nextMonth++) {
+            int monthEnd = IstDate.monthEnd(nextMonth);
+            applyThrough(monthEnd);
+            double value = 0.0;
+            for (int f = 0; f < units.length; f++) {
+                double nav = tables[f].navAtMonthEnd(nextMonth);
+                if (units[f] != 0.0 && !Double.isNaN(nav)) {
+                    value += units[f] * nav;
+                }
+            }
+            points.add(solve(IstDate.monthLabel(nextMonth), monthEnd, value));
+        }
+    }
+
+    /**
+     * Solved month ends followed by the XIRR as of today at the latest NAVs, which is not kept.
+     */
+    List<XirrPointDTO> pointsWithLive(NavSeries[] series, int today) {
+        List<XirrPointDTO> result = new ArrayList<>(points);
+        if (flowDays.length == 0 || (nextMonth != Integer.MAX_VALUE && today <= IstDate.monthEnd(nextMonth - 1))) {
+            return result;
+        }
+        int savedApplied = applied;
+        double savedInvested = netInvested;
+        double savedRate = rate;
+        double[] savedUnits = units.clone();
+
+        applyThrough(today);
+        double value = 0.0;
+        for (int f = 0; f < units.length; f++) {
+            if (units[f] != 0.0 && !series[f].isEmpty()) {
+                value += units[f] * series[f].latestNav();
+            }
+        }
+        result.add(solve(IstDate.monthLabel(IstDate.monthIndex(today)), today, value));
+
+        applied = savedApplied;
+        netInvested = savedInvested;
+        rate = savedRate;
+        System.arraycopy(savedUnits, 0, units, 0, units.length);
+        return result;
+    }
+
+    // Extends the prefix by the flows dated on or before the day.
+    private void applyThrough(int day) {
+        while (applied < flowDays.length && flowDays[applied] <= day) {
+            workDays[applied] = flowDays[applied];
+            workAmounts[applied] = flowAmounts[applied];
+            units[flowFund[applied]] += flowUnits[applied];
+            netInvested -= flowAmounts[applied];
+            applied++;
+        }
+    }
+
+    private XirrPointDTO solve(String month, int day, double value) {
+        XirrPointDTO point = new XirrPointDTO();
+        point.setMonth(month);
+        point.setDate(IstDate.format(day));
+        point.setTotalValue(value);
+        point.setNetInvested(netInvested);
+        int count = applied;
+        if (value > 0.0) {
+            // The closing value takes the slot after the prefix until the next flow overwrites it.
+            workDays[count] = day;
+            workAmounts[count] = value;
+            count++;
+        }
+        double xirr = XirrUtils.solve(workAmounts, workDays, count, rate);
+        if (!Double.isNaN(xirr)) {
+            rate = xirr;
+            point.setXirrPercent(xirr * 100.0);
+        }
+        return point;
+    }
+}
@@ -0,0 +1,481 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.ImportJobDTO;
+import com.stonks.dto.MFAPIDTOs.MutualFundDTO;
+import com.stonks.dto.TransactionDTO;
+import com.stonks.exception.ApiException;
+import com.stonks.model.ImportJob;
+import com.stonks.model.ImportJob.ImportRowError;
+import com.stonks.repository.ImportJobRepository;
+import com.stonks.service.MutualFundDataService;
+import com.stonks.service.TransactionImportService;
+import com.stonks.service.UserFundService;
+import com.stonks.util.IstDate;
+import com.stonks.util.StatementCsvReader;
+import com.stonks.util.StatementCsvReader.StatementRow;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.stonks.util.TimeUtils.convertEpochToISTDateString;
+
+@Service
+@Slf4j
+public class TransactionImportServiceImpl implements TransactionImportService {
+
+    private static final List<String> ACTIVE_STATUSES = List.of("QUEUED", "RUNNING");
+    private static final String[] MONTH_ABBREVIATIONS = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+
+    private final ImportJobRepository importJobRepository;
+    private final MongoTemplate mongoTemplate;
+    private final UserFundService userFundService;
+    private final MutualFundDataService mfapiService;
+    private final int batchSize;
+    private final int maxRowErrors;
+    private final long staleAfterMillis;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName();
+    private final ThreadPoolExecutor executor;
+    // Jobs queued or running on this instance, by id, so shutdown can close out the ones it cuts off.
+    private final Map<String, ImportJob> activeJobs = new ConcurrentHashMap<>();
+    private volatile boolean stopping;
+
+    public TransactionImportServiceImpl(ImportJobRepository importJobRepository,
+                                        MongoTemplate mongoTemplate,
+                                        UserFundService userFundService,
+                                        MutualFundDataService mfapiService,
+                                        @Value("${stonks.import.batch-size:100}") int batchSize,
+                                        @Value("${stonks.import.max-row-errors:200}") int maxRowErrors,
+                                        @Value("${stonks.import.threads:1}") int threads,
+                                        @Value("${stonks.import.queue-capacity:20}") int queueCapacity,
+                                        @Value("${stonks.import.stale-after-ms:180000}") long staleAfterMillis) {
+        this.importJobRepository = importJobRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.userFundService = userFundService;
+        this.mfapiService = mfapiService;
+        this.batchSize = batchSize;
+        this.maxRowErrors = maxRowErrors;
+        this.staleAfterMillis = staleAfterMillis;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "statement-import-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public ImportJobDTO startImport(String userId, MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new ApiException("Import file is empty", HttpStatus.BAD_REQUEST);
+        }
+        log.info("Starting statement import for user: {} file: {} ({} bytes)", userId, file.getOriginalFilename(), file.getSize());
+
+        // Spool to our own temp file: the multipart part is removed once the request completes.
+        Path spooled;
+        try {
+            spooled = Files.createTempFile("stonks-import-", ".csv");
+            file.transferTo(spooled);
+        } catch (IOException e) {
+            log.error("Error spooling import file for user: {}", userId, e);
+            throw new ApiException("Error reading import file: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        ImportJob job = new ImportJob();
+        job.setUserId(userId);
+        job.setFileName(file.getOriginalFilename());
+        job.setStatus("QUEUED");
+        job.setTotalBytes(file.getSize());
+        job.setBytesRead(0L);
+        job.setRowsRead(0);
+        job.setSuccessCount(0);
+        job.setFailureCount(0);
+        job.setSkippedCount(0);
+        job.setErrorsTruncated(false);
+        job.setOwner(owner);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        ImportJob savedJob = importJobRepository.save(job);
+
+        activeJobs.put(savedJob.getId(), savedJob);
+        try {
+            executor.execute(new ImportTask(savedJob, spooled));
+        } catch (RejectedExecutionException e) {
+            deleteQuietly(spooled);
+            finish(savedJob, "FAILED", "Import queue is full, please retry later");
+            throw new ApiException("Import queue is full, please retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return convertToDTO(savedJob);
+    }
+
+    @Override
+    public Optional<ImportJobDTO> getImportJob(String jobId) {
+        return importJobRepository.findById(jobId).map(this::convertToDTO);
+    }
+
+    @Override
+    public List<ImportJobDTO> getImportJobsByUserId(String userId) {
+        return importJobRepository.findByUserIdOrderByCreatedAtDesc(userId).stream().map(this::convertToDTO).collect(Collectors.toList());
+    }
+
+    // Refreshes updatedAt on this instance's queued and running jobs, then sweeps for jobs whose
+    // instance has stopped doing the same. Only updatedAt is written, so a concurrent save of the
+    // job's progress by its import thread is not overwritten.
+    @Scheduled(fixedDelayString = "${stonks.import.heartbeat-ms:30000}")
+    public void heartbeat() {
+        if (!activeJobs.isEmpty()) {
+            Query query = Query.query(Criteria.where("_id").in(activeJobs.keySet()).and("status").in(ACTIVE_STATUSES));
+            mongoTemplate.updateMulti(query, Update.update("updatedAt", System.currentTimeMillis() / 1000), ImportJob.class);
+        }
+        failStaleJobs();
+    }
+
+    // Jobs left QUEUED or RUNNING by an instance that died without running shutdown: their
+    // heartbeat is older than stale-after-ms. Jobs whose instance is alive, this one or another,
+    // keep theirs fresh and are left alone. The update matches the updatedAt that was read, so a
+    // job that beat again in the meantime is not failed.
+    @EventListener(ApplicationReadyEvent.class)
+    public void failStaleJobs() {
+        long now = System.currentTimeMillis() / 1000;
+        for (ImportJob job : importJobRepository.findByStatusInAndUpdatedAtLessThan(ACTIVE_STATUSES, now - staleAfterMillis / 1000)) {
+            if (activeJobs.containsKey(job.getId())) {
+                continue;
+            }
+            String message = "Import was interrupted after " + job.getRowsRead() + " rows: instance " + job.getOwner() + " stopped responding";
+            Query query = Query.query(Criteria.where("_id").is(job.getId()).and("status").in(ACTIVE_STATUSES).and("updatedAt").is(job.getUpdatedAt()));
+            Update update = new Update().set("status", "FAILED").set("message", message).set("updatedAt", now);
+            if (mongoTemplate.updateFirst(query, update, ImportJob.class).getModifiedCount() > 0) {
+                log.info("Statement import job: {} FAILED. {}", job.getId(), message);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        for (Runnable queued : executor.shutdownNow()) {
+            if (queued instanceof ImportTask task) {
+                deleteQuietly(task.spooled);
+            }
+        }
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Statement import executor did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Running jobs stop at their next batch boundary and close themselves out; whatever is left
+        // never started or did not stop in time.
+        for (ImportJob job : List.copyOf(activeJobs.values())) {
+            finish(job, "FAILED", "Import was interrupted by a shutdown after " + job.getRowsRead() + " rows");
+        }
+    }
+
+    private final class ImportTask implements Runnable {
+        private final ImportJob job;
+        private final Path spooled;
+
+        private ImportTask(ImportJob job, Path spooled) {
+            this.job = job;
+            this.spooled = spooled;
+        }
+
+        @Override
+        public void run() {
+            runImport(job, spooled);
+        }
+    }
+
+    private void runImport(ImportJob job, Path spooled) {
+        log.info("Running statement import job: {} for user: {}", job.getId(), job.getUserId());
+        job.setStatus("RUNNING");
+        touch(job);
+
+        Map<Integer, String> fundNames = new HashMap<>();
+        List<StatementRow> batch = new ArrayList<>(batchSize);
+        try (InputStream input = Files.newInputStream(spooled); StatementCsvReader reader = new StatementCsvReader(input)) {
+            StatementRow row;
+            while ((row = reader.next()) != null) {
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    if (stopping) {
+                        throw new IllegalStateException("Import interrupted by shutdown");
+                    }
+                    processBatch(job, batch, fundNames);
+                    job.setBytesRead(reader.getBytesRead());
+                    touch(job);
+                }
+            }
+            processBatch(job, batch, fundNames);
+            job.setBytesRead(job.getTotalBytes());
+            finish(job, "COMPLETED", "Imported " + job.getSuccessCount() + " of " + job.getRowsRead() + " rows");
+        } catch (Exception e) {
+            if (stopping) {
+                finish(job, "FAILED", "Import was interrupted by a shutdown after " + job.getRowsRead() + " rows");
+            } else {
+                log.error("Statement import job: {} failed", job.getId(), e);
+                finish(job, "FAILED", "Error: " + e.getMessage());
+            }
+        } finally {
+            deleteQuietly(spooled);
+        }
+    }
+
+    // Consecutive BUYs are inserted together, pricing each scheme once per batch. A SELL must see
+    // every BUY before it, so pending BUYs are written first and the SELL goes through the regular
+    // path on its own. The UserFund refresh either triggers is coalesced per fund write-behind.
+    private void processBatch(ImportJob job, List<StatementRow> batch, Map<Integer, String> fundNames) {
+        List<StatementRow> buyRows = new ArrayList<>();
+        List<TransactionDTO> buys = new ArrayList<>();
+        for (StatementRow row : batch) {
+            job.setRowsRead(job.getRowsRead() + 1);
+            if (row.getError() != null) {
+                rowFailed(job, row, row.getError());
+                continue;
+            }
+            try {
+                TransactionDTO transactionDTO = toTransaction(job.getUserId(), row, fundNames);
+                if (transactionDTO == null) {
+                    job.setSkippedCount(job.getSkippedCount() + 1);
+                    continue;
+                }
+                if ("BUY".equals(transactionDTO.getTransactionType())) {
+                    buyRows.add(row);
+                    buys.add(transactionDTO);
+                    continue;
+                }
+                writeBuys(job, buyRows, buys);
+                recordResult(job, row, userFundService.addTransaction(transactionDTO));
+            } catch (IllegalArgumentException e) {
+                rowFailed(job, row, e.getMessage());
+            }
+        }
+        writeBuys(job, buyRows, buys);
+        batch.clear();
+    }
+
+    private void writeBuys(ImportJob job, List<StatementRow> rows, List<TransactionDTO> buys) {
+        if (buys.isEmpty()) {
+            return;
+        }
+        List<String> results = userFundService.addBuyTransactions(buys);
+        for (int i = 0; i < rows.size(); i++) {
+            recordResult(job, rows.get(i), results.get(i));
+        }
+        rows.clear();
+        buys.clear();
+    }
+
+    private void recordResult(ImportJob job, StatementRow row, String result) {
+        if (result.startsWith("Success:")) {
+            job.setSuccessCount(job.getSuccessCount() + 1);
+        } else {
+            rowFailed(job, row, result);
+        }
+    }
+
+    /**
+     * Maps a raw statement row to a transaction, or null for rows that carry no units movement
+     * (stamp duty, STT, reversals and similar charge lines).
+     */
+    private TransactionDTO toTransaction(String userId, StatementRow row, Map<Integer, String> fundNames) {
+        String transactionType = mapTransactionType(row.getTransactionType());
+        if (transactionType == null) {
+            return null;
+        }
+
+        Integer fundId;
+        try {
+            fundId = Integer.parseInt(require(row.getSchemeCode(), "scheme code"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid scheme code: " + row.getSchemeCode());
+        }
+
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setUserId(userId);
+        transactionDTO.setFundId(fundId);
+        transactionDTO.setFundName(row.getFundName() != null ? row.getFundName() : fundNames.computeIfAbsent(fundId, this::lookupFundName));
+        transactionDTO.setDate(normalizeDate(require(row.getDate(), "date")));
+        transactionDTO.setTransactionType(transactionType);
+
+        // Exactly one of amount/units is sent: BUYs are priced by amount, SELLs redeem by units.
+        Double amount = parseNumber(row.getAmount(), "amount");
+        Double units = parseNumber(row.getUnits(), "units");
+        if ("SELL".equals(transactionType)) {
+            if (units == null) {
+                throw new IllegalArgumentException("Units are required for a redemption");
+            }
+            transactionDTO.setUnits(units);
+        } else if (amount != null) {
+            transactionDTO.setAmount(amount);
+        } else if (units != null) {
+            transactionDTO.setUnits(units);
+        } else {
+            throw new IllegalArgumentException("Either amount or units is required");
+        }
+        return transactionDTO;
+    }
+
+    private static String mapTransactionType(String description) {
+        if (description == null) {
+            throw new IllegalArgumentException("Transaction type is required");
+        }
+        String type = description.toLowerCase(Locale.ROOT);
+        if (type.contains("reversal") || type.contains("rejection") || type.contains("stamp duty") || type.contains("stt") || type.contains("tds")) {
+            return null;
+        }
+        if (type.contains("redemption") || type.contains("redeem") || type.contains("sell") || type.contains("switch out") || type.contains("switch-out") || type.contains("swp")) {
+            return "SELL";
+        }
+        if (type.contains("purchase") || type.contains("buy") || type.contains("sip") || type.contains("systematic investment") || type.contains("switch in") || type.contains("switch-in")) {
+            return "BUY";
+        }
+        throw new IllegalArgumentException("Unsupported transaction type: " + description);
+    }
+
+    // Accepts dd-MM-yyyy, dd/MM/yyyy, yyyy-MM-dd and the CAMS dd-MMM-yyyy form; returns dd-MM-yyyy.
+    private static String normalizeDate(String value) {
+        String date = value.trim().replace('/', '-');
+        String[] parts = date.split("-");
+        if (parts.length == 3) {
+            if (parts[0].length() == 4) {
+                date = parts[2] + "-" + parts[1] + "-" + parts[0];
+            } else if (parts[1].length() == 3) {
+                int month = monthOf(parts[1]);
+                if (month > 0) {
+                    date = parts[0] + "-" + (month < 10 ? "0" + month : String.valueOf(month)) + "-" + parts[2];
+                }
+            }
+            if (date.length() == 9 && date.charAt(1) == '-') {
+                date = "0" + date;
+            }
+        }
+        return IstDate.format(IstDate.parse(date));
+    }
+
+    private static int monthOf(String abbreviation) {
+        String month = abbreviation.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < MONTH_ABBREVIATIONS.length; i++) {
+            if (MONTH_ABBREVIATIONS[i].equals(month)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Strips thousands separators and treats "(1,234.50)" / "-1234.50" as the same magnitude. Only
+    // a leading sign or enclosing parentheses are dropped, so an exponent like "1e-5" is kept.
+    private static Double parseNumber(String value, String column) {
+        if (value == null) {
+            return null;
+        }
+        String cleaned = value.replace(",", "").trim();
+        if (cleaned.length() >= 2 && cleaned.startsWith("(") && cleaned.endsWith(")")) {
+            cleaned = cleaned.substring(1, cleaned.length() - 1).trim();
+        }
+        if (cleaned.startsWith("-") || cleaned.startsWith("+")) {
+            cleaned = cleaned.substring(1).trim();
+        }
+        if (cleaned.isEmpty()) {
+            return null;
+        }
+        try {
+            double parsed = Double.parseDouble(cleaned);
+            return parsed == 0.0 ? null : parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + value);
+        }
+    }
+
+    private static String require(String value, String column) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + column);
+        }
+        return value;
+    }
+
+    private String lookupFundName(Integer fundId) {
+        return mfapiService.getMutualFundBySchemeCode(fundId).map(MutualFundDTO::getSchemeName)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown scheme code: " + fundId));
+    }
+
+    private void rowFailed(ImportJob job, StatementRow row, String message) {
+        job.setFailureCount(job.getFailureCount() + 1);
+        if (job.getErrors().size() < maxRowErrors) {
+            job.getErrors().add(new ImportRowError(row.getLineNumber(), message));
+        } else {
+            job.setErrorsTruncated(true);
+        }
+    }
+
+    private void finish(ImportJob job, String status, String message) {
+        activeJobs.remove(job.getId());
+        log.info("Statement import job: {} {}. {}", job.getId(), status, message);
+        job.setStatus(status);
+        job.setMessage(message);
+        touch(job);
+    }
+
+    private void touch(ImportJob job) {
+        job.setUpdatedAt(System.currentTimeMillis() / 1000);
+        importJobRepository.save(job);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled import file: {}", path, e);
+        }
+    }
+
+    private ImportJobDTO convertToDTO(ImportJob job) {
+        ImportJobDTO dto = new ImportJobDTO();
+        dto.setJobId(job.getId());
+        dto.setUserId(job.getUserId());
+        dto.setFileName(job.getFileName());
+        dto.setStatus(job.getStatus());
+        long totalBytes = job.getTotalBytes() == null ? 0 : job.getTotalBytes();
+        dto.setProgressPercent(totalBytes == 0 ? 0 : (int) Math.min(100, job.getBytesRead() * 100 / totalBytes));
+        dto.setRowsRead(job.getRowsRead());
+        dto.setSuccessCount(job.getSuccessCount());
+        dto.setFailureCount(job.getFailureCount());
+        dto.setSkippedCount(job.getSkippedCount());
+        dto.setErrors(job.getErrors().stream().map(error -> "Row " + error.getRowNumber() + ": " + error.getMessage()).collect(Collectors.toList()));
+        dto.setErrorsTruncated(job.getErrorsTruncated());
+        dto.setMessage(job.getMessage());
+        dto.setCreatedAt(convertEpochToISTDateString(job.getCreatedAt()));
+        dto.setUpdatedAt(convertEpochToISTDateString(job.getUpdatedAt()));
+        return dto;
+    }
+}
@@ -1,20 +1,31 @@
 package com.stonks.service.impl;
 
 import com.stonks.dto.TransactionDTO;
+import com.stonks.model.RedeemedLot;
 import com.stonks.model.Transaction;
 import com.stonks.repository.TransactionRepository;
 import com.stonks.service.MutualFundDataService;
 import com.stonks.service.TransactionService;
 
+import com.stonks.util.IstDate;
+import com.stonks.util.NavSeries;
 import com.stonks.util.XirrUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.stonks.util.TimeUtils.convertEpochToISTDateString;
@@ -28,6 +39,7 @@ public class TransactionServiceImpl implements TransactionService {
 
     private final TransactionRepository transactionRepository;
     private final MutualFundDataService mfAPIService;
+    private final MongoTemplate mongoTemplate;
 
 
     @Override
@@ -76,13 +88,7 @@ public class TransactionServiceImpl implements TransactionService {
             Pair<Double, Boolean> navData = mfAPIService.getNavForDate(transaction.getFundId(), transaction.getDate());
             transaction.setPrice(navData.getFirst());
             transaction.setIsUpdated(navData.getSecond());
-            if (transactionDTO.getAmount() != null) {
-                transaction.setAmount(transactionDTO.getAmount());
-                transaction.setUnits((transaction.getAmount() * 0.99995) / navData.getFirst());
-            } else {
-                transaction.setUnits(transactionDTO.getUnits());
-                transaction.setAmount(transaction.getUnits() * transaction.getPrice() * 1.000186);
-            }
+            applyAmountAndUnits(transaction, transactionDTO);
 
             if (Objects.equals(transactionDTO.getTransactionType(), "BUY")) {
                 transaction.setSellDate(null);
@@ -95,7 +101,9 @@ public class TransactionServiceImpl implements TransactionService {
                 if (transactionDTO.getUnits() > totalRedeemableUnits) {
                     throw new RuntimeException("Invalid Sell Transaction.Total Requested Units: " + transactionDTO.getUnits() + ", Total Redeemable Units: " + totalRedeemableUnits);
                 }
-                Double totalBookedProfit = redeemUnitsAndCalculateBookedProfit(transaction);
+                List<RedeemedLot> redeemedLots = new ArrayList<>();
+                Double totalBookedProfit = redeemUnitsAndCalculateBookedProfit(transaction, redeemedLots);
+                transaction.setRedeemedLots(redeemedLots);
                 transaction.setSellDate(null);
                 transaction.setIsRedeemed(true);
                 transaction.setBookedProfit(totalBookedProfit);
@@ -157,8 +165,73 @@ public class TransactionServiceImpl implements TransactionService {
         }
     }
 
+    @Override
+    public List<Pair<String, Transaction>> addBuyTransactions(List<TransactionDTO> transactions) {
+        // Each scheme's NAV history is resolved once for the batch and the BUYs go out in one insert.
+        // SELLs consume lots in date order, so they stay on addTransaction.
+        log.info("Creating {} BUY transactions in one batch", transactions.size());
+        Map<Integer, NavSeries> navs = new HashMap<>();
+        List<Pair<String, Transaction>> results = new ArrayList<>(transactions.size());
+        List<Transaction> priced = new ArrayList<>();
+        List<Integer> pricedIndexes = new ArrayList<>();
+        for (TransactionDTO transactionDTO : transactions) {
+            try {
+                if (!Objects.equals(transactionDTO.getTransactionType(), "BUY")) {
+                    throw new IllegalArgumentException("Only BUY transactions can be created in a batch");
+                }
+                Transaction transaction = convertToEntity(transactionDTO);
+                NavSeries series = navs.computeIfAbsent(transaction.getFundId(), mfAPIService::getNavSeries);
+                if (series == null || series.isEmpty()) {
+                    throw new IllegalArgumentException("No NAV data found for scheme code: " + transaction.getFundId());
+                }
+                // Same rule as getNavForDate: the next published NAV, else the latest one, flagged as not final.
+                double nav = series.navOnOrAfter(IstDate.fromEpochSecond(transaction.getDate()));
+                transaction.setPrice(Double.isNaN(nav) ? series.latestNav() : nav);
+                transaction.setIsUpdated(!Double.isNaN(nav));
+                applyAmountAndUnits(transaction, transactionDTO);
+                transaction.setSellDate(null);
+                transaction.setIsRedeemed(false);
+                transaction.setBookedProfit(null);
+                pricedIndexes.add(results.size());
+                priced.add(transaction);
+                results.add(null);
+            } catch (Exception e) {
+                log.error("Error creating transaction for user: {} and fund: {}", transactionDTO.getUserId(), transactionDTO.getFundId(), e);
+                results.add(Pair.of("Error: " + e.getMessage(), null));
+            }
+        }
+        if (priced.isEmpty()) {
+            return results;
+        }
+        try {
+            List<Transaction> saved = transactionRepository.saveAll(priced);
+            for (int i = 0; i < saved.size(); i++) {
+                results.set(pricedIndexes.get(i), Pair.of(saved.get(i).getId(), saved.get(i)));
+            }
+            log.info("Created {} BUY transactions in one batch", saved.size());
+        } catch (Exception e) {
+            log.error("Error saving batch of {} BUY transactions", priced.size(), e);
+            for (Integer index : pricedIndexes) {
+                results.set(index, Pair.of("Error: " + e.getMessage(), null));
+            }
+        }
+        return results;
+    }
+
+    // BUYs are priced by amount and SELLs redeem by units; the other side is derived net of charges.
+    private static void applyAmountAndUnits(Transaction transaction, TransactionDTO transactionDTO) {
+        if (transactionDTO.getAmount() != null) {
+            transaction.setAmount(transactionDTO.getAmount());
+            transaction.setUnits((transaction.getAmount() * 0.99995) / transaction.getPrice());
+        } else {
+            transaction.setUnits(transactionDTO.getUnits());
+            transaction.setAmount(transaction.getUnits() * transaction.getPrice() * 1.000186);
+        }
+    }
+
     // Mark all the transaction as redeemed in this sell transaction and returns totalProfitBooked.
-    private Double redeemUnitsAndCalculateBookedProfit(Transaction transaction) {
+    // Every consumed lot is recorded in redeemedLots so the sale can later be reverted without a history scan.
+    private Double redeemUnitsAndCalculateBookedProfit(Transaction transaction, List<RedeemedLot> redeemedLots) {
         List<Transaction> transactions = transactionRepository.findByUserIdAndFundIdOrderByDateAsc(transaction.getUserId(), transaction.getFundId());
         Double unitsLeft = transaction.getUnits();
         Double sellingPrice = transaction.getPrice();
@@ -175,20 +248,24 @@ public class TransactionServiceImpl implements TransactionService {
                     String result = updateTransaction(pastTransaction);
                     totalBookedProfit += pastTransaction.getBookedProfit();
                     unitsLeft -= pastTransaction.getUnits();
+                    redeemedLots.add(new RedeemedLot(pastTransaction.getId(), pastTransaction.getUnits(), null, pastTransaction.getAmount()));
                 } else {
-                    // Split the units;
+                    // Split the units; the unsold part keeps the lot's price and date.
                     Double remainingUnits = pastTransaction.getUnits() - unitsLeft;
-
-                    TransactionDTO remainingTransactionDTO = new TransactionDTO();
-                    remainingTransactionDTO.setTransactionType("BUY");
-                    remainingTransactionDTO.setUserId(pastTransaction.getUserId());
-                    remainingTransactionDTO.setFundName(pastTransaction.getFundName());
-                    remainingTransactionDTO.setAmount(remainingUnits * pastTransaction.getPrice());
-                    remainingTransactionDTO.setFundId(pastTransaction.getFundId());
-                    remainingTransactionDTO.setDate(convertEpochToISTDateString(pastTransaction.getDate()));
-                    remainingTransactionDTO.setFundId(pastTransaction.getFundId());
-                    remainingTransactionDTO.setUnits(remainingUnits);
-                    addTransaction(remainingTransactionDTO);
+                    Double lotAmount = pastTransaction.getAmount();
+
+                    Transaction remainingTransaction = new Transaction();
+                    remainingTransaction.setTransactionType("BUY");
+                    remainingTransaction.setUserId(pastTransaction.getUserId());
+                    remainingTransaction.setFundName(pastTransaction.getFundName());
+                    remainingTransaction.setFundId(pastTransaction.getFundId());
+                    remainingTransaction.setDate(pastTransaction.getDate());
+                    remainingTransaction.setPrice(pastTransaction.getPrice());
+                    remainingTransaction.setIsUpdated(pastTransaction.getIsUpdated());
+                    remainingTransaction.setUnits(remainingUnits);
+                    remainingTransaction.setAmount(remainingUnits * pastTransaction.getPrice());
+                    remainingTransaction.setIsRedeemed(false);
+                    Transaction savedRemainder = transactionRepository.save(remainingTransaction);
 
 
                     pastTransaction.setIsRedeemed(true);
@@ -199,6 +276,7 @@ public class TransactionServiceImpl implements TransactionService {
                     totalBookedProfit += pastTransaction.getBookedProfit();
 
                     String result = updateTransaction(pastTransaction);
+                    redeemedLots.add(new RedeemedLot(pastTransaction.getId(), unitsLeft, savedRemainder.getId(), lotAmount));
                     unitsLeft -= pastTransaction.getUnits();
                     break;
                 }
@@ -208,6 +286,31 @@ public class TransactionServiceImpl implements TransactionService {
         return totalBookedProfit;
     }
 
+    /**
+     * Reverts a SELL using its stored lot linkage: every consumed lot is un-redeemed, a split
+     * remainder is folded back into its lot, and the SELL itself is removed, all in one bulk write.
+     */
+    private void revertLinkedSellTransaction(Transaction transaction) {
+        List<RedeemedLot> lots = transaction.getRedeemedLots();
+        List<String> remainderIds = lots.stream().map(RedeemedLot::getRemainderTransactionId).filter(Objects::nonNull).toList();
+        Map<String, Transaction> remainders = remainderIds.isEmpty() ? Map.of() : transactionRepository.findAllById(remainderIds).stream().collect(Collectors.toMap(Transaction::getId, Function.identity()));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Transaction.class);
+        for (RedeemedLot lot : lots) {
+            Update update = new Update().set("isRedeemed", false).unset("sellDate").unset("bookedProfit");
+            Transaction remainder = lot.getRemainderTransactionId() == null ? null : remainders.get(lot.getRemainderTransactionId());
+            if (remainder != null && !Boolean.TRUE.equals(remainder.getIsRedeemed())) {
+                update.inc("units", remainder.getUnits()).inc("amount", remainder.getAmount());
+                bulk.remove(Query.query(Criteria.where("_id").is(remainder.getId())));
+            }
+            bulk.updateOne(Query.query(Criteria.where("_id").is(lot.getTransactionId())), update);
+        }
+        bulk.remove(Query.query(Criteria.where("_id").is(transaction.getId())));
+        bulk.execute();
+        log.info("Reverted sell transaction {} across {} linked lots", transaction.getId(), lots.size());
+    }
+
+    // Legacy path for SELLs recorded before lot linkage existed.
     private void revertSellTransaction(Transaction transaction) {
         List<Transaction> transactions = transactionRepository.findByUserIdAndFundIdOrderByDateDescIsRedeemedAsc(transaction.getUserId(), transaction.getFundId());
         Double unitsLeft = transaction.getUnits();
@@ -254,14 +357,9 @@ public class TransactionServiceImpl implements TransactionService {
     }
 
     private Boolean isLatestSellTransaction(Transaction transaction) {
-        List<Transaction> transactions = transactionRepository.findByUserIdAndFundIdOrderByDateDescIsRedeemedAsc(transaction.getUserId(), transaction.getFundId());
-        for (Transaction pastTransaction : transactions) {
-            if (Objects.equals(pastTransaction.getTransactionType(), transaction.getTransactionType())) {
-                // Found first Sell transaction.
-                return Objects.equals(pastTransaction.getId(), transaction.getId());
-            }
-        }
-        return false;
+        return transactionRepository.findFirstByUserIdAndFundIdAndTransactionTypeOrderByDateDesc(transaction.getUserId(), transaction.getFundId(), transaction.getTransactionType())
+                .map(latest -> Objects.equals(latest.getId(), transaction.getId()))
+                .orElse(false);
     }
 
     public Pair<Double, Double> getTotalUnitsAndInvestedAmount(String userId, Integer fundId) {
@@ -296,6 +394,7 @@ public class TransactionServiceImpl implements TransactionService {
                 existingTransaction.setBookedProfit(transaction.getBookedProfit());
                 existingTransaction.setIsUpdated(transaction.getIsUpdated());
                 existingTransaction.setPrice(transaction.getPrice());
+                existingTransaction.setRedeemedLots(transaction.getRedeemedLots());
 
                 Transaction updatedTransaction = transactionRepository.save(existingTransaction);
                 log.info("Transaction with ID: {} updated successfully", transaction.getId());
@@ -323,10 +422,15 @@ public class TransactionServiceImpl implements TransactionService {
                 if (Objects.equals(transaction.getTransactionType(), "SELL") && !isLatestSellTransaction(transaction)) {
                     return Pair.of("Error: Sell transaction cannot be deleted because it is not the latest sell transaction.", transaction);
                 }
-                if (Objects.equals(transaction.getTransactionType(), "SELL")) {
-                    revertSellTransaction(transaction);
+                if (Objects.equals(transaction.getTransactionType(), "SELL") && transaction.getRedeemedLots() != null && !transaction.getRedeemedLots().isEmpty()) {
+                    // Lot reversal and the delete of the sell itself go out as one bulk write.
+                    revertLinkedSellTransaction(transaction);
+                } else {
+                    if (Objects.equals(transaction.getTransactionType(), "SELL")) {
+                        revertSellTransaction(transaction);
+                    }
+                    transactionRepository.deleteById(id);
                 }
-                transactionRepository.deleteById(id);
                 log.info("Transaction with ID: {} deleted successfully", id);
                 return Pair.of("Success: Transaction deleted successfully with ID: " + id, transaction);
             } else {
@@ -400,18 +504,32 @@ public class TransactionServiceImpl implements TransactionService {
                     dates.add(convertISTDateStringToEpoch(transaction.getDate()));
                 }
             }
+            return calculateXIRR(cashFlows, dates, currentValue);
 
-            // Add current value as positive cash flow (today's date)
-            if (currentValue > 0) {
-                cashFlows.add(currentValue);
-                dates.add(System.currentTimeMillis() / 1000); // Current time in epoch seconds
-            }
+        } catch (Exception e) {
+            log.warn("Failed to calculate XIRR", e);
+            return 0.0;
+        }
+    }
 
-            if (cashFlows.size() < 2) {
-                return 0.0; // Need at least 2 cash flows for XIRR
-            }
+    @Override
+    public Double calculateXIRRFromEntities(List<Transaction> transactions, Double currentValue) {
+        try {
+            List<Double> cashFlows = new ArrayList<>();
+            List<Long> dates = new ArrayList<>();
 
-            return XirrUtils.calculateXIRR(cashFlows, dates) * 100; // Convert to percentage
+            // Entities already carry epoch seconds, so no date strings are parsed here
+            for (Transaction transaction : transactions) {
+                if ("BUY".equalsIgnoreCase(transaction.getTransactionType())) {
+                    cashFlows.add(-transaction.getAmount());
+                    dates.add(transaction.getDate());
+                }
+                if ("SELL".equalsIgnoreCase(transaction.getTransactionType())) {
+                    cashFlows.add(transaction.getAmount());
+                    dates.add(transaction.getDate());
+                }
+            }
+            return calculateXIRR(cashFlows, dates, currentValue);
 
         } catch (Exception e) {
             log.warn("Failed to calculate XIRR", e);
@@ -419,6 +537,25 @@ public class TransactionServiceImpl implements TransactionService {
         }
     }
 
+    private Double calculateXIRR(List<Double> cashFlows, List<Long> dates, Double currentValue) {
+        // Add current value as positive cash flow (today's date)
+        if (currentValue > 0) {
+            cashFlows.add(currentValue);
+            dates.add(System.currentTimeMillis() / 1000); // Current time in epoch seconds
+        }
+
+        if (cashFlows.size() < 2) {
+            return 0.0; // Need at least 2 cash flows for XIRR
+        }
+
+        double xirr = XirrUtils.calculateXIRR(cashFlows, dates);
+        if (Double.isNaN(xirr)) {
+            log.debug("No XIRR for {} cash flows", cashFlows.size());
+            return 0.0;
+        }
+        return xirr * 100; // Convert to percentage
+    }
+
     private TransactionDTO convertToDTO(Transaction transaction) {
         return new TransactionDTO(transaction.getId(), transaction.getFundName(), transaction.getFundId(), transaction.getAmount(), convertEpochToISTDateString(transaction.getDate()), transaction.getUserId(), transaction.getTransactionType(), transaction.getUnits(), transaction.getIsRedeemed(), convertEpochToISTDateString(transaction.getSellDate()), transaction.getPrice(), transaction.getBookedProfit(), transaction.getIsUpdated());
     }
@@ -0,0 +1,266 @@
+package com.stonks.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicating write-behind queue for UserFund refreshes.
+ * <p>
+ * Writes enqueue a refresh keyed by (user, fund); refreshes for the same key that arrive within
+ * the coalescing window collapse into one, and the survivor runs on a bounded executor; while the
+ * executor is full it stays pending and is retried a window later. Runs for one key, including
+ * inline flushes, are chained so they never overlap. Readers call {@link #flush} / {@link #flushUser}
+ * first, which applies any pending refresh inline so they always see a settled UserFund.
+ */
+@Component
+@Slf4j
+public class UserFundRefreshQueue {
+
+    private static final ThreadLocal<Boolean> IN_REFRESH = ThreadLocal.withInitial(() -> false);
+
+    private final long windowMillis;
+    private final ScheduledExecutorService timer;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, PendingRefresh> pending = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushedInline = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public UserFundRefreshQueue(@Value("${stonks.userfund-refresh.window-ms:300}") long windowMillis,
+                                @Value("${stonks.userfund-refresh.threads:2}") int threads,
+                                @Value("${stonks.userfund-refresh.queue-capacity:1000}") int queueCapacity) {
+        this.windowMillis = windowMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(namedThreads("userfund-refresh-timer"));
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                namedThreads("userfund-refresh"));
+    }
+
+    /**
+     * Schedules a refresh for (user, fund). The returned future completes once a refresh that
+     * includes this request has been applied.
+     */
+    public CompletableFuture<Void> enqueue(String userId, Integer fundId, Runnable refresh) {
+        String key = key(userId, fundId);
+        enqueued.incrementAndGet();
+        PendingRefresh entry = pending.compute(key, (k, existing) -> {
+            if (existing != null) {
+                // Latest task wins; the timer already armed for this key will pick it up.
+                existing.task = refresh;
+                coalesced.incrementAndGet();
+                return existing;
+            }
+            PendingRefresh created = new PendingRefresh(refresh);
+            created.timer = timer.schedule(() -> dispatch(k, created), windowMillis, TimeUnit.MILLISECONDS);
+            return created;
+        });
+        return entry.done;
+    }
+
+    /**
+     * Applies any pending refresh for (user, fund) on the calling thread and waits for one that
+     * is already running, so the caller reads a consistent UserFund.
+     */
+    public void flush(String userId, Integer fundId) {
+        flushKey(key(userId, fundId));
+    }
+
+    public void flushUser(String userId) {
+        String prefix = userId + ":";
+        List<String> keys = new ArrayList<>();
+        pending.keySet().stream().filter(k -> k.startsWith(prefix)).forEach(keys::add);
+        inFlight.keySet().stream().filter(k -> k.startsWith(prefix) && !keys.contains(k)).forEach(keys::add);
+        keys.forEach(this::flushKey);
+    }
+
+    /**
+     * Applies everything still pending and waits for in-flight refreshes.
+     *
+     * @return number of pending refreshes that were applied by this call
+     */
+    public int flushAll() {
+        List<String> keys = new ArrayList<>(pending.keySet());
+        keys.addAll(inFlight.keySet());
+        AtomicInteger applied = new AtomicInteger();
+        keys.stream().distinct().forEach(key -> {
+            if (flushKey(key)) {
+                applied.incrementAndGet();
+            }
+        });
+        return applied.get();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("pending", (long) pending.size());
+        stats.put("inFlight", (long) inFlight.size());
+        stats.put("executorQueueSize", (long) executor.getQueue().size());
+        stats.put("enqueued", enqueued.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("flushedInline", flushedInline.get());
+        stats.put("processed", processed.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        int drained = flushAll();
+        timer.shutdownNow();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("UserFund refresh executor did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("UserFund refresh queue drained on shutdown. Applied {} pending refreshes. Stats: {}", drained, getStats());
+    }
+
+    private void dispatch(String key, PendingRefresh refresh) {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            // Saturated: leave the entry pending, still coalescing, and try again a window later.
+            rearm(key, refresh);
+            return;
+        }
+        // Whoever removes the entry owns it; a concurrent flush may already have applied it inline.
+        if (!pending.remove(key, refresh)) {
+            return;
+        }
+        CompletableFuture<Void> next = new CompletableFuture<>();
+        CompletableFuture<Void> previous = inFlight.put(key, next);
+        // Chained outside the map locks, so a completed predecessor submits straight away.
+        CompletableFuture<Void> base = previous == null ? CompletableFuture.completedFuture(null) : previous;
+        base.whenComplete((ignored, error) -> submit(key, refresh, next));
+    }
+
+    private void submit(String key, PendingRefresh refresh, CompletableFuture<Void> next) {
+        try {
+            executor.execute(() -> {
+                try {
+                    run(key, refresh);
+                } finally {
+                    finish(key, next);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Still the key's registered run, so later runs and flushes keep waiting behind it.
+            try {
+                timer.schedule(() -> submit(key, refresh, next), windowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException shutdown) {
+                run(key, refresh);
+                finish(key, next);
+            }
+        }
+    }
+
+    private void rearm(String key, PendingRefresh refresh) {
+        try {
+            refresh.timer = timer.schedule(() -> dispatch(key, refresh), windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the shutdown flush applies whatever is still pending.
+        }
+    }
+
+    private void finish(String key, CompletableFuture<Void> run) {
+        inFlight.remove(key, run);
+        run.complete(null);
+    }
+
+    private boolean flushKey(String key) {
+        if (IN_REFRESH.get()) {
+            // Reads issued by the refresh itself must not wait on themselves.
+            return false;
+        }
+        PendingRefresh removed = pending.remove(key);
+        if (removed == null) {
+            await(key, inFlight.get(key));
+            return false;
+        }
+        removed.timer.cancel(false);
+        // The inline run is registered like a dispatched one, so refreshes enqueued meanwhile run after it.
+        CompletableFuture<Void> next = new CompletableFuture<>();
+        CompletableFuture<Void> previous = inFlight.put(key, next);
+        try {
+            await(key, previous);
+            flushedInline.incrementAndGet();
+            run(key, removed);
+        } finally {
+            finish(key, next);
+        }
+        return true;
+    }
+
+    private void await(String key, CompletableFuture<Void> running) {
+        if (running == null) {
+            return;
+        }
+        try {
+            running.join();
+        } catch (Exception e) {
+            log.warn("In-flight refresh for {} failed while flushing", key, e);
+        }
+    }
+
+    private void run(String key, PendingRefresh refresh) {
+        IN_REFRESH.set(true);
+        try {
+            refresh.task.run();
+            processed.incrementAndGet();
+            refresh.done.complete(null);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("Error refreshing user fund {}", key, e);
+            refresh.done.completeExceptionally(e);
+        } finally {
+            IN_REFRESH.set(false);
+        }
+    }
+
+    private static String key(String userId, Integer fundId) {
+        return userId + ":" + fundId;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class PendingRefresh {
+        private volatile Runnable task;
+        private volatile ScheduledFuture<?> timer;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingRefresh(Runnable task) {
+            this.task = task;
+        }
+    }
+}
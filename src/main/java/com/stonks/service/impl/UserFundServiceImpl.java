@@ -4,45 +4,55 @@ import com.stonks.dto.FundSummaryDTO;
 import com.stonks.dto.FundSummaryExtraDTO;
 import com.stonks.dto.HistoricChartDTO;
 import com.stonks.dto.HistoricDataDTO;
-import com.stonks.dto.MFAPIDTOs.MutualFundNavDTO;
+import com.stonks.dto.NavColumnsDTO;
 import com.stonks.dto.NavDateDTO;
 import com.stonks.dto.SIPDTO;
 import com.stonks.dto.TransactionDTO;
 import com.stonks.dto.UnitsDTO;
 import com.stonks.dto.UserFundDTO;
 import com.stonks.dto.UserFundDetailsDTO;
+import com.stonks.event.PortfolioChangedEvent;
 import com.stonks.exception.ApiException;
+import com.stonks.model.TaxLotRegister;
 import com.stonks.model.Transaction;
 import com.stonks.model.UserFund;
 import com.stonks.repository.UserFundRepository;
+import com.stonks.service.CapitalGainsService;
 import com.stonks.service.MutualFundDataService;
 import com.stonks.service.SIPService;
 import com.stonks.service.TransactionService;
 import com.stonks.service.UserFundService;
 
+import com.stonks.util.ChartWindow;
+import com.stonks.util.IstDate;
+import com.stonks.util.MonthEndNavTable;
+import com.stonks.util.NavSeries;
 import com.stonks.util.Response;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import static com.stonks.util.TimeUtils.getEndOfMonthEpochIST;
-import static com.stonks.util.TimeUtils.getMonthStringFromEpochIST;
-import static com.stonks.util.TimeUtils.getNextMonthEpochIST;
-import static com.stonks.util.TimeUtils.getStartOfMonthEpochIST;
-import static com.stonks.util.TimeUtils.isISTDateStringInCurrentFinancialYear;
-import static com.stonks.util.TimeUtils.isOneYearOrMoreOld;
 
 @Service
 @RequiredArgsConstructor
@@ -53,14 +63,23 @@ public class UserFundServiceImpl implements UserFundService {
     private final TransactionService transactionService;
     private final SIPService sipService;
     private final MutualFundDataService mfapiService;
-    private static final Integer Nifty50SchemeCode = 119063;
-    private static final Integer Nifty100SchemeCode = 149868;
+    private final CapitalGainsService capitalGainsService;
+    private final UserFundRefreshQueue userFundRefreshQueue;
+    private final MonthEndNavRegistry monthEndNavRegistry;
+    private final PerformanceChartCache performanceChartCache;
+    private final ChartWindowFactory chartWindowFactory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MongoTemplate mongoTemplate;
+    // Benchmarks a performance chart is compared against when the request names none, besides the fund's own
+    private static final List<String> DefaultComparisons = List.of("Nifty 50", "Nifty 100");
 
     @Override
     public List<UserFundDTO> getUserFundsByUserId(String userId) {
         try {
             log.info("Getting all user funds for user: {}", userId);
 
+            // Apply any write-behind refresh first so units/investment are settled
+            userFundRefreshQueue.flushUser(userId);
             List<UserFund> userFunds = userFundRepository.findByUserId(userId);
             List<UserFundDTO> userFundDTOs = userFunds.stream().map(this::convertToDTO).collect(Collectors.toList());
 
@@ -128,6 +147,7 @@ public class UserFundServiceImpl implements UserFundService {
         try {
             log.info("Getting emergency funds for user: {}", userId);
 
+            userFundRefreshQueue.flushUser(userId);
             List<UserFund> allUserFunds = userFundRepository.findByUserId(userId);
             List<UserFundDTO> emergencyFunds = allUserFunds.stream().filter(fund -> Boolean.TRUE.equals(fund.getIsEmergency())).map(this::convertToDTO).collect(Collectors.toList());
 
@@ -151,6 +171,7 @@ public class UserFundServiceImpl implements UserFundService {
 
             UserFund userFund = convertToEntity(userFundDTO);
             UserFund savedUserFund = userFundRepository.save(userFund);
+            eventPublisher.publishEvent(new PortfolioChangedEvent(savedUserFund.getUserId(), savedUserFund.getFundId()));
             log.info("User fund created successfully with ID: {}", savedUserFund.getId());
             return "Success: User fund created successfully with ID: " + savedUserFund.getId();
         } catch (Exception e) {
@@ -171,6 +192,7 @@ public class UserFundServiceImpl implements UserFundService {
                 existingUserFund.setIsEmergency(userFundDTO.getIsEmergency());
                 existingUserFund.setTag(userFundDTO.getTag());
                 UserFund updatedUserFund = userFundRepository.save(existingUserFund);
+                eventPublisher.publishEvent(new PortfolioChangedEvent(updatedUserFund.getUserId(), null));
                 log.info("User fund with ID: {} updated successfully", id);
                 return "Success: User fund updated successfully with ID: " + id;
             }).orElseGet(() -> {
@@ -198,6 +220,8 @@ public class UserFundServiceImpl implements UserFundService {
                 existingUserFund.setInvestmentAmount(userFundDTO.getInvestmentAmount());
                 existingUserFund.setUnits(userFundDTO.getUnits());
                 UserFund updatedUserFund = userFundRepository.save(existingUserFund);
+                // Any settings edit shows on the dashboard; a benchmark change also redraws the charts
+                eventPublisher.publishEvent(new PortfolioChangedEvent(userId, fundId));
                 log.info("User fund for user: {} and fund: {} updated successfully", userId, fundId);
                 return "Success: User fund updated successfully for user: " + userId + " and fund: " + fundId;
             } else {
@@ -215,20 +239,16 @@ public class UserFundServiceImpl implements UserFundService {
         return List.of("Nifty 100", "Nifty 500", "Nifty 150 Midcap", "Nifty 250 Smallcap", "Nifty Dividend Opportunities", "NASDAQ 100");
     }
 
-    private String getBenchmarkEnumForUserFund(String userId, Integer fundId) {
-        Optional<UserFundDTO> userFundDTO = getUserFundByUserIdAndFundId(userId, fundId);
-        return userFundDTO.get().getBenchmark();
-    }
-
     @Override
     public String refreshUserFundByUserIdAndFundId(String userId, Integer fundId) {
         Pair<Double, Double> result = transactionService.getTotalUnitsAndInvestedAmount(userId, fundId);
-        Optional<UserFundDTO> data = getUserFundByUserIdAndFundId(userId, fundId);
-        if (data.isPresent()) {
-            UserFundDTO userFund = data.get();
-            userFund.setUnits(result.getFirst());
-            userFund.setInvestmentAmount(result.getSecond());
-            updateUserFundByUserIdAndFundId(userId, fundId, userFund);
+        // Only the two derived fields are written, so a concurrent edit of the tag, benchmark or
+        // emergency flag is not reverted by a stale copy of the document
+        Query query = Query.query(Criteria.where("userId").is(userId).and("fundId").is(fundId));
+        Update update = new Update().set("units", result.getFirst()).set("investmentAmount", result.getSecond());
+        if (mongoTemplate.updateFirst(query, update, UserFund.class).getMatchedCount() > 0) {
+            // Written directly so listeners hear of the write once, with the UserFund and its tax lot register both current
+            eventPublisher.publishEvent(new PortfolioChangedEvent(userId, fundId));
             return "Success: User fund refreshed successfully for user: " + userId + " and fund: " + fundId;
 
         } else {
@@ -242,8 +262,10 @@ public class UserFundServiceImpl implements UserFundService {
         try {
             log.info("Deleting user fund with ID: {}", id);
 
-            if (userFundRepository.existsById(id)) {
+            Optional<UserFund> userFund = userFundRepository.findById(id);
+            if (userFund.isPresent()) {
                 userFundRepository.deleteById(id);
+                eventPublisher.publishEvent(new PortfolioChangedEvent(userFund.get().getUserId(), null));
                 log.info("User fund with ID: {} deleted successfully", id);
                 return "Success: User fund deleted successfully with ID: " + id;
             } else {
@@ -261,6 +283,8 @@ public class UserFundServiceImpl implements UserFundService {
         try {
             log.info("Deleting user fund for user: {} and fund: {}", userId, fundId);
 
+            // A refresh still pending would otherwise rebuild the register after it is deleted
+            userFundRefreshQueue.flush(userId, fundId);
             List<UserFund> userFundsToDelete = userFundRepository.findByUserIdAndFundId(userId, fundId);
             if (!userFundsToDelete.isEmpty()) {
                 userFundRepository.deleteAll(userFundsToDelete);
@@ -273,6 +297,11 @@ public class UserFundServiceImpl implements UserFundService {
                 if (result.startsWith("Error:")) {
                     return result;
                 }
+                result = capitalGainsService.deleteRegister(userId, fundId);
+                if (result.startsWith("Error:")) {
+                    return result;
+                }
+                eventPublisher.publishEvent(new PortfolioChangedEvent(userId, fundId));
                 return "Success: User fund deleted successfully for user: " + userId + " and fund: " + fundId;
             } else {
                 log.warn("No user funds found for user: {} and fund: {} for deletion", userId, fundId);
@@ -290,6 +319,7 @@ public class UserFundServiceImpl implements UserFundService {
         try {
             log.info("Deleting all user funds for user: {}", userId);
 
+            userFundRefreshQueue.flushUser(userId);
             List<UserFund> userFundsToDelete = userFundRepository.findByUserId(userId);
             long count = userFundsToDelete.size();
             if (count > 0) {
@@ -303,6 +333,11 @@ public class UserFundServiceImpl implements UserFundService {
                 if (result.startsWith("Error:")) {
                     return result;
                 }
+                result = capitalGainsService.deleteRegisters(userId);
+                if (result.startsWith("Error:")) {
+                    return result;
+                }
+                eventPublisher.publishEvent(new PortfolioChangedEvent(userId, null));
                 return "Success: " + count + " user funds deleted for user: " + userId;
             } else {
                 log.info("No user funds found for user: {}", userId);
@@ -335,6 +370,8 @@ public class UserFundServiceImpl implements UserFundService {
         log.info("Getting fund summary for user: {} and fund: {}", userId, fundId);
 
         try {
+            userFundRefreshQueue.flush(userId, fundId);
+
             // Get user fund details
             Optional<UserFund> userFundOpt = userFundRepository.findByUserIdAndFundId(userId, fundId).stream().findFirst();
 
@@ -387,29 +424,42 @@ public class UserFundServiceImpl implements UserFundService {
         }
     }
 
-    // async wrapper version
-    @Async
-    public CompletableFuture<Optional<FundSummaryDTO>> getFundSummaryAsync(String userId, Integer fundId) {
-        return CompletableFuture.supplyAsync(() -> getFundSummary(userId, fundId));
-    }
-
     @Override
     public Optional<FundSummaryExtraDTO> getFundSummaryExtra(String userId, Integer fundId) {
         log.info("Getting fund summary for user: {} and fund: {}", userId, fundId);
 
         try {
-            // Get transactions
-            List<TransactionDTO> transactions = transactionService.getTransactionsByUserIdAndFundId(userId, fundId);
+            userFundRefreshQueue.flush(userId, fundId);
+
+            // Realized and long-term gains come from the maintained tax lot register
+            Optional<TaxLotRegister> registerOpt = capitalGainsService.getRegister(userId, fundId);
+            if (registerOpt.isEmpty()) {
+                return Optional.empty();
+            }
+            TaxLotRegister register = registerOpt.get();
+
+            Double currentValue = 0.0;
+            Double longTermGains = 0.0;
+            try {
+                Double currentNav = mfapiService.getLatestNav(fundId);
+                if (currentNav != null) {
+                    currentValue = register.getOpenUnits() * currentNav;
+                    longTermGains = (register.getLongTermUnits() * currentNav) - register.getLongTermInvested();
+                }
+            } catch (Exception e) {
+                log.warn("Failed to get current NAV for fundId: {}", fundId, e);
+            }
 
-            TransactionsCalculationResult result = calculateUnitsAndCurrentValue(transactions, fundId);
-            Double xirr = transactionService.calculateXIRR(transactions, result.currentValue);
+            // XIRR still needs the dated cash flows
+            List<Transaction> transactions = transactionService.getTransactionsByUserIdAndFundIdOrderByDateAsc(userId, fundId);
+            Double xirr = transactionService.calculateXIRRFromEntities(transactions, currentValue);
 
             // Build fund summary extra
             FundSummaryExtraDTO fundSummaryExtra = new FundSummaryExtraDTO();
             fundSummaryExtra.setXirr(xirr);
-            fundSummaryExtra.setLongTermGains(result.longTermGains);
-            fundSummaryExtra.setTotalRealizedProfit(result.totalRealizedProfit);
-            fundSummaryExtra.setCurrentYearTotalRealizedProfit(result.currentYearTotalRealizedProfit);
+            fundSummaryExtra.setLongTermGains(longTermGains);
+            fundSummaryExtra.setTotalRealizedProfit(register.getTotalRealizedProfit());
+            fundSummaryExtra.setCurrentYearTotalRealizedProfit(capitalGainsService.getCurrentFinancialYearRealizedProfit(register));
             return Optional.of(fundSummaryExtra);
 
         } catch (Exception e) {
@@ -418,49 +468,6 @@ public class UserFundServiceImpl implements UserFundService {
         }
     }
 
-    private TransactionsCalculationResult calculateUnitsAndCurrentValue(List<TransactionDTO> transactions, Integer fundId) {
-        Double totalUnits = 0.0;
-        Double currentValue = 0.0;
-        Double totalInvested = 0.0;
-        Double totalRealizedProfit = 0.0;
-        Double currentYearTotalRealizedProfit = 0.0;
-        Double longTermInvestment = 0.0;
-        Double longTermUnits = 0.0;
-        Double longTermGains = 0.0;
-
-        // Calculate total units from BUY transactions
-        for (TransactionDTO transaction : transactions) {
-            if ("BUY".equalsIgnoreCase(transaction.getTransactionType())) {
-                if (!transaction.getIsRedeemed()) {
-                    totalUnits += transaction.getUnits();
-                    totalInvested += transaction.getAmount();
-                    if (isOneYearOrMoreOld(transaction.getDate())) {
-                        longTermUnits += transaction.getUnits();
-                        longTermInvestment += transaction.getAmount();
-                    }
-                } else {
-                    totalRealizedProfit += transaction.getBookedProfit();
-                    if (isISTDateStringInCurrentFinancialYear(transaction.getSellDate())) {
-                        currentYearTotalRealizedProfit += transaction.getBookedProfit();
-                    }
-                }
-            }
-        }
-
-        // Get current NAV
-        try {
-            Double currentNav = mfapiService.getLatestNav(fundId);
-            if (currentNav != null) {
-                currentValue = totalUnits * currentNav;
-                longTermGains = (longTermUnits * currentNav) - longTermInvestment;
-            }
-        } catch (Exception e) {
-            log.warn("Failed to get current NAV for fundId: {}", fundId, e);
-        }
-
-        return new TransactionsCalculationResult(totalInvested, currentValue, totalUnits, totalRealizedProfit, currentYearTotalRealizedProfit, longTermGains);
-    }
-
 
     List<UnitsDTO> getFundUnits(String userId, Integer fundId) {
         List<UnitsDTO> units = new ArrayList<>();
@@ -494,20 +501,6 @@ public class UserFundServiceImpl implements UserFundService {
     }
 
 
-    // Helper class for units calculation result
-    @Getter
-    @AllArgsConstructor
-    private static class TransactionsCalculationResult {
-
-        private final Double totalInvested;
-        private final Double currentValue;
-        private final Double totalUnits;
-        private final Double totalRealizedProfit;
-        private final Double currentYearTotalRealizedProfit;
-        private final Double longTermGains;
-    }
-
-
     public Optional<UserFundDetailsDTO> getUserFundDetails(String userId, Integer fundId) {
         Pair<Double, String> latestNav = mfapiService.getLatestNavAndNavDate(fundId);
         Optional<FundSummaryDTO> summary = getFundSummary(userId, fundId);
@@ -528,137 +521,144 @@ public class UserFundServiceImpl implements UserFundService {
 
 
     public List<HistoricDataDTO> getPerformanceChart(String userId, Integer fundId) {
-        List<Transaction> transactions = transactionService.getTransactionsByUserIdAndFundIdOrderByDateAsc(userId, fundId);
-        if (transactions.isEmpty()) {
+        return getPerformanceChart(userId, fundId, chartWindowFactory.monthly(), DefaultComparisons);
+    }
+
+    @Override
+    public List<HistoricDataDTO> getPerformanceChart(String userId, Integer fundId, String resolution, String from, String to, Integer maxPoints, List<String> benchmarks) {
+        ChartWindow window = chartWindowFactory.create(resolution, from, to, maxPoints);
+        List<String> comparisons = resolveComparisons(benchmarks);
+        return window.downsample(getPerformanceChart(userId, fundId, window, comparisons));
+    }
+
+    @Override
+    public List<HistoricDataDTO> getPerformanceChart(String userId, Integer fundId, ChartWindow window, List<String> comparisons) {
+        // Settle pending writes first; their refresh invalidates the cached chart.
+        userFundRefreshQueue.flush(userId, fundId);
+
+        Optional<UserFundDTO> userFund = getUserFundByUserIdAndFundId(userId, fundId);
+        if (userFund.isEmpty()) {
             return new ArrayList<>();
         }
+        return getPerformanceChart(userFund.get(), () -> transactionService.getTransactionsByUserIdAndFundIdOrderByDateAsc(userId, fundId), window, comparisons);
+    }
 
-        List<MutualFundNavDTO> navList = mfapiService.getNavHistory(fundId);
-        String benchmarkEnum = getBenchmarkEnumForUserFund(userId, fundId);
-        Integer benchmarkSchemeCode = mfapiService.getBenchmarkSchemeCode(benchmarkEnum);
-        List<MutualFundNavDTO> benchmarkNavHistory = mfapiService.getBenchmarkNavHistory(benchmarkEnum);
-        List<MutualFundNavDTO> nifty50NavHistory = mfapiService.getNifty50NavHistory();
-        List<MutualFundNavDTO> nifty100NavHistory = mfapiService.getNifty100NavHistory();
-
-        List<HistoricDataDTO> historicDataList = new ArrayList<>();
-
-        double totalUnits = 0.0;
-        double totalBenchmarkUnits = 0.0;
-        double totalNifty50Units = 0.0;
-        double totalNifty100Units = 0.0;
-        double totalProfit;
-        double totalInvested = 0.0;
-        double totalInvestmentSold = 0.0;
-
-        // Starting from the month of the first transaction
-        long firstMonth = getStartOfMonthEpochIST(transactions.get(0).getDate());
-        long currentEpoch = firstMonth;
-        long nowEpoch = getStartOfMonthEpochIST(System.currentTimeMillis() / 1000);
-
-        int txIndex = 0;
-        Double nav;
-        while (currentEpoch <= nowEpoch) {
-            // Apply transactions in this month
-            while (txIndex < transactions.size() && getStartOfMonthEpochIST(transactions.get(txIndex).getDate()) == currentEpoch) {
-
-                Transaction tx = transactions.get(txIndex);
-                if ("BUY".equalsIgnoreCase(tx.getTransactionType())) {
-                    totalUnits += tx.getUnits();
-                    totalInvested += tx.getAmount();
-                    if (benchmarkEnum != null) {
-                        nav = mfapiService.getNAVFromNAVList(benchmarkNavHistory, tx.getDate(), benchmarkSchemeCode);
-                        totalBenchmarkUnits += (tx.getAmount() / nav);
-                    }
-                    nav = mfapiService.getNAVFromNAVList(nifty50NavHistory, tx.getDate(), Nifty50SchemeCode);
-                    totalNifty50Units += (tx.getAmount() / nav);
-                    nav = mfapiService.getNAVFromNAVList(nifty100NavHistory, tx.getDate(), Nifty100SchemeCode);
-                    totalNifty100Units += (tx.getAmount() / nav);
-                } else {
-                    totalUnits -= tx.getUnits();
-                    totalInvested -= (tx.getAmount() - tx.getBookedProfit());
-                    if (benchmarkEnum != null) {
-                        nav = mfapiService.getNAVFromNAVList(benchmarkNavHistory, tx.getDate(), benchmarkSchemeCode);
-                        totalBenchmarkUnits -= (tx.getAmount() / nav);
-                    }
-                    nav = mfapiService.getNAVFromNAVList(nifty50NavHistory, tx.getDate(), Nifty50SchemeCode);
-                    totalNifty50Units -= (tx.getAmount() / nav);
-                    nav = mfapiService.getNAVFromNAVList(nifty100NavHistory, tx.getDate(), Nifty100SchemeCode);
-                    totalNifty100Units -= (tx.getAmount() / nav);
-                    totalInvestmentSold += (tx.getAmount() - tx.getBookedProfit());
-                }
-                txIndex++;
-            }
+    @Override
+    public List<HistoricDataDTO> getPerformanceChart(UserFundDTO userFund, Supplier<List<Transaction>> transactions, ChartWindow window, List<String> comparisons) {
+        // The caller has settled pending writes and loaded the fund; transactions are only read on a cache miss.
+        String userId = userFund.getUserId();
+        Integer fundId = userFund.getFundId();
+        String benchmarkEnum = userFund.getBenchmark();
+        MonthEndNavTable fundTable = monthEndNavRegistry.getTable(fundId);
+        PerformanceChartEngine engine = new PerformanceChartEngine(fundTable, comparisonTables(benchmarkEnum, comparisons), benchmarkEnum, mfapiService::getLatestNav);
+
+        if (!window.isMonthly()) {
+            // Daily and weekly charts are bounded by the window and computed per request.
+            return engine.sample(transactions.get(), window.valuationDays());
+        }
+        List<HistoricDataDTO> chart = performanceChartCache.getChart(userId, fundId, benchmarkEnum, comparisons, engine, engine.tables(), IstDate.monthIndex(IstDate.today()), transactions);
+        return window.sliceMonths(chart);
+    }
 
-            // Compute NAV for end of month
-            long endOfMonth = getEndOfMonthEpochIST(currentEpoch);
-            nav = mfapiService.getNAVFromNAVList(navList, endOfMonth, fundId);
-            if (nav == null) nav = 0.0;
-
-            double totalValue = nav * totalUnits;
-            totalProfit = totalValue - totalInvested;
-
-            HistoricDataDTO data = new HistoricDataDTO();
-            data.setMonth(getMonthStringFromEpochIST(currentEpoch));
-            data.setTotalValue(totalValue);
-            data.setTotalProfit(totalProfit);
-            data.setTotalInvested(totalInvested);
-            if (benchmarkEnum != null) {
-                data.setTotalValueBenchmark(totalBenchmarkUnits * mfapiService.getNAVFromNAVList(benchmarkNavHistory, endOfMonth, benchmarkSchemeCode));
-            } else {
-                data.setTotalValueBenchmark(data.getTotalValue());
+    @Override
+    public List<String> resolveComparisons(List<String> benchmarks) {
+        if (benchmarks == null) {
+            return DefaultComparisons;
+        }
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String benchmark : benchmarks) {
+            String name = benchmark == null ? "" : benchmark.trim();
+            if (name.isEmpty()) {
+                continue;
             }
-            data.setTotalValueNifty50(totalNifty50Units * mfapiService.getNAVFromNAVList(nifty50NavHistory, endOfMonth, Nifty50SchemeCode));
-            data.setTotalValueNifty100(totalNifty100Units * mfapiService.getNAVFromNAVList(nifty100NavHistory, endOfMonth, Nifty100SchemeCode));
-
-            if (historicDataList.isEmpty()) {
-                data.setThisMonthProfit(totalProfit);
-                data.setThisMonthInvested(totalInvested);
-                data.setGrowthPercent(totalInvested == 0 ? 0.0 : (totalProfit / totalInvested) * 100.0);
-            } else {
-                HistoricDataDTO prev = historicDataList.getLast();
-                data.setThisMonthProfit(totalProfit - prev.getTotalProfit());
-                data.setThisMonthInvested(totalInvested - prev.getTotalInvested() + totalInvestmentSold);
-                data.setGrowthPercent(prev.getTotalInvested() == 0 ? 0.0 : (data.getThisMonthProfit() / prev.getTotalInvested()) * 100.0);
+            if (mfapiService.getBenchmarkSchemeCode(name) == null) {
+                throw new ApiException("Unknown benchmark: " + name, HttpStatus.BAD_REQUEST);
             }
-            data.setAlphaPercent(((data.getTotalValue() - data.getTotalValueBenchmark()) * 100) / data.getTotalValueBenchmark());
-            historicDataList.add(data);
-            totalInvestmentSold = 0.0;
-
-            // Move to next month
-            currentEpoch = getNextMonthEpochIST(currentEpoch);
+            resolved.add(name);
         }
-        return historicDataList;
+        return resolved.isEmpty() ? DefaultComparisons : List.copyOf(resolved);
     }
 
-    @Async
-    public CompletableFuture<List<HistoricDataDTO>> getHistoricDataAsync(String userId, Integer fundId) {
-        List<HistoricDataDTO> data = getPerformanceChart(userId, fundId);
-        return CompletableFuture.completedFuture(data);
+    // The fund's benchmark (when it has a known one) followed by the requested comparisons
+    private Map<String, MonthEndNavTable> comparisonTables(String benchmark, List<String> comparisons) {
+        Map<String, MonthEndNavTable> tables = new LinkedHashMap<>();
+        Integer benchmarkSchemeCode = mfapiService.getBenchmarkSchemeCode(benchmark);
+        if (benchmarkSchemeCode != null) {
+            tables.put(benchmark, monthEndNavRegistry.getTable(benchmarkSchemeCode));
+        }
+        for (String comparison : comparisons) {
+            tables.putIfAbsent(comparison, monthEndNavRegistry.getTable(mfapiService.getBenchmarkSchemeCode(comparison)));
+        }
+        return tables;
     }
 
-    public Optional<HistoricChartDTO> getHistoricChart(Integer fundId) {
+    @Override
+    public Optional<HistoricChartDTO> getHistoricChart(Integer fundId, String from, String to, String format) {
+        boolean columnar = isColumnar(format);
+        NavSeries series = mfapiService.getNavSeries(fundId);
+        int first;
+        int end;
+        try {
+            // The cached series is already sorted, so the range is two binary searches.
+            first = from == null || from.isBlank() ? 0 : series.indexOnOrAfter(IstDate.parse(from.trim()));
+            int toIndex = to == null || to.isBlank() ? -1 : series.indexOnOrAfter(IstDate.parse(to.trim()) + 1);
+            end = toIndex < 0 ? series.size() : toIndex;
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        if (first < 0) {
+            first = end;
+        }
+
         HistoricChartDTO historicChartDTO = new HistoricChartDTO();
-        List<MutualFundNavDTO> navHistory = mfapiService.getNavHistory(fundId);
-
-        // Convert to NavDateDTO and sort by date in descending order (newest first)
-        List<NavDateDTO> navs = navHistory.stream().map(NavDateDTO::new).sorted((a, b) -> {
-            // Parse dates in DD-MM-YYYY format
-            String[] dateA = a.getDate().split("-");
-            String[] dateB = b.getDate().split("-");
-            int comparison = 0;
-            // Compare years
-            comparison = Integer.compare(Integer.parseInt(dateB[2]), Integer.parseInt(dateA[2]));
-            if (comparison != 0) return comparison;
-            // Compare months
-            comparison = Integer.compare(Integer.parseInt(dateB[1]), Integer.parseInt(dateA[1]));
-            if (comparison != 0) return comparison;
-            // Compare days
-            return Integer.compare(Integer.parseInt(dateB[0]), Integer.parseInt(dateA[0]));
-        }).toList();
-        historicChartDTO.setHistoricNAVs(navs);
+        if (columnar) {
+            historicChartDTO.setColumns(navColumns(fundId, series, first, Math.max(first, end)));
+        } else {
+            // Newest first, as MFAPI returns it
+            List<NavDateDTO> navs = new ArrayList<>(Math.max(0, end - first));
+            for (int i = end - 1; i >= first; i--) {
+                navs.add(new NavDateDTO(IstDate.format(series.dayAt(i)), series.navAt(i)));
+            }
+            historicChartDTO.setHistoricNAVs(navs);
+        }
         return Optional.of(historicChartDTO);
     }
 
+    @Override
+    public String getHistoricChartETag(Integer fundId, String from, String to, String format) {
+        NavSeries series = mfapiService.getNavSeries(fundId);
+        String version = series.isEmpty() ? "empty" : IstDate.format(series.latestDay());
+        return "\"nav-" + fundId + "-" + version + "-" + (isColumnar(format) ? "c" : "o") + "-" + Integer.toHexString(Objects.hash(from, to)) + "\"";
+    }
+
+    private static boolean isColumnar(String format) {
+        if (format == null || format.isBlank() || format.equalsIgnoreCase("objects")) {
+            return false;
+        }
+        if (format.equalsIgnoreCase("columnar")) {
+            return true;
+        }
+        throw new ApiException("Invalid format. Expected objects or columnar, got: " + format, HttpStatus.BAD_REQUEST);
+    }
+
+    private static NavColumnsDTO navColumns(Integer fundId, NavSeries series, int first, int end) {
+        int count = end - first;
+        int[] dayDeltas = new int[count];
+        double[] navs = new double[count];
+        for (int i = 0; i < count; i++) {
+            int index = first + i;
+            dayDeltas[i] = i == 0 ? 0 : series.dayAt(index) - series.dayAt(index - 1);
+            navs[i] = series.navAt(index);
+        }
+        NavColumnsDTO columns = new NavColumnsDTO();
+        columns.setSchemeCode(fundId);
+        columns.setStartDate(count == 0 ? null : IstDate.format(series.dayAt(first)));
+        columns.setLatestDate(count == 0 ? null : IstDate.format(series.dayAt(end - 1)));
+        columns.setDayDeltas(dayDeltas);
+        columns.setNavs(navs);
+        return columns;
+    }
+
 
     @Override
     public Boolean registerNewSIP(SIPDTO sipdto) {
@@ -709,32 +709,9 @@ public class UserFundServiceImpl implements UserFundService {
         try {
             log.info("Creating transaction for user: {} and fund: {}", transactionDTO.getUserId(), transactionDTO.getFundId());
 
-            // Check if UserFund exists, if not create it
-            String userFundCheck = existsUserFundByUserIdAndFundId(transactionDTO.getUserId(), transactionDTO.getFundId());
-
-            if (userFundCheck.equals("false")) {
-                log.info("UserFund not found for user: {} and fund: {}, creating new UserFund", transactionDTO.getUserId(), transactionDTO.getFundId());
-
-                // Create UserFundDTO
-                UserFundDTO userFundDTO = new UserFundDTO();
-                userFundDTO.setUserId(transactionDTO.getUserId());
-                userFundDTO.setFundId(transactionDTO.getFundId());
-                userFundDTO.setFundName(transactionDTO.getFundName());
-                userFundDTO.setIsEmergency(false); // Default to false
-                userFundDTO.setTag(null); // Default to null
-
-                // Create the UserFund
-                String userFundResult = createUserFund(userFundDTO);
-                if (userFundResult.startsWith("Error:")) {
-                    log.error("Failed to create UserFund: {}", userFundResult);
-                    return "Error: Failed to create UserFund - " + userFundResult;
-                }
-                log.info("UserFund created successfully: {}", userFundResult);
-            } else if (userFundCheck.startsWith("Error:")) {
-                log.error("Error checking UserFund existence: {}", userFundCheck);
-                return "Error: Failed to check UserFund existence - " + userFundCheck;
-            } else {
-                log.info("UserFund already exists for user: {} and fund: {}", transactionDTO.getUserId(), transactionDTO.getFundId());
+            String userFundError = ensureUserFund(transactionDTO);
+            if (userFundError != null) {
+                return userFundError;
             }
             if (transactionDTO.getAmount() == null && transactionDTO.getUnits() == null) {
                 return "Error. Invalid Transaction.Both Units and Amount not specified.";
@@ -743,9 +720,13 @@ public class UserFundServiceImpl implements UserFundService {
                 return "Error. Invalid Transaction.Both Units and Amount are specified.";
             }
 
-            // Create the transaction
+            // Create the transaction and apply it to the tax lot register; the UserFund recompute happens write-behind
             String result = transactionService.addTransaction(transactionDTO);
-            refreshUserFundByUserIdAndFundId(transactionDTO.getUserId(), transactionDTO.getFundId());
+            if (result.startsWith("Error:")) {
+                return result;
+            }
+            capitalGainsService.recordTransaction(result);
+            enqueueRefresh(transactionDTO.getUserId(), transactionDTO.getFundId());
             return "Success: Transaction created successfully with ID: " + result;
         } catch (Exception e) {
             log.error("Error creating transaction for user: {} and fund: {}", transactionDTO.getUserId(), transactionDTO.getFundId(), e);
@@ -796,13 +777,106 @@ public class UserFundServiceImpl implements UserFundService {
         }
     }
 
+    @Override
+    public List<String> addBuyTransactions(List<TransactionDTO> transactions) {
+        List<String> results = new ArrayList<>(Collections.nCopies(transactions.size(), (String) null));
+        Map<String, String> userFundErrors = new HashMap<>();
+        List<TransactionDTO> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            TransactionDTO transactionDTO = transactions.get(i);
+            if (transactionDTO.getAmount() == null && transactionDTO.getUnits() == null) {
+                results.set(i, "Error. Invalid Transaction.Both Units and Amount not specified.");
+                continue;
+            }
+            if (transactionDTO.getAmount() != null && transactionDTO.getUnits() != null) {
+                results.set(i, "Error. Invalid Transaction.Both Units and Amount are specified.");
+                continue;
+            }
+            // One existence check per fund in the batch rather than per row.
+            String key = transactionDTO.getUserId() + ":" + transactionDTO.getFundId();
+            String userFundError = userFundErrors.computeIfAbsent(key, k -> Objects.requireNonNullElse(ensureUserFund(transactionDTO), ""));
+            if (!userFundError.isEmpty()) {
+                results.set(i, userFundError);
+                continue;
+            }
+            valid.add(transactionDTO);
+            validIndexes.add(i);
+        }
+        if (valid.isEmpty()) {
+            return results;
+        }
+
+        // Insert the batch, apply it to the tax lot registers, and recompute each touched UserFund once write-behind
+        List<Pair<String, Transaction>> created = transactionService.addBuyTransactions(valid);
+        List<Transaction> saved = new ArrayList<>();
+        Set<String> touched = new HashSet<>();
+        for (int i = 0; i < created.size(); i++) {
+            Pair<String, Transaction> result = created.get(i);
+            if (result.getFirst().startsWith("Error:")) {
+                results.set(validIndexes.get(i), result.getFirst());
+                continue;
+            }
+            saved.add(result.getSecond());
+            results.set(validIndexes.get(i), "Success: Transaction created successfully with ID: " + result.getFirst());
+        }
+        capitalGainsService.recordTransactions(saved);
+        for (Transaction transaction : saved) {
+            if (touched.add(transaction.getUserId() + ":" + transaction.getFundId())) {
+                enqueueRefresh(transaction.getUserId(), transaction.getFundId());
+            }
+        }
+        return results;
+    }
+
     @Override
     public String deleteTransaction(String transactionId) {
         Pair<String, Transaction> result = transactionService.deleteTransaction(transactionId);
-        refreshUserFundByUserIdAndFundId(result.getSecond().getUserId(), result.getSecond().getFundId());
+        if (result.getFirst().startsWith("Success") && result.getSecond() != null) {
+            capitalGainsService.removeTransaction(result.getSecond());
+        }
+        if (result.getSecond() != null) {
+            enqueueRefresh(result.getSecond().getUserId(), result.getSecond().getFundId());
+        }
         return result.getFirst();
     }
 
+    // Creates the UserFund a transaction belongs to when it does not exist yet; returns an error or null.
+    private String ensureUserFund(TransactionDTO transactionDTO) {
+        // Check if UserFund exists, if not create it
+        String userFundCheck = existsUserFundByUserIdAndFundId(transactionDTO.getUserId(), transactionDTO.getFundId());
+
+        if (userFundCheck.equals("false")) {
+            log.info("UserFund not found for user: {} and fund: {}, creating new UserFund", transactionDTO.getUserId(), transactionDTO.getFundId());
+
+            // Create UserFundDTO
+            UserFundDTO userFundDTO = new UserFundDTO();
+            userFundDTO.setUserId(transactionDTO.getUserId());
+            userFundDTO.setFundId(transactionDTO.getFundId());
+            userFundDTO.setFundName(transactionDTO.getFundName());
+            userFundDTO.setIsEmergency(false); // Default to false
+            userFundDTO.setTag(null); // Default to null
+
+            // Create the UserFund
+            String userFundResult = createUserFund(userFundDTO);
+            if (userFundResult.startsWith("Error:")) {
+                log.error("Failed to create UserFund: {}", userFundResult);
+                return "Error: Failed to create UserFund - " + userFundResult;
+            }
+            log.info("UserFund created successfully: {}", userFundResult);
+        } else if (userFundCheck.startsWith("Error:")) {
+            log.error("Error checking UserFund existence: {}", userFundCheck);
+            return "Error: Failed to check UserFund existence - " + userFundCheck;
+        } else {
+            log.info("UserFund already exists for user: {} and fund: {}", transactionDTO.getUserId(), transactionDTO.getFundId());
+        }
+        return null;
+    }
+
+    private void enqueueRefresh(String userId, Integer fundId) {
+        userFundRefreshQueue.enqueue(userId, fundId, () -> refreshUserFundByUserIdAndFundId(userId, fundId));
+    }
+
 
     private UserFundDTO convertToDTO(UserFund userFund) {
         return new UserFundDTO(userFund.getUserId(), userFund.getFundId(), userFund.getFundName(), userFund.getIsEmergency(), userFund.getTag(), userFund.getBenchmark(), userFund.getUnits(), userFund.getInvestmentAmount());
@@ -18,6 +18,7 @@ import java.util.Optional;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final DashboardSnapshotStore dashboardSnapshotStore;
 
     @Override
     public List<User> getAllUsers() {
@@ -108,6 +109,8 @@ public class UserServiceImpl implements UserService {
             User user = convertToEntity(userDTO);
             user.setId(id); // Ensure the ID is preserved
             User updatedUser = userRepository.save(user);
+            // The dashboard snapshot carries the user's name
+            dashboardSnapshotStore.invalidate(id);
             log.info("User updated successfully with ID: {}", updatedUser.getId());
             return "Success: User updated successfully";
         } catch (Exception e) {
@@ -128,6 +131,7 @@ public class UserServiceImpl implements UserService {
             }
 
             userRepository.deleteById(id);
+            dashboardSnapshotStore.invalidate(id);
             log.info("User deleted successfully with ID: {}", id);
             return "Success: User deleted successfully";
         } catch (Exception e) {
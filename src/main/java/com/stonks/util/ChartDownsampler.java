@@ -0,0 +1,99 @@
+package com.stonks.util;
+
+import com.stonks.dto.HistoricDataDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of a performance chart on its total value.
+ * <p>
+ * The first and last points are always kept; every bucket in between keeps the point that forms
+ * the largest triangle with the point kept before it and the average of the next bucket, which
+ * preserves peaks and troughs far better than taking every n-th point. The period fields of a kept
+ * point are re-summed over the points it stands for, so they still cover the span since the
+ * previous returned point. Runs in O(n) and never modifies the input rows.
+ */
+public final class ChartDownsampler {
+
+    private ChartDownsampler() {
+    }
+
+    public static List<HistoricDataDTO> downsample(List<HistoricDataDTO> rows, int maxPoints) {
+        int n = rows.size();
+        if (maxPoints < 3 || n <= maxPoints) {
+            return rows;
+        }
+
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            Double value = rows.get(i).getTotalValue();
+            values[i] = value == null ? 0.0 : value;
+        }
+
+        int[] kept = new int[maxPoints];
+        int count = 0;
+        kept[count++] = 0;
+        double bucketSize = (double) (n - 2) / (maxPoints - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+            // Average of the next bucket (the last point for the final bucket)
+            int nextStart = end;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, n);
+            if (nextStart >= nextEnd) {
+                nextStart = n - 1;
+                nextEnd = n;
+            }
+            double averageX = 0.0;
+            double averageY = 0.0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += i;
+                averageY += values[i];
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            double largestArea = -1.0;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((previous - averageX) * (values[i] - values[previous]) - (previous - i) * (averageY - values[previous]));
+                if (area > largestArea) {
+                    largestArea = area;
+                    chosen = i;
+                }
+            }
+            kept[count++] = chosen;
+            previous = chosen;
+        }
+        kept[count++] = n - 1;
+
+        List<HistoricDataDTO> sampled = new ArrayList<>(count);
+        sampled.add(rows.get(0));
+        for (int k = 1; k < count; k++) {
+            sampled.add(merged(rows, kept[k - 1] + 1, kept[k]));
+        }
+        return sampled;
+    }
+
+    // Row 'last' with its period fields summed over rows from..last.
+    private static HistoricDataDTO merged(List<HistoricDataDTO> rows, int from, int last) {
+        HistoricDataDTO row = rows.get(last);
+        if (from == last) {
+            return row;
+        }
+        double profit = 0.0;
+        double invested = 0.0;
+        for (int i = from; i <= last; i++) {
+            HistoricDataDTO r = rows.get(i);
+            profit += r.getThisMonthProfit() == null ? 0.0 : r.getThisMonthProfit();
+            invested += r.getThisMonthInvested() == null ? 0.0 : r.getThisMonthInvested();
+        }
+        HistoricDataDTO copy = new HistoricDataDTO(row);
+        copy.setThisMonthProfit(profit);
+        copy.setThisMonthInvested(invested);
+        return copy;
+    }
+}
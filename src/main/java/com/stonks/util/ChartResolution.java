@@ -0,0 +1,109 @@
+package com.stonks.util;
+
+import java.util.Locale;
+
+/**
+ * Spacing of the points on a performance chart. Daily points fall on weekdays and weekly points on
+ * Fridays, the days NAVs are published; monthly points are the month ends the chart always used.
+ */
+public enum ChartResolution {
+    DAILY(365),
+    WEEKLY(5 * 365),
+    MONTHLY(Integer.MAX_VALUE);
+
+    // 1970-01-01 (epoch day 0) was a Thursday.
+    private static final int EPOCH_DAY_OF_WEEK = 3;
+    private static final int FRIDAY = 4;
+
+    private final int defaultLookbackDays;
+
+    ChartResolution(int defaultLookbackDays) {
+        this.defaultLookbackDays = defaultLookbackDays;
+    }
+
+    /**
+     * Parses a request parameter; a missing value means monthly.
+     *
+     * @throws IllegalArgumentException for anything other than daily, weekly or monthly
+     */
+    public static ChartResolution parse(String value) {
+        if (value == null || value.isBlank()) {
+            return MONTHLY;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid resolution. Expected daily, weekly or monthly, got: " + value);
+        }
+    }
+
+    /**
+     * How far back a chart without an explicit start goes.
+     */
+    public int getDefaultLookbackDays() {
+        return defaultLookbackDays;
+    }
+
+    /**
+     * The next coarser resolution, or this one when it is already the coarsest.
+     */
+    public ChartResolution coarser() {
+        return this == MONTHLY ? MONTHLY : values()[ordinal() + 1];
+    }
+
+    /**
+     * First period end on or after the day.
+     */
+    public int periodEndOnOrAfter(int day) {
+        return switch (this) {
+            case DAILY -> {
+                int dayOfWeek = dayOfWeek(day);
+                yield dayOfWeek < 5 ? day : day + 7 - dayOfWeek;
+            }
+            case WEEKLY -> day + Math.floorMod(FRIDAY - dayOfWeek(day), 7);
+            case MONTHLY -> IstDate.endOfMonth(day);
+        };
+    }
+
+    /**
+     * Period end following the given period end.
+     */
+    public int nextPeriodEnd(int periodEnd) {
+        return switch (this) {
+            case DAILY -> dayOfWeek(periodEnd) == FRIDAY ? periodEnd + 3 : periodEnd + 1;
+            case WEEKLY -> periodEnd + 7;
+            case MONTHLY -> IstDate.endOfMonth(periodEnd + 1);
+        };
+    }
+
+    /**
+     * Last period end strictly before the day.
+     */
+    public int periodEndBefore(int day) {
+        return switch (this) {
+            case DAILY -> {
+                int dayOfWeek = dayOfWeek(day - 1);
+                yield dayOfWeek < 5 ? day - 1 : day - 1 - (dayOfWeek - FRIDAY);
+            }
+            case WEEKLY -> day - 1 - Math.floorMod(dayOfWeek(day - 1) - FRIDAY, 7);
+            case MONTHLY -> IstDate.startOfMonth(day) - 1;
+        };
+    }
+
+    /**
+     * Upper bound on the number of period ends in [from, to].
+     */
+    public long periodsBetween(int from, int to) {
+        long span = (long) to - from + 1;
+        return switch (this) {
+            case DAILY -> span * 5 / 7 + 2;
+            case WEEKLY -> span / 7 + 2;
+            case MONTHLY -> span / 28 + 2;
+        };
+    }
+
+    // 0 = Monday ... 6 = Sunday
+    private static int dayOfWeek(int epochDay) {
+        return Math.floorMod(epochDay + EPOCH_DAY_OF_WEEK, 7);
+    }
+}
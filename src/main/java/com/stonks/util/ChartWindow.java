@@ -0,0 +1,115 @@
+package com.stonks.util;
+
+import com.stonks.dto.HistoricDataDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Range, resolution and point budget of one performance chart request.
+ * <p>
+ * The resolution is coarsened until the range holds at most {@code maxPeriods} points, so the work
+ * per fund stays bounded however long a range is requested; the result is then downsampled to
+ * {@code maxPoints}. Daily and weekly charts without a start cover a default lookback, monthly
+ * charts the whole history.
+ */
+public final class ChartWindow {
+
+    private static final int FULL_HISTORY = Integer.MIN_VALUE;
+
+    private final ChartResolution resolution;
+    private final int fromDay;
+    private final int toDay;
+    private final boolean live;
+    private final int maxPoints;
+
+    private ChartWindow(ChartResolution resolution, int fromDay, int toDay, boolean live, int maxPoints) {
+        this.resolution = resolution;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        this.live = live;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * @param from dd-MM-yyyy, or null for the resolution's default start
+     * @param to   dd-MM-yyyy, or null for today; later days are clamped to today
+     * @throws IllegalArgumentException for unparseable values or an empty range
+     */
+    public static ChartWindow of(String resolution, String from, String to, int today, int maxPoints, int maxPeriods) {
+        ChartResolution requested = ChartResolution.parse(resolution);
+        int toDay = to == null || to.isBlank() ? today : Math.min(IstDate.parse(to.trim()), today);
+        int fromDay;
+        if (from != null && !from.isBlank()) {
+            fromDay = IstDate.parse(from.trim());
+        } else {
+            fromDay = requested == ChartResolution.MONTHLY ? FULL_HISTORY : toDay - requested.getDefaultLookbackDays() + 1;
+        }
+        if (fromDay > toDay) {
+            throw new IllegalArgumentException("Invalid range. 'from' must not be after 'to'");
+        }
+
+        ChartResolution effective = requested;
+        while (effective != ChartResolution.MONTHLY && effective.periodsBetween(fromDay, toDay) > maxPeriods) {
+            effective = effective.coarser();
+        }
+        return new ChartWindow(effective, fromDay, toDay, toDay == today, maxPoints);
+    }
+
+    public ChartResolution getResolution() {
+        return resolution;
+    }
+
+    public boolean isMonthly() {
+        return resolution == ChartResolution.MONTHLY;
+    }
+
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * Days a daily or weekly chart is valued on: the period end before the range (the baseline for
+     * the first point), every period end in the range and, for a range ending today, today itself.
+     */
+    public int[] valuationDays() {
+        int first = resolution.periodEndOnOrAfter(fromDay);
+        int[] days = new int[(int) Math.min(Integer.MAX_VALUE - 8, resolution.periodsBetween(fromDay, toDay) + 2)];
+        int count = 0;
+        days[count++] = resolution.periodEndBefore(first);
+        for (int day = first; day <= toDay; day = resolution.nextPeriodEnd(day)) {
+            days[count++] = day;
+        }
+        if (live && days[count - 1] != toDay) {
+            days[count++] = toDay;
+        }
+        return Arrays.copyOf(days, count);
+    }
+
+    /**
+     * Rows of a full monthly chart whose months overlap the range.
+     */
+    public List<HistoricDataDTO> sliceMonths(List<HistoricDataDTO> rows) {
+        if (fromDay == FULL_HISTORY && live) {
+            return rows;
+        }
+        int fromMonth = fromDay == FULL_HISTORY ? Integer.MIN_VALUE : IstDate.monthIndex(fromDay);
+        int toMonth = IstDate.monthIndex(toDay);
+        List<HistoricDataDTO> slice = new ArrayList<>();
+        for (HistoricDataDTO row : rows) {
+            int month = IstDate.monthIndex(IstDate.parse(row.getDate()));
+            if (month >= fromMonth && month <= toMonth) {
+                slice.add(row);
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * The rows reduced to the point budget.
+     */
+    public List<HistoricDataDTO> downsample(List<HistoricDataDTO> rows) {
+        return ChartDownsampler.downsample(rows, maxPoints);
+    }
+}
@@ -0,0 +1,49 @@
+package com.stonks.util;
+
+/**
+ * Single-pass (Welford) covariance of paired returns of a fund and its benchmark, with the variance
+ * of the benchmark and of the active return (fund minus benchmark) for beta and tracking error.
+ */
+public final class CoMoments {
+
+    private long count;
+    private double meanFund;
+    private double meanBenchmark;
+    private double coMoment;
+    private double m2Benchmark;
+    private double meanActive;
+    private double m2Active;
+
+    public void add(double fund, double benchmark) {
+        count++;
+        double deltaFund = fund - meanFund;
+        meanFund += deltaFund / count;
+        double deltaBenchmark = benchmark - meanBenchmark;
+        meanBenchmark += deltaBenchmark / count;
+        coMoment += deltaFund * (benchmark - meanBenchmark);
+        m2Benchmark += deltaBenchmark * (benchmark - meanBenchmark);
+
+        double active = fund - benchmark;
+        double deltaActive = active - meanActive;
+        meanActive += deltaActive / count;
+        m2Active += deltaActive * (active - meanActive);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Covariance with the benchmark over the benchmark's variance; NaN when the benchmark did not move.
+     */
+    public double getBeta() {
+        return count < 2 || m2Benchmark == 0.0 ? Double.NaN : coMoment / m2Benchmark;
+    }
+
+    /**
+     * Sample standard deviation of the per-period active return.
+     */
+    public double getTrackingError() {
+        return count < 2 ? Double.NaN : Math.sqrt(m2Active / (count - 1));
+    }
+}
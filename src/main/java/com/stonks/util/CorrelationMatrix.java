@@ -0,0 +1,170 @@
+package com.stonks.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Pearson correlation of daily returns between every pair of schemes, over the NAV dates all of
+ * them share.
+ * <p>
+ * The series are aligned with a k-way merge over their ascending days, and each scheme's returns
+ * are centered and scaled to unit length once, so every correlation is a plain dot product. Rows
+ * of the matrix are filled in parallel once there are enough pairs to pay for forking.
+ */
+public final class CorrelationMatrix {
+
+    // Below this many pairs the dot products are cheaper than forking.
+    private static final int PARALLEL_PAIRS = 64;
+
+    private final int[] days;
+    private final double[][] correlations;
+
+    private CorrelationMatrix(int[] days, double[][] correlations) {
+        this.days = days;
+        this.correlations = correlations;
+    }
+
+    /**
+     * Correlations over the common NAV dates on or after fromDay. Pairs involving a scheme whose
+     * NAV never moves over those dates are NaN, as are all pairs with fewer than three dates.
+     */
+    public static CorrelationMatrix of(List<NavSeries> series, int fromDay) {
+        int k = series.size();
+        int[] days = commonDays(series, fromDay);
+        int n = days.length;
+        double[][] normalized = new double[k][];
+        for (int f = 0; f < k; f++) {
+            normalized[f] = normalizedReturns(series.get(f), days);
+        }
+
+        double[][] correlations = new double[k][k];
+        IntStream rows = IntStream.range(0, k);
+        if ((long) k * (k - 1) / 2 >= PARALLEL_PAIRS) {
+            rows = rows.parallel();
+        }
+        rows.forEach(a -> {
+            correlations[a][a] = normalized[a] == null || n < 3 ? Double.NaN : 1.0;
+            for (int b = a + 1; b < k; b++) {
+                double value = n < 3 ? Double.NaN : dot(normalized[a], normalized[b]);
+                correlations[a][b] = value;
+                // Rows only write their own upper triangle and its mirror, never another row's.
+                correlations[b][a] = value;
+            }
+        });
+        return new CorrelationMatrix(days, correlations);
+    }
+
+    public int size() {
+        return correlations.length;
+    }
+
+    /**
+     * Number of daily returns each correlation is computed from.
+     */
+    public int getObservations() {
+        return Math.max(0, days.length - 1);
+    }
+
+    /**
+     * First common date, or -1 when the schemes share none.
+     */
+    public int getFirstDay() {
+        return days.length == 0 ? -1 : days[0];
+    }
+
+    public int getLastDay() {
+        return days.length == 0 ? -1 : days[days.length - 1];
+    }
+
+    public double get(int a, int b) {
+        return correlations[a][b];
+    }
+
+    // Days every series has a NAV for: each pointer catches up with the furthest one.
+    private static int[] commonDays(List<NavSeries> series, int fromDay) {
+        int k = series.size();
+        if (k == 0) {
+            return new int[0];
+        }
+        int[] position = new int[k];
+        int capacity = Integer.MAX_VALUE;
+        for (int f = 0; f < k; f++) {
+            NavSeries s = series.get(f);
+            position[f] = s.indexOnOrAfter(fromDay);
+            if (position[f] < 0) {
+                return new int[0];
+            }
+            capacity = Math.min(capacity, s.size() - position[f]);
+        }
+
+        int[] days = new int[capacity];
+        int count = 0;
+        int target = fromDay;
+        while (true) {
+            boolean aligned = true;
+            for (int f = 0; f < k; f++) {
+                NavSeries s = series.get(f);
+                int p = position[f];
+                while (p < s.size() && s.dayAt(p) < target) {
+                    p++;
+                }
+                if (p == s.size()) {
+                    return Arrays.copyOf(days, count);
+                }
+                position[f] = p;
+                if (s.dayAt(p) > target) {
+                    target = s.dayAt(p);
+                    aligned = false;
+                }
+            }
+            if (aligned) {
+                days[count++] = target;
+                target++;
+            }
+        }
+    }
+
+    // Returns between consecutive common days, centered and scaled to unit length; null when flat.
+    private static double[] normalizedReturns(NavSeries series, int[] days) {
+        int n = days.length - 1;
+        if (n < 1) {
+            return null;
+        }
+        double[] returns = new double[n];
+        NavSeries.Cursor cursor = series.cursor(days[0]);
+        double previous = cursor.navOnOrAfter(days[0]);
+        double sum = 0.0;
+        for (int t = 0; t < n; t++) {
+            double nav = cursor.navOnOrAfter(days[t + 1]);
+            returns[t] = previous > 0.0 ? nav / previous - 1.0 : 0.0;
+            sum += returns[t];
+            previous = nav;
+        }
+        double mean = sum / n;
+        double squares = 0.0;
+        for (int t = 0; t < n; t++) {
+            returns[t] -= mean;
+            squares += returns[t] * returns[t];
+        }
+        if (squares == 0.0) {
+            return null;
+        }
+        double scale = 1.0 / Math.sqrt(squares);
+        for (int t = 0; t < n; t++) {
+            returns[t] *= scale;
+        }
+        return returns;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        if (a == null || b == null) {
+            return Double.NaN;
+        }
+        double sum = 0.0;
+        for (int t = 0; t < a.length; t++) {
+            sum += a[t] * b[t];
+        }
+        return sum;
+    }
+}
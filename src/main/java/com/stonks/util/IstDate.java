@@ -0,0 +1,284 @@
+package com.stonks.util;
+
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.Locale;
+
+/**
+ * Allocation-free IST calendar arithmetic over int epoch-days.
+ * <p>
+ * IST has been a fixed +05:30 offset with no DST since 1945, so an instant maps to an IST calendar day with one
+ * floor division and every month/financial-year boundary can be derived arithmetically.
+ * Dates are passed around as epoch-days internally and only formatted at the API edge.
+ */
+public final class IstDate {
+
+    public static final int IST_OFFSET_SECONDS = 5 * 60 * 60 + 30 * 60;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    // Month tables cover 1900-01 .. 2199-12; anything outside falls back to plain arithmetic.
+    private static final int TABLE_FIRST_YEAR = 1900;
+    private static final int TABLE_LAST_YEAR = 2199;
+    private static final int TABLE_BASE_MONTH = TABLE_FIRST_YEAR * 12;
+    private static final int TABLE_SIZE = (TABLE_LAST_YEAR - TABLE_FIRST_YEAR + 1) * 12;
+
+    private static final int[] MONTH_START_DAYS = new int[TABLE_SIZE + 1];
+    private static final String[] MONTH_LABELS = new String[TABLE_SIZE];
+    private static final String[] MONTH_NAMES = new String[12];
+
+    static {
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            int monthIndex = TABLE_BASE_MONTH + i;
+            MONTH_START_DAYS[i] = daysFromCivil(monthIndex / 12, monthIndex % 12 + 1, 1);
+        }
+        for (int m = 0; m < 12; m++) {
+            MONTH_NAMES[m] = Month.of(m + 1).getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        }
+    }
+
+    private IstDate() {
+    }
+
+    // ---- conversions -------------------------------------------------------------------------
+
+    public static int fromEpochSecond(long epochSeconds) {
+        return (int) Math.floorDiv(epochSeconds + IST_OFFSET_SECONDS, SECONDS_PER_DAY);
+    }
+
+    /**
+     * Epoch seconds of 00:00 IST on the given day.
+     */
+    public static long toEpochSecond(int epochDay) {
+        return (long) epochDay * SECONDS_PER_DAY - IST_OFFSET_SECONDS;
+    }
+
+    public static int today() {
+        return fromEpochSecond(System.currentTimeMillis() / 1000);
+    }
+
+    public static int of(int year, int month, int dayOfMonth) {
+        return daysFromCivil(year, month, dayOfMonth);
+    }
+
+    /**
+     * Parses a dd-MM-yyyy string without going through DateTimeFormatter.
+     *
+     * @throws IllegalArgumentException if the string is not a valid dd-MM-yyyy date
+     */
+    public static int parse(String ddMMyyyy) {
+        if (ddMMyyyy == null || ddMMyyyy.length() != 10 || ddMMyyyy.charAt(2) != '-' || ddMMyyyy.charAt(5) != '-') {
+            throw new IllegalArgumentException("Invalid date format. Expected format: dd-MM-yyyy, got: " + ddMMyyyy);
+        }
+        int day = digits(ddMMyyyy, 0, 2);
+        int month = digits(ddMMyyyy, 3, 5);
+        int year = digits(ddMMyyyy, 6, 10);
+        if (day < 0 || month < 1 || month > 12 || year < 0 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw new IllegalArgumentException("Invalid date format. Expected format: dd-MM-yyyy, got: " + ddMMyyyy);
+        }
+        return daysFromCivil(year, month, day);
+    }
+
+    public static String format(int epochDay) {
+        int ymd = toCivil(epochDay);
+        int year = ymd >> 9;
+        int month = (ymd >> 5) & 0xF;
+        int day = ymd & 0x1F;
+        char[] out = new char[10];
+        out[0] = (char) ('0' + day / 10);
+        out[1] = (char) ('0' + day % 10);
+        out[2] = '-';
+        out[3] = (char) ('0' + month / 10);
+        out[4] = (char) ('0' + month % 10);
+        out[5] = '-';
+        out[6] = (char) ('0' + (year / 1000) % 10);
+        out[7] = (char) ('0' + (year / 100) % 10);
+        out[8] = (char) ('0' + (year / 10) % 10);
+        out[9] = (char) ('0' + year % 10);
+        return new String(out);
+    }
+
+    // ---- fields ------------------------------------------------------------------------------
+
+    public static int year(int epochDay) {
+        return toCivil(epochDay) >> 9;
+    }
+
+    public static int month(int epochDay) {
+        return (toCivil(epochDay) >> 5) & 0xF;
+    }
+
+    public static int dayOfMonth(int epochDay) {
+        return toCivil(epochDay) & 0x1F;
+    }
+
+    public static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    // ---- months ------------------------------------------------------------------------------
+
+    /**
+     * Months since year 0 (year * 12 + month - 1). Consecutive months have consecutive indexes,
+     * so it can be used directly as an array offset from a base month.
+     */
+    public static int monthIndex(int epochDay) {
+        int ymd = toCivil(epochDay);
+        return (ymd >> 9) * 12 + ((ymd >> 5) & 0xF) - 1;
+    }
+
+    public static int monthStart(int monthIndex) {
+        int i = monthIndex - TABLE_BASE_MONTH;
+        if (i >= 0 && i < TABLE_SIZE) {
+            return MONTH_START_DAYS[i];
+        }
+        return daysFromCivil(Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1, 1);
+    }
+
+    public static int monthEnd(int monthIndex) {
+        return monthStart(monthIndex + 1) - 1;
+    }
+
+    public static int startOfMonth(int epochDay) {
+        return epochDay - dayOfMonth(epochDay) + 1;
+    }
+
+    public static int endOfMonth(int epochDay) {
+        return monthEnd(monthIndex(epochDay));
+    }
+
+    public static int nextMonth(int epochDay) {
+        return monthStart(monthIndex(epochDay) + 1);
+    }
+
+    /**
+     * Same day of month the given number of months earlier, clamped to the month's length like
+     * LocalDate.minusMonths.
+     */
+    public static int minusMonths(int epochDay, int months) {
+        int target = monthIndex(epochDay) - months;
+        int year = Math.floorDiv(target, 12);
+        int month = Math.floorMod(target, 12) + 1;
+        return daysFromCivil(year, month, Math.min(dayOfMonth(epochDay), lengthOfMonth(year, month)));
+    }
+
+    public static int plusMonths(int epochDay, int months) {
+        return minusMonths(epochDay, -months);
+    }
+
+    /**
+     * "MMMM yyyy" label of a month index, e.g. "April 2024". Labels are built once and reused.
+     */
+    public static String monthLabel(int monthIndex) {
+        int i = monthIndex - TABLE_BASE_MONTH;
+        if (i >= 0 && i < TABLE_SIZE) {
+            String label = MONTH_LABELS[i];
+            if (label == null) {
+                label = MONTH_NAMES[Math.floorMod(monthIndex, 12)] + " " + Math.floorDiv(monthIndex, 12);
+                MONTH_LABELS[i] = label;
+            }
+            return label;
+        }
+        return MONTH_NAMES[Math.floorMod(monthIndex, 12)] + " " + Math.floorDiv(monthIndex, 12);
+    }
+
+    // ---- financial years ---------------------------------------------------------------------
+
+    /**
+     * Indian financial year (April..March) containing the day, identified by its starting year.
+     */
+    public static int financialYear(int epochDay) {
+        int ymd = toCivil(epochDay);
+        int year = ymd >> 9;
+        return ((ymd >> 5) & 0xF) >= 4 ? year : year - 1;
+    }
+
+    public static int financialYearStart(int financialYear) {
+        return monthStart(financialYear * 12 + 3);
+    }
+
+    public static int financialYearEnd(int financialYear) {
+        return monthStart((financialYear + 1) * 12 + 3) - 1;
+    }
+
+    public static boolean isInFinancialYear(int epochDay, int financialYear) {
+        return epochDay >= financialYearStart(financialYear) && epochDay <= financialYearEnd(financialYear);
+    }
+
+    /**
+     * "2024-25" style label of a financial year.
+     */
+    public static String financialYearLabel(int financialYear) {
+        int next = (financialYear + 1) % 100;
+        return financialYear + "-" + (next < 10 ? "0" + next : String.valueOf(next));
+    }
+
+    // ---- holding periods ---------------------------------------------------------------------
+
+    /**
+     * First day one full calendar year after the given one (ChronoUnit.YEARS semantics): the same
+     * calendar day a year later, except that 29 Feb maps to 1 Mar.
+     */
+    public static int plusOneYear(int epochDay) {
+        int ymd = toCivil(epochDay);
+        int year = (ymd >> 9) + 1;
+        int month = (ymd >> 5) & 0xF;
+        int day = ymd & 0x1F;
+        if (day > lengthOfMonth(year, month)) {
+            return daysFromCivil(year, month + 1, 1);
+        }
+        return daysFromCivil(year, month, day);
+    }
+
+    /**
+     * True when at least one full calendar year separates the two days (ChronoUnit.YEARS semantics).
+     */
+    public static boolean isOneYearOrMoreOld(int epochDay, int today) {
+        return plusOneYear(epochDay) <= today;
+    }
+
+    // ---- civil calendar kernels --------------------------------------------------------------
+
+    // Howard Hinnant's days_from_civil, proleptic Gregorian.
+    private static int daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    // Returns year << 9 | month << 5 | day packed into one int to stay allocation-free.
+    private static int toCivil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int doe = z - era * 146097;
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 9 | month << 5 | day;
+    }
+
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+}
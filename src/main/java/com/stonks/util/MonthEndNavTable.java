@@ -0,0 +1,93 @@
+package com.stonks.util;
+
+import java.util.Arrays;
+
+/**
+ * Month-end NAVs of one scheme indexed by {@link IstDate#monthIndex} offset from the first month
+ * of its NAV history, so a chart can value holdings with one array read per month.
+ * <p>
+ * Each entry is the NAV the month end is valued at everywhere else: the NAV dated on the last
+ * day of the month, or the next trading day's when the month ends on a holiday. Only closed
+ * months (whose valuation NAV is already published) are stored; later months return NaN and
+ * callers fall back to the latest NAV, as before. Instances are immutable and shared across users.
+ */
+public final class MonthEndNavTable {
+
+    private final NavSeries series;
+    private final int baseMonth;
+    private final double[] navs;
+
+    private MonthEndNavTable(NavSeries series, int baseMonth, double[] navs) {
+        this.series = series;
+        this.baseMonth = baseMonth;
+        this.navs = navs;
+    }
+
+    public static MonthEndNavTable of(NavSeries series) {
+        if (series.isEmpty()) {
+            return new MonthEndNavTable(series, 0, new double[0]);
+        }
+        int baseMonth = IstDate.monthIndex(series.firstDay());
+        double[] navs = new double[Math.max(0, lastClosedMonth(series) - baseMonth + 1)];
+        fill(series, navs, baseMonth, 0);
+        return new MonthEndNavTable(series, baseMonth, navs);
+    }
+
+    /**
+     * Table over a newer series of the same scheme. Closed months are carried over and only the
+     * months that closed since are computed, so a daily NAV refresh costs O(new months).
+     */
+    public MonthEndNavTable extendedWith(NavSeries newer) {
+        if (navs.length == 0 || newer.isEmpty() || IstDate.monthIndex(newer.firstDay()) != baseMonth) {
+            return of(newer);
+        }
+        int months = Math.max(navs.length, lastClosedMonth(newer) - baseMonth + 1);
+        double[] extended = Arrays.copyOf(navs, months);
+        fill(newer, extended, baseMonth, navs.length);
+        return new MonthEndNavTable(newer, baseMonth, extended);
+    }
+
+    public NavSeries getSeries() {
+        return series;
+    }
+
+    public int getBaseMonth() {
+        return baseMonth;
+    }
+
+    /**
+     * Last month with a stored value, or baseMonth - 1 when none is.
+     */
+    public int getLastMonth() {
+        return baseMonth + navs.length - 1;
+    }
+
+    /**
+     * Month-end NAV of the month index, or NaN when that month has not closed in the NAV data.
+     */
+    public double navAtMonthEnd(int monthIndex) {
+        int i = monthIndex - baseMonth;
+        if (i < 0) {
+            // Before the scheme's first NAV: valued at its first NAV, like any earlier date.
+            return series.isEmpty() ? Double.NaN : series.navAt(0);
+        }
+        return i < navs.length ? navs[i] : Double.NaN;
+    }
+
+    // Last month whose month end is on or before the newest NAV date.
+    private static int lastClosedMonth(NavSeries series) {
+        int latestDay = series.latestDay();
+        int month = IstDate.monthIndex(latestDay);
+        return IstDate.monthEnd(month) <= latestDay ? month : month - 1;
+    }
+
+    private static void fill(NavSeries series, double[] navs, int baseMonth, int from) {
+        if (from >= navs.length) {
+            return;
+        }
+        NavSeries.Cursor cursor = series.cursor(IstDate.monthEnd(baseMonth + from));
+        for (int i = from; i < navs.length; i++) {
+            navs[i] = cursor.navOnOrAfter(IstDate.monthEnd(baseMonth + i));
+        }
+    }
+}
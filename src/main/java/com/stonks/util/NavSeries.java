@@ -0,0 +1,141 @@
+package com.stonks.util;
+
+import com.stonks.dto.MFAPIDTOs.MutualFundNavDTO;
+
+import java.util.List;
+
+/**
+ * One scheme's NAV history as parallel primitive arrays in ascending IST epoch-day order.
+ * <p>
+ * MFAPI returns NAVs newest-first as dd-MM-yyyy strings; they are parsed once here so that
+ * lookups never touch a string again. Instances are immutable and safe to share.
+ */
+public final class NavSeries {
+
+    private static final NavSeries EMPTY = new NavSeries(null, new int[0], new double[0]);
+
+    private final Integer schemeCode;
+    private final int[] days;
+    private final double[] navs;
+
+    private NavSeries(Integer schemeCode, int[] days, double[] navs) {
+        this.schemeCode = schemeCode;
+        this.days = days;
+        this.navs = navs;
+    }
+
+    public static NavSeries empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a series from MFAPI data (newest first).
+     */
+    public static NavSeries of(Integer schemeCode, List<MutualFundNavDTO> newestFirst) {
+        if (newestFirst == null || newestFirst.isEmpty()) {
+            return new NavSeries(schemeCode, new int[0], new double[0]);
+        }
+        int n = newestFirst.size();
+        int[] days = new int[n];
+        double[] navs = new double[n];
+        for (int i = 0; i < n; i++) {
+            MutualFundNavDTO nav = newestFirst.get(n - 1 - i);
+            days[i] = IstDate.parse(nav.getDate());
+            navs[i] = Double.parseDouble(nav.getNav());
+        }
+        return new NavSeries(schemeCode, days, navs);
+    }
+
+    public Integer getSchemeCode() {
+        return schemeCode;
+    }
+
+    public int size() {
+        return days.length;
+    }
+
+    public boolean isEmpty() {
+        return days.length == 0;
+    }
+
+    public int dayAt(int index) {
+        return days[index];
+    }
+
+    public double navAt(int index) {
+        return navs[index];
+    }
+
+    public int firstDay() {
+        return days[0];
+    }
+
+    public int latestDay() {
+        return days[days.length - 1];
+    }
+
+    public double latestNav() {
+        return navs[navs.length - 1];
+    }
+
+    /**
+     * Index of the first NAV dated on or after the day, or -1 when the day is past the newest NAV.
+     * This is the pricing rule transactions use: the NAV of the next trading day.
+     */
+    public int indexOnOrAfter(int day) {
+        int left = 0;
+        int right = days.length;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (days[mid] >= day) {
+                right = mid;
+            } else {
+                left = mid + 1;
+            }
+        }
+        return left == days.length ? -1 : left;
+    }
+
+    /**
+     * NAV on or after the day, or NaN when the day is past the newest NAV.
+     */
+    public double navOnOrAfter(int day) {
+        int index = indexOnOrAfter(day);
+        return index < 0 ? Double.NaN : navs[index];
+    }
+
+    /**
+     * Forward-only reader for callers that query non-decreasing days, e.g. a walk over sorted
+     * transactions and month ends. Each call is amortized O(1).
+     */
+    public Cursor cursor() {
+        return new Cursor(0);
+    }
+
+    /**
+     * Cursor positioned at the day with one binary search, for walks that start mid-series.
+     */
+    public Cursor cursor(int fromDay) {
+        int index = indexOnOrAfter(fromDay);
+        return new Cursor(index < 0 ? days.length : index);
+    }
+
+    public final class Cursor {
+        private int index;
+
+        private Cursor(int index) {
+            this.index = index;
+        }
+
+        /**
+         * NAV on or after the day, or NaN when the day is past the newest NAV. Days must not decrease
+         * between calls.
+         */
+        public double navOnOrAfter(int day) {
+            while (index < days.length && days[index] < day) {
+                index++;
+            }
+            return index == days.length ? Double.NaN : navs[index];
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.stonks.util;
+
+/**
+ * Single-pass (Welford) mean and variance of periodic returns, plus the downside deviation below
+ * a target return. Numerically stable for long series and never keeps the returns themselves.
+ */
+public final class ReturnMoments {
+
+    private final double target;
+    private long count;
+    private double mean;
+    private double m2;
+    private double downsideSquares;
+
+    /**
+     * @param target per-period return below which a return counts as downside (e.g. the risk-free rate)
+     */
+    public ReturnMoments(double target) {
+        this.target = target;
+    }
+
+    public void add(double r) {
+        count++;
+        double delta = r - mean;
+        mean += delta / count;
+        m2 += delta * (r - mean);
+        double shortfall = Math.min(0.0, r - target);
+        downsideSquares += shortfall * shortfall;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Sample variance; NaN with fewer than two returns.
+     */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Root mean square of the shortfalls below the target.
+     */
+    public double getDownsideDeviation() {
+        return count == 0 ? Double.NaN : Math.sqrt(downsideSquares / count);
+    }
+}
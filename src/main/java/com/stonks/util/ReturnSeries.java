@@ -0,0 +1,101 @@
+package com.stonks.util;
+
+/**
+ * Cumulative time-weighted growth of a holding on each valuation day, in ascending day order.
+ * <p>
+ * {@code growth[i]} is the product of the daily returns (value net of that day's cash flow over
+ * the previous day's value) up to day i, so the time-weighted return between any two days is one
+ * division and every trailing window is answered after a single binary search for its start.
+ * Days with nothing held contribute a factor of 1. Instances are immutable.
+ */
+public final class ReturnSeries {
+
+    private static final ReturnSeries EMPTY = new ReturnSeries(new int[0], new double[0]);
+
+    private final int[] days;
+    private final double[] growth;
+
+    private ReturnSeries(int[] days, double[] growth) {
+        this.days = days;
+        this.growth = growth;
+    }
+
+    public static ReturnSeries empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Prefix products of the daily returns of a value series.
+     *
+     * @param values value held at the end of each day, after that day's flows
+     * @param flows  net cash flow of each day (purchases positive, redemptions negative)
+     */
+    public static ReturnSeries of(int[] days, double[] values, double[] flows, int count) {
+        int[] ownDays = new int[count];
+        double[] growth = new double[count];
+        double product = 1.0;
+        for (int i = 0; i < count; i++) {
+            ownDays[i] = days[i];
+            double previous = i == 0 ? 0.0 : values[i - 1];
+            if (previous > 0.0) {
+                product *= (values[i] - flows[i]) / previous;
+            }
+            growth[i] = product;
+        }
+        return new ReturnSeries(ownDays, growth);
+    }
+
+    public boolean isEmpty() {
+        return days.length == 0;
+    }
+
+    public int firstDay() {
+        return days[0];
+    }
+
+    public int latestDay() {
+        return days[days.length - 1];
+    }
+
+    /**
+     * Time-weighted return from the end of the given day (or the last valuation day before it)
+     * to the latest day, as a fraction; NaN when the series starts after that day.
+     */
+    public double returnSince(int day) {
+        if (days.length == 0 || day < days[0]) {
+            return Double.NaN;
+        }
+        return growth[growth.length - 1] / growth[indexOnOrBefore(day)] - 1.0;
+    }
+
+    /**
+     * Time-weighted return over the whole series, as a fraction.
+     */
+    public double returnSinceInception() {
+        return days.length == 0 ? Double.NaN : growth[growth.length - 1] - 1.0;
+    }
+
+    /**
+     * Compounded yearly rate equivalent to a return earned over the given number of days.
+     */
+    public static double annualize(double totalReturn, int days) {
+        if (Double.isNaN(totalReturn) || days <= 0) {
+            return Double.NaN;
+        }
+        return Math.pow(1.0 + totalReturn, 365.0 / days) - 1.0;
+    }
+
+    private int indexOnOrBefore(int day) {
+        int left = 0;
+        int right = days.length - 1;
+        while (left < right) {
+            int mid = (left + right + 1) >>> 1;
+            if (days[mid] <= day) {
+                left = mid;
+            } else {
+                right = mid - 1;
+            }
+        }
+        return left;
+    }
+}
@@ -0,0 +1,140 @@
+package com.stonks.util;
+
+import java.util.Arrays;
+
+/**
+ * CAGR over a fixed window starting on every NAV date of a scheme, e.g. the 3-year return from each
+ * day that has three years of history after it.
+ * <p>
+ * The window end only moves forward as the start does, so all windows come from one two-pointer
+ * pass over the NAV arrays instead of a lookup per start date. The returns are kept sorted, which
+ * makes any percentile an array read.
+ */
+public final class RollingReturnDistribution {
+
+    private final double[] sorted;
+    private final double mean;
+    private final int firstStartDay;
+    private final int lastStartDay;
+    private final int benchmarkPeriods;
+    private final int beatingPeriods;
+
+    private RollingReturnDistribution(double[] sorted, double mean, int firstStartDay, int lastStartDay,
+                                      int benchmarkPeriods, int beatingPeriods) {
+        this.sorted = sorted;
+        this.mean = mean;
+        this.firstStartDay = firstStartDay;
+        this.lastStartDay = lastStartDay;
+        this.benchmarkPeriods = benchmarkPeriods;
+        this.beatingPeriods = beatingPeriods;
+    }
+
+    /**
+     * Windows of the given months over the fund. A window ends on the first NAV on or after the
+     * same date that many months later. The benchmark (may be empty) is priced on or after the
+     * window's own start and end days, and only when its history covers the start.
+     */
+    public static RollingReturnDistribution of(NavSeries fund, NavSeries benchmark, int months) {
+        double[] returns = new double[fund.size()];
+        int count = 0;
+        double sum = 0.0;
+        int firstStartDay = -1;
+        int lastStartDay = -1;
+        int benchmarkPeriods = 0;
+        int beatingPeriods = 0;
+        NavSeries.Cursor benchmarkStart = benchmark.cursor();
+        NavSeries.Cursor benchmarkEnd = benchmark.cursor();
+        boolean hasBenchmark = !benchmark.isEmpty();
+
+        int end = 0;
+        for (int start = 0; start < fund.size(); start++) {
+            int startDay = fund.dayAt(start);
+            int target = IstDate.plusMonths(startDay, months);
+            while (end < fund.size() && fund.dayAt(end) < target) {
+                end++;
+            }
+            if (end == fund.size()) {
+                // Later starts only end later, so no full window is left.
+                break;
+            }
+            double startNav = fund.navAt(start);
+            if (startNav <= 0.0) {
+                continue;
+            }
+            int endDay = fund.dayAt(end);
+            double years = (endDay - startDay) / 365.0;
+            double cagr = Math.pow(fund.navAt(end) / startNav, 1.0 / years) - 1.0;
+            returns[count++] = cagr;
+            sum += cagr;
+            if (firstStartDay < 0) {
+                firstStartDay = startDay;
+            }
+            lastStartDay = startDay;
+
+            if (hasBenchmark && benchmark.firstDay() <= startDay) {
+                double from = benchmarkStart.navOnOrAfter(startDay);
+                double to = benchmarkEnd.navOnOrAfter(endDay);
+                if (from > 0.0 && !Double.isNaN(to)) {
+                    benchmarkPeriods++;
+                    if (cagr > Math.pow(to / from, 1.0 / years) - 1.0) {
+                        beatingPeriods++;
+                    }
+                }
+            }
+        }
+
+        double[] sorted = Arrays.copyOf(returns, count);
+        Arrays.sort(sorted);
+        return new RollingReturnDistribution(sorted, count == 0 ? Double.NaN : sum / count,
+                firstStartDay, lastStartDay, benchmarkPeriods, beatingPeriods);
+    }
+
+    public int getCount() {
+        return sorted.length;
+    }
+
+    public boolean isEmpty() {
+        return sorted.length == 0;
+    }
+
+    public double getMin() {
+        return isEmpty() ? Double.NaN : sorted[0];
+    }
+
+    public double getMax() {
+        return isEmpty() ? Double.NaN : sorted[sorted.length - 1];
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Percentile (0-100) with linear interpolation between closest ranks.
+     */
+    public double percentile(double p) {
+        if (isEmpty()) {
+            return Double.NaN;
+        }
+        double rank = (p / 100.0) * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = Math.min(lower + 1, sorted.length - 1);
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    public int getFirstStartDay() {
+        return firstStartDay;
+    }
+
+    public int getLastStartDay() {
+        return lastStartDay;
+    }
+
+    public int getBenchmarkPeriods() {
+        return benchmarkPeriods;
+    }
+
+    public int getBeatingPeriods() {
+        return beatingPeriods;
+    }
+}
@@ -0,0 +1,283 @@
+package com.stonks.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Streaming reader for CAMS/KFintech style transaction CSV exports.
+ * <p>
+ * Rows are read one at a time, so memory stays bounded by the longest line regardless of file
+ * size. A quoted field may span lines, but only up to {@link #MAX_RECORD_LINES} lines and
+ * {@link #MAX_RECORD_CHARS} characters: past either, or at end of input, the quote is taken to be
+ * unbalanced, that row alone is returned as failed and reading resumes on the line after it.
+ * Statements often carry a preamble (investor details, folio summary) before the table; lines are
+ * skipped until one maps the scheme code, date and transaction type columns.
+ */
+public class StatementCsvReader implements Closeable {
+
+    // Normalized header (lowercase, alphanumerics only) -> column slot and preference. Slots are
+    // schemeCode, fundName, date, type, amount, units; aliases are listed most specific first, so
+    // "NAV Date" or "Value" are only read when the statement has no transaction date or amount.
+    private static final Map<String, Alias> HEADER_ALIASES = new HashMap<>();
+
+    static {
+        alias(0, "schemecode", "amficode", "amfischemecode", "fundid", "code");
+        alias(1, "schemename", "fundname", "schemedescription", "scheme");
+        alias(2, "transactiondate", "date", "tradedate", "txndate", "navdate");
+        alias(3, "transactiontype", "txntype", "type", "transactiondescription", "description");
+        alias(4, "amount", "amountinr", "amountrs", "transactionamount", "value");
+        alias(5, "units", "unitsallotted", "unitsredeemed", "quantity");
+    }
+
+    private record Alias(int slot, int preference) {
+    }
+
+    private static final int MAX_PREAMBLE_LINES = 200;
+    static final int MAX_RECORD_LINES = 20;
+    static final int MAX_RECORD_CHARS = 8192;
+
+    private final CountingInputStream counter;
+    private final BufferedReader reader;
+    // Lines read past an abandoned record, to be read again in order
+    private final Deque<String> pushedBack = new ArrayDeque<>();
+    private int lineNumber;
+    private int[] columns;
+    // Why the last record read was abandoned, or null
+    private String malformed;
+
+    public StatementCsvReader(InputStream input) {
+        this.counter = new CountingInputStream(input);
+        this.reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Next data row, or null once the input is exhausted. A row whose quoted field never closes
+     * comes back with only its line number and {@code error} set.
+     *
+     * @throws IllegalArgumentException if no recognizable header row is found
+     */
+    public StatementRow next() throws IOException {
+        if (columns == null) {
+            readHeader();
+        }
+        List<String> fields;
+        do {
+            fields = readRecord();
+            if (fields == null) {
+                return null;
+            }
+            if (malformed != null) {
+                return new StatementRow(lineNumber, null, null, null, null, null, null, malformed);
+            }
+        } while (isBlank(fields));
+
+        return new StatementRow(lineNumber,
+                field(fields, 0), field(fields, 1), field(fields, 2),
+                field(fields, 3), field(fields, 4), field(fields, 5), null);
+    }
+
+    public long getBytesRead() {
+        return counter.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readHeader() throws IOException {
+        for (int i = 0; i < MAX_PREAMBLE_LINES; i++) {
+            List<String> fields = readRecord();
+            if (fields == null) {
+                break;
+            }
+            int[] mapped = mapHeader(fields);
+            if (mapped != null) {
+                columns = mapped;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No header row with scheme code, date and transaction type columns found");
+    }
+
+    // Column index per role in the order schemeCode, fundName, date, type, amount, units; -1 if absent.
+    private static int[] mapHeader(List<String> fields) {
+        int[] mapped = {-1, -1, -1, -1, -1, -1};
+        int[] preference = new int[mapped.length];
+        for (int i = 0; i < fields.size(); i++) {
+            Alias alias = HEADER_ALIASES.get(normalize(fields.get(i)));
+            if (alias == null) {
+                continue;
+            }
+            if (mapped[alias.slot()] == -1 || alias.preference() < preference[alias.slot()]) {
+                mapped[alias.slot()] = i;
+                preference[alias.slot()] = alias.preference();
+            }
+        }
+        return mapped[0] >= 0 && mapped[2] >= 0 && mapped[3] >= 0 ? mapped : null;
+    }
+
+    private String field(List<String> fields, int slot) {
+        int index = columns[slot];
+        if (index < 0 || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // One CSV record; quoted fields may contain commas, doubled quotes and line breaks. A record
+    // whose quote is still open past the caps or at end of input is abandoned: malformed is set,
+    // the lines after its first are pushed back and an empty record is returned.
+    private List<String> readRecord() throws IOException {
+        malformed = null;
+        String line = readLine();
+        if (line == null) {
+            return null;
+        }
+        lineNumber++;
+        int startLine = lineNumber;
+        List<String> continuation = new ArrayList<>();
+        int chars = line.length();
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            current.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            if (!quoted) {
+                break;
+            }
+            if (continuation.size() + 1 >= MAX_RECORD_LINES || chars > MAX_RECORD_CHARS) {
+                return abandon(startLine, continuation, "Unbalanced quote: record runs past " + MAX_RECORD_LINES + " lines or " + MAX_RECORD_CHARS + " characters");
+            }
+            line = readLine();
+            if (line == null) {
+                return abandon(startLine, continuation, "Unbalanced quote: record runs to the end of the file");
+            }
+            continuation.add(line);
+            chars += line.length() + 1;
+            lineNumber++;
+            current.append('\n');
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private List<String> abandon(int startLine, List<String> continuation, String reason) {
+        for (int i = continuation.size() - 1; i >= 0; i--) {
+            pushedBack.addFirst(continuation.get(i));
+        }
+        lineNumber = startLine;
+        malformed = reason;
+        return List.of();
+    }
+
+    private String readLine() throws IOException {
+        String line = pushedBack.pollFirst();
+        return line != null ? line : reader.readLine();
+    }
+
+    private static boolean isBlank(List<String> fields) {
+        for (String field : fields) {
+            if (!field.isBlank()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String header) {
+        StringBuilder out = new StringBuilder(header.length());
+        for (int i = 0; i < header.length(); i++) {
+            char c = Character.toLowerCase(header.charAt(i));
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void alias(int slot, String... names) {
+        for (int i = 0; i < names.length; i++) {
+            HEADER_ALIASES.put(names[i], new Alias(slot, i));
+        }
+    }
+
+    /**
+     * Raw column values of one data row; any of them may be null when the column is missing or empty.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class StatementRow {
+        private int lineNumber;
+        private String schemeCode;
+        private String fundName;
+        private String date;
+        private String transactionType;
+        private String amount;
+        private String units;
+        // Set instead of the values when the row could not be parsed
+        private String error;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -1,74 +1,200 @@
 package com.stonks.util;
 
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 public class XirrUtils {
 
-    private static final double EPSILON = 1e-7;  // accuracy threshold
-    private static final int MAX_ITER = 1000;    // max Newton-Raphson iterations
+    private static final double EPSILON = 1e-10;      // relative accuracy of the rate
+    private static final int MAX_NEWTON_ITER = 50;    // Newton-Raphson iterations before bracketing
+    private static final int MAX_BRENT_ITER = 200;    // Brent iterations inside a bracket
+    private static final double DEFAULT_GUESS = 0.10;
+    // Rates probed for a sign change when Newton does not converge, from near -100% upwards.
+    private static final double[] BRACKET_GRID = {-0.9999, -0.999, -0.99, -0.95, -0.9, -0.75, -0.5, -0.25, -0.1, 0.0,
+            0.05, 0.1, 0.2, 0.35, 0.5, 0.75, 1.0, 2.0, 5.0, 10.0, 100.0, 1_000.0, 10_000.0};
 
     /**
      * Calculates XIRR (annualized IRR) given cash flows and corresponding dates in epoch seconds.
      *
      * @param cashFlows list of cash flows (negative for investments, positive for returns)
      * @param epochSeconds list of corresponding dates in epoch seconds (beginning of the day)
-     * @return XIRR as a decimal (e.g., 0.12 = 12%)
+     * @return XIRR as a decimal (e.g., 0.12 = 12%), or NaN when the cash flows have no rate
      */
     public static double calculateXIRR(List<Double> cashFlows, List<Long> epochSeconds) {
         if (cashFlows == null || epochSeconds == null || cashFlows.size() != epochSeconds.size()) {
             throw new IllegalArgumentException("Cashflows and epochSeconds must be non-null and of same size");
         }
 
-        // Convert epoch seconds to LocalDate list (in system's default zone or UTC)
-        List<LocalDate> dates = epochSeconds.stream()
-                .map(epoch -> Instant.ofEpochSecond(epoch).atZone(ZoneId.of("Asia/Kolkata")).toLocalDate())
-                .toList();
+        int count = cashFlows.size();
+        double[] amounts = new double[count];
+        int[] days = new int[count];
+        for (int i = 0; i < count; i++) {
+            amounts[i] = cashFlows.get(i);
+            days[i] = IstDate.fromEpochSecond(epochSeconds.get(i));
+        }
+        return solve(amounts, days, count, DEFAULT_GUESS);
+    }
 
-        // Initial guess for rate (10%)
-        double rate = 0.10;
+    /**
+     * Rate r at which the first count cash flows, dated in IST epoch days, have zero net present
+     * value: sum(amounts[i] / (1 + r)^((days[i] - days[0]) / 365)) = 0.
+     * <p>
+     * Year fractions are computed once. Newton's method starts from the guess (pass a neighbouring
+     * result to warm-start a series of related solves) and evaluates the NPV and its derivative in
+     * one loop with a single exp per flow. When Newton leaves the domain, stalls or does not
+     * converge, the root is bracketed on a fixed grid of rates and found with Brent's method.
+     *
+     * @return the rate as a decimal, or NaN when the flows do not change sign or no root is found
+     */
+    public static double solve(double[] amounts, int[] days, int count, double guess) {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        boolean positive = false;
+        boolean negative = false;
+        double[] years = new double[count];
+        for (int i = 0; i < count; i++) {
+            years[i] = (days[i] - days[0]) / 365.0;
+            positive |= amounts[i] > 0;
+            negative |= amounts[i] < 0;
+        }
+        if (!positive || !negative) {
+            return Double.NaN;
+        }
 
-        for (int i = 0; i < MAX_ITER; i++) {
-            double fValue = f(rate, cashFlows, dates);
-            double fDerivative = fDerivative(rate, cashFlows, dates);
+        double rate = Double.isFinite(guess) && guess > -1.0 ? guess : DEFAULT_GUESS;
+        double newton = newton(amounts, years, count, rate);
+        if (!Double.isNaN(newton)) {
+            return newton;
+        }
+        return bracketAndBrent(amounts, years, count, rate);
+    }
 
-            if (Math.abs(fDerivative) < EPSILON) {
-                break;  // Avoid division by zero
+    private static double newton(double[] amounts, double[] years, int count, double rate) {
+        double[] fd = new double[2];
+        for (int iter = 0; iter < MAX_NEWTON_ITER; iter++) {
+            npv(amounts, years, count, rate, fd);
+            if (fd[1] == 0.0 || !Double.isFinite(fd[0]) || !Double.isFinite(fd[1])) {
+                return Double.NaN;
             }
-
-            double newRate = rate - fValue / fDerivative;
-
-            if (Math.abs(newRate - rate) <= EPSILON) {
+            double newRate = rate - fd[0] / fd[1];
+            if (!Double.isFinite(newRate) || newRate <= -1.0) {
+                return Double.NaN;
+            }
+            if (Math.abs(newRate - rate) <= EPSILON * (1.0 + Math.abs(rate))) {
                 return newRate;
             }
-
             rate = newRate;
         }
+        return Double.NaN;
+    }
 
-        return rate;
+    // Nearest sign change to the guess on the grid, narrowed with Brent's method.
+    private static double bracketAndBrent(double[] amounts, double[] years, int count, double guess) {
+        double[] fd = new double[2];
+        double[] values = new double[BRACKET_GRID.length];
+        for (int g = 0; g < BRACKET_GRID.length; g++) {
+            npv(amounts, years, count, BRACKET_GRID[g], fd);
+            values[g] = fd[0];
+        }
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int g = 0; g + 1 < BRACKET_GRID.length; g++) {
+            if (!Double.isFinite(values[g]) || !Double.isFinite(values[g + 1])) {
+                continue;
+            }
+            if (values[g] == 0.0) {
+                return BRACKET_GRID[g];
+            }
+            if ((values[g] < 0) != (values[g + 1] < 0)) {
+                double distance = Math.abs(0.5 * (BRACKET_GRID[g] + BRACKET_GRID[g + 1]) - guess);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = g;
+                }
+            }
+        }
+        if (best < 0) {
+            return Double.NaN;
+        }
+        return brent(amounts, years, count, BRACKET_GRID[best], BRACKET_GRID[best + 1], values[best], values[best + 1]);
     }
 
-    private static double f(double rate, List<Double> cashFlows, List<LocalDate> dates) {
-        double result = 0.0;
-        LocalDate baseDate = dates.get(0);
-        for (int i = 0; i < cashFlows.size(); i++) {
-            long days = ChronoUnit.DAYS.between(baseDate, dates.get(i));
-            result += cashFlows.get(i) / Math.pow(1.0 + rate, days / 365.0);
+    private static double brent(double[] amounts, double[] years, int count, double a, double b, double fa, double fb) {
+        double[] fd = new double[2];
+        double c = b;
+        double fc = fb;
+        double d = 0.0;
+        double e = 0.0;
+        for (int iter = 0; iter < MAX_BRENT_ITER; iter++) {
+            if ((fb > 0) == (fc > 0)) {
+                c = a;
+                fc = fa;
+                d = b - a;
+                e = d;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) {
+                a = b;
+                b = c;
+                c = a;
+                fa = fb;
+                fb = fc;
+                fc = fa;
+            }
+            double tolerance = 2.0 * Math.ulp(b) + 0.5 * EPSILON * (1.0 + Math.abs(b));
+            double mid = 0.5 * (c - b);
+            if (Math.abs(mid) <= tolerance || fb == 0.0) {
+                return b;
+            }
+            if (Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb)) {
+                // Inverse quadratic interpolation, or secant when only two points are distinct
+                double s = fb / fa;
+                double p;
+                double q;
+                if (a == c) {
+                    p = 2.0 * mid * s;
+                    q = 1.0 - s;
+                } else {
+                    double r = fb / fc;
+                    q = fa / fc;
+                    p = s * (2.0 * mid * q * (q - r) - (b - a) * (r - 1.0));
+                    q = (q - 1.0) * (r - 1.0) * (s - 1.0);
+                }
+                if (p > 0) {
+                    q = -q;
+                } else {
+                    p = -p;
+                }
+                if (2.0 * p < Math.min(3.0 * mid * q - Math.abs(tolerance * q), Math.abs(e * q))) {
+                    e = d;
+                    d = p / q;
+                } else {
+                    d = mid;
+                    e = d;
+                }
+            } else {
+                d = mid;
+                e = d;
+            }
+            a = b;
+            fa = fb;
+            b += Math.abs(d) > tolerance ? d : Math.copySign(tolerance, mid);
+            npv(amounts, years, count, b, fd);
+            fb = fd[0];
         }
-        return result;
+        return b;
     }
 
-    private static double fDerivative(double rate, List<Double> cashFlows, List<LocalDate> dates) {
-        double result = 0.0;
-        LocalDate baseDate = dates.get(0);
-        for (int i = 0; i < cashFlows.size(); i++) {
-            long days = ChronoUnit.DAYS.between(baseDate, dates.get(i));
-            double fraction = days / 365.0;
-            result += -cashFlows.get(i) * fraction / Math.pow(1.0 + rate, fraction + 1.0);
+    // NPV into fd[0] and its derivative into fd[1]: (1 + r)^-t is exp(-t * log1p(r)).
+    private static void npv(double[] amounts, double[] years, int count, double rate, double[] fd) {
+        double logGrowth = Math.log1p(rate);
+        double value = 0.0;
+        double derivative = 0.0;
+        for (int i = 0; i < count; i++) {
+            double discounted = amounts[i] * Math.exp(-years[i] * logGrowth);
+            value += discounted;
+            derivative -= years[i] * discounted;
         }
-        return result;
+        fd[0] = value;
+        fd[1] = derivative / (1.0 + rate);
     }
 }
@@ -0,0 +1,262 @@
+package com.stonks.service.impl;
+
+import com.stonks.dto.HistoricDataDTO;
+import com.stonks.dto.MFAPIDTOs.MutualFundNavDTO;
+import com.stonks.model.Transaction;
+import com.stonks.util.IstDate;
+import com.stonks.util.MonthEndNavTable;
+import com.stonks.util.NavSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerformanceChartEngineTest {
+
+    private static final int FUND = 1;
+    private static final int BENCHMARK = 2;
+    private static final int NIFTY_50 = 3;
+    private static final int NIFTY_100 = 4;
+
+    // NAVs end mid-month so the open month and the months after it use the latest-NAV fallback.
+    private static final int FIRST_NAV_DAY = IstDate.of(2014, 1, 1);
+    private static final int LAST_NAV_DAY = IstDate.of(2024, 6, 12);
+    private static final int LAST_MONTH = IstDate.monthIndex(IstDate.of(2024, 8, 1));
+
+    private final Map<Integer, List<MutualFundNavDTO>> histories = new HashMap<>();
+    private final Map<Integer, Double> latestNavs = new HashMap<>();
+
+    PerformanceChartEngineTest() {
+        Random random = new Random(7);
+        for (int schemeCode = FUND; schemeCode <= NIFTY_100; schemeCode++) {
+            histories.put(schemeCode, history(random, 10.0 + 40.0 * random.nextDouble()));
+            // Deliberately not the last NAV in the history, so a wrong fallback shows up.
+            latestNavs.put(schemeCode, Double.parseDouble(histories.get(schemeCode).get(0).getNav()) * 1.01);
+        }
+    }
+
+    @Test
+    void matchesTheMonthlyAlgorithmItReplaced() {
+        List<Transaction> transactions = sipWithSells(new Random(11));
+        List<HistoricDataDTO> expected = previousMonthlyChart(transactions, true);
+        List<HistoricDataDTO> actual = engine(true).build(transactions, LAST_MONTH);
+        assertCharts(expected, actual);
+    }
+
+    @Test
+    void matchesTheMonthlyAlgorithmWithoutABenchmark() {
+        List<Transaction> transactions = sipWithSells(new Random(13));
+        List<HistoricDataDTO> expected = previousMonthlyChart(transactions, false);
+        List<HistoricDataDTO> actual = engine(false).build(transactions, LAST_MONTH);
+        assertCharts(expected, actual);
+    }
+
+    @Test
+    void resumingFromTheCheckpointMatchesAFullBuild() {
+        List<Transaction> transactions = sipWithSells(new Random(17));
+        PerformanceChartEngine engine = engine(true);
+        PerformanceChartEngine.Result first = engine.run(transactions, LAST_MONTH);
+        assertNotNull(first.checkpoint());
+        assertTrue(first.checkpoint().pointCount() < first.points().size());
+
+        PerformanceChartEngine.Result resumed = engine.resume(transactions, first.points(), first.checkpoint(), LAST_MONTH);
+        assertCharts(engine.build(transactions, LAST_MONTH), resumed.points());
+    }
+
+    @Test
+    void noTransactionsGiveAnEmptyChart() {
+        assertTrue(engine(true).build(List.of(), LAST_MONTH).isEmpty());
+    }
+
+    private PerformanceChartEngine engine(boolean withBenchmark) {
+        Map<String, MonthEndNavTable> comparisons = new LinkedHashMap<>();
+        if (withBenchmark) {
+            comparisons.put("Benchmark", table(BENCHMARK));
+        }
+        comparisons.put("Nifty 50", table(NIFTY_50));
+        comparisons.put("Nifty 100", table(NIFTY_100));
+        return new PerformanceChartEngine(table(FUND), comparisons, withBenchmark ? "Benchmark" : null, latestNavs::get);
+    }
+
+    private MonthEndNavTable table(int schemeCode) {
+        return MonthEndNavTable.of(NavSeries.of(schemeCode, histories.get(schemeCode)));
+    }
+
+    // getPerformanceChart before the merge-walk: step month by month, looking every NAV up in the
+    // raw MFAPI list and falling back to the latest NAV past its end.
+    private List<HistoricDataDTO> previousMonthlyChart(List<Transaction> transactions, boolean withBenchmark) {
+        List<HistoricDataDTO> historicDataList = new ArrayList<>();
+        double totalUnits = 0.0;
+        double totalBenchmarkUnits = 0.0;
+        double totalNifty50Units = 0.0;
+        double totalNifty100Units = 0.0;
+        double totalProfit;
+        double totalInvested = 0.0;
+        double totalInvestmentSold = 0.0;
+
+        int currentMonth = IstDate.monthIndex(IstDate.fromEpochSecond(transactions.get(0).getDate()));
+        int txIndex = 0;
+        while (currentMonth <= LAST_MONTH) {
+            while (txIndex < transactions.size() && IstDate.monthIndex(IstDate.fromEpochSecond(transactions.get(txIndex).getDate())) == currentMonth) {
+                Transaction tx = transactions.get(txIndex);
+                if ("BUY".equalsIgnoreCase(tx.getTransactionType())) {
+                    totalUnits += tx.getUnits();
+                    totalInvested += tx.getAmount();
+                    if (withBenchmark) {
+                        totalBenchmarkUnits += tx.getAmount() / nav(BENCHMARK, tx.getDate());
+                    }
+                    totalNifty50Units += tx.getAmount() / nav(NIFTY_50, tx.getDate());
+                    totalNifty100Units += tx.getAmount() / nav(NIFTY_100, tx.getDate());
+                } else {
+                    totalUnits -= tx.getUnits();
+                    totalInvested -= tx.getAmount() - tx.getBookedProfit();
+                    if (withBenchmark) {
+                        totalBenchmarkUnits -= tx.getAmount() / nav(BENCHMARK, tx.getDate());
+                    }
+                    totalNifty50Units -= tx.getAmount() / nav(NIFTY_50, tx.getDate());
+                    totalNifty100Units -= tx.getAmount() / nav(NIFTY_100, tx.getDate());
+                    totalInvestmentSold += tx.getAmount() - tx.getBookedProfit();
+                }
+                txIndex++;
+            }
+
+            long endOfMonth = IstDate.toEpochSecond(IstDate.monthEnd(currentMonth));
+            double totalValue = nav(FUND, endOfMonth) * totalUnits;
+            totalProfit = totalValue - totalInvested;
+
+            HistoricDataDTO data = new HistoricDataDTO();
+            data.setMonth(IstDate.monthLabel(currentMonth));
+            data.setTotalValue(totalValue);
+            data.setTotalProfit(totalProfit);
+            data.setTotalInvested(totalInvested);
+            data.setTotalValueBenchmark(withBenchmark ? totalBenchmarkUnits * nav(BENCHMARK, endOfMonth) : totalValue);
+            Map<String, Double> comparison = new LinkedHashMap<>();
+            if (withBenchmark) {
+                comparison.put("Benchmark", data.getTotalValueBenchmark());
+            }
+            comparison.put("Nifty 50", totalNifty50Units * nav(NIFTY_50, endOfMonth));
+            comparison.put("Nifty 100", totalNifty100Units * nav(NIFTY_100, endOfMonth));
+            data.setComparison(comparison);
+
+            if (historicDataList.isEmpty()) {
+                data.setThisMonthProfit(totalProfit);
+                data.setThisMonthInvested(totalInvested);
+                data.setGrowthPercent(totalInvested == 0 ? 0.0 : (totalProfit / totalInvested) * 100.0);
+            } else {
+                HistoricDataDTO prev = historicDataList.getLast();
+                data.setThisMonthProfit(totalProfit - prev.getTotalProfit());
+                data.setThisMonthInvested(totalInvested - prev.getTotalInvested() + totalInvestmentSold);
+                data.setGrowthPercent(prev.getTotalInvested() == 0 ? 0.0 : (data.getThisMonthProfit() / prev.getTotalInvested()) * 100.0);
+            }
+            data.setAlphaPercent(((data.getTotalValue() - data.getTotalValueBenchmark()) * 100) / data.getTotalValueBenchmark());
+            historicDataList.add(data);
+            totalInvestmentSold = 0.0;
+            currentMonth++;
+        }
+        return historicDataList;
+    }
+
+    // getNAVFromNAVList: the oldest NAV dated on or after the day, else the scheme's latest NAV.
+    private double nav(int schemeCode, long epochSeconds) {
+        int day = IstDate.fromEpochSecond(epochSeconds);
+        List<MutualFundNavDTO> newestFirst = histories.get(schemeCode);
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            if (IstDate.parse(newestFirst.get(i).getDate()) >= day) {
+                return Double.parseDouble(newestFirst.get(i).getNav());
+            }
+        }
+        return latestNavs.get(schemeCode);
+    }
+
+    // Weekday NAVs as a random walk, newest first like MFAPI.
+    private static List<MutualFundNavDTO> history(Random random, double start) {
+        List<MutualFundNavDTO> ascending = new ArrayList<>();
+        double nav = start;
+        for (int day = FIRST_NAV_DAY; day <= LAST_NAV_DAY; day++) {
+            // Epoch day 0 was a Thursday; skip Saturdays and Sundays.
+            int weekday = Math.floorMod(day + 3, 7);
+            if (weekday >= 5) {
+                continue;
+            }
+            nav *= 1.0 + 0.0004 + 0.01 * random.nextGaussian();
+            ascending.add(new MutualFundNavDTO(IstDate.format(day), String.format(Locale.ROOT, "%.4f", nav)));
+        }
+        return ascending.reversed();
+    }
+
+    // A monthly SIP on the 5th (some on weekends) from 2015 with a partial SELL every ninth month.
+    private List<Transaction> sipWithSells(Random random) {
+        List<Transaction> transactions = new ArrayList<>();
+        double units = 0.0;
+        double cost = 0.0;
+        int first = IstDate.of(2015, 3, 5);
+        for (int m = 0; ; m++) {
+            int day = IstDate.plusMonths(first, m);
+            if (day > IstDate.of(2024, 7, 20)) {
+                break;
+            }
+            double amount = 1000 + random.nextInt(9000);
+            double price = nav(FUND, IstDate.toEpochSecond(day));
+            transactions.add(transaction("BUY", day, amount, amount / price, null));
+            units += amount / price;
+            cost += amount;
+
+            if (m % 9 == 8) {
+                int sellDay = day + 10;
+                double sellUnits = units * 0.3;
+                double sellAmount = sellUnits * nav(FUND, IstDate.toEpochSecond(sellDay));
+                double costSold = cost * 0.3;
+                transactions.add(transaction("SELL", sellDay, sellAmount, sellUnits, sellAmount - costSold));
+                units -= sellUnits;
+                cost -= costSold;
+            }
+        }
+        return transactions;
+    }
+
+    private static Transaction transaction(String type, int day, double amount, double units, Double bookedProfit) {
+        Transaction tx = new Transaction();
+        tx.setFundId(FUND);
+        tx.setTransactionType(type);
+        // Mid-morning IST, so the epoch-second to IST-day conversion matters.
+        tx.setDate(IstDate.toEpochSecond(day) + 10 * 3600);
+        tx.setAmount(amount);
+        tx.setUnits(units);
+        tx.setBookedProfit(bookedProfit);
+        return tx;
+    }
+
+    private static void assertCharts(List<HistoricDataDTO> expected, List<HistoricDataDTO> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            HistoricDataDTO e = expected.get(i);
+            HistoricDataDTO a = actual.get(i);
+            assertEquals(e.getMonth(), a.getMonth());
+            assertClose(e.getTotalValue(), a.getTotalValue());
+            assertClose(e.getTotalProfit(), a.getTotalProfit());
+            assertClose(e.getTotalInvested(), a.getTotalInvested());
+            assertClose(e.getTotalValueBenchmark(), a.getTotalValueBenchmark());
+            assertClose(e.getThisMonthProfit(), a.getThisMonthProfit());
+            assertClose(e.getThisMonthInvested(), a.getThisMonthInvested());
+            assertClose(e.getGrowthPercent(), a.getGrowthPercent());
+            assertClose(e.getAlphaPercent(), a.getAlphaPercent());
+            assertEquals(e.getComparison().keySet(), a.getComparison().keySet());
+            for (String name : e.getComparison().keySet()) {
+                assertClose(e.getComparison().get(name), a.getComparison().get(name));
+            }
+        }
+    }
+
+    private static void assertClose(Double expected, Double actual) {
+        assertEquals(expected, actual, 1e-9 * Math.max(1.0, Math.abs(expected)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.stonks.util;
+
+import com.stonks.dto.HistoricDataDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartDownsamplerTest {
+
+    @Test
+    void shortChartsAreReturnedAsIs() {
+        List<HistoricDataDTO> rows = rows(10);
+        assertSame(rows, ChartDownsampler.downsample(rows, 10));
+        assertSame(rows, ChartDownsampler.downsample(rows, 2));
+    }
+
+    @Test
+    void keepsTheEndPoints() {
+        List<HistoricDataDTO> rows = rows(500);
+        List<HistoricDataDTO> sampled = ChartDownsampler.downsample(rows, 40);
+        assertEquals(40, sampled.size());
+        assertSame(rows.get(0), sampled.get(0));
+        assertEquals(rows.get(499).getMonth(), sampled.get(39).getMonth());
+        assertEquals(rows.get(499).getTotalValue(), sampled.get(39).getTotalValue());
+    }
+
+    @Test
+    void keepsTheExtremes() {
+        List<HistoricDataDTO> rows = rows(500);
+        rows.get(200).setTotalValue(1_000_000.0);
+        rows.get(350).setTotalValue(-1_000_000.0);
+        List<HistoricDataDTO> sampled = ChartDownsampler.downsample(rows, 40);
+        assertTrue(sampled.stream().anyMatch(row -> row.getMonth().equals(rows.get(200).getMonth())));
+        assertTrue(sampled.stream().anyMatch(row -> row.getMonth().equals(rows.get(350).getMonth())));
+    }
+
+    @Test
+    void periodFieldsAreResummedOverDroppedPoints() {
+        List<HistoricDataDTO> rows = rows(500);
+        List<HistoricDataDTO> sampled = ChartDownsampler.downsample(rows, 40);
+
+        // Each kept point covers the rows since the previous kept point, so the sums are unchanged.
+        double profit = 0.0;
+        double invested = 0.0;
+        for (HistoricDataDTO row : rows) {
+            profit += row.getThisMonthProfit();
+            invested += row.getThisMonthInvested();
+        }
+        double sampledProfit = 0.0;
+        double sampledInvested = 0.0;
+        for (HistoricDataDTO row : sampled) {
+            sampledProfit += row.getThisMonthProfit();
+            sampledInvested += row.getThisMonthInvested();
+        }
+        assertEquals(profit, sampledProfit, 1e-6);
+        assertEquals(invested, sampledInvested, 1e-6);
+
+        int previous = 0;
+        for (int k = 1; k < sampled.size(); k++) {
+            int index = indexOf(rows, sampled.get(k).getMonth());
+            double expected = 0.0;
+            for (int i = previous + 1; i <= index; i++) {
+                expected += rows.get(i).getThisMonthInvested();
+            }
+            assertEquals(expected, sampled.get(k).getThisMonthInvested(), 1e-9);
+            previous = index;
+        }
+    }
+
+    @Test
+    void inputRowsAreNotModified() {
+        List<HistoricDataDTO> rows = rows(300);
+        List<Double> invested = rows.stream().map(HistoricDataDTO::getThisMonthInvested).toList();
+        ChartDownsampler.downsample(rows, 20);
+        assertEquals(invested, rows.stream().map(HistoricDataDTO::getThisMonthInvested).toList());
+    }
+
+    // A SIP-like chart: 1000 a month with a wave in the value.
+    private static List<HistoricDataDTO> rows(int n) {
+        List<HistoricDataDTO> rows = new ArrayList<>(n);
+        double previousProfit = 0.0;
+        for (int i = 0; i < n; i++) {
+            double invested = 1000.0 * (i + 1);
+            double value = invested * (1.0 + 0.2 * Math.sin(i / 7.0));
+            HistoricDataDTO row = new HistoricDataDTO();
+            row.setMonth("m" + i);
+            row.setTotalInvested(invested);
+            row.setTotalValue(value);
+            row.setTotalProfit(value - invested);
+            row.setThisMonthInvested(1000.0);
+            row.setThisMonthProfit(value - invested - previousProfit);
+            previousProfit = value - invested;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static int indexOf(List<HistoricDataDTO> rows, String month) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getMonth().equals(month)) {
+                return i;
+            }
+        }
+        throw new AssertionError("No row for " + month);
+    }
+}
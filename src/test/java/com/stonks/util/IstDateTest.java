@@ -0,0 +1,98 @@
+package com.stonks.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IstDateTest {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+    private static final DateTimeFormatter DD_MM_YYYY = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static final int FIRST_DAY = (int) LocalDate.of(1900, 1, 1).toEpochDay();
+    private static final int LAST_DAY = (int) LocalDate.of(2200, 12, 31).toEpochDay();
+
+    @Test
+    void fieldsAndFormattingMatchLocalDate() {
+        for (int day = FIRST_DAY; day <= LAST_DAY; day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            assertEquals(day, IstDate.of(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+            assertEquals(date.getYear(), IstDate.year(day));
+            assertEquals(date.getMonthValue(), IstDate.month(day));
+            assertEquals(date.getDayOfMonth(), IstDate.dayOfMonth(day));
+            String formatted = date.format(DD_MM_YYYY);
+            assertEquals(formatted, IstDate.format(day));
+            assertEquals(day, IstDate.parse(formatted));
+        }
+    }
+
+    @Test
+    void monthArithmeticMatchesLocalDate() {
+        for (int day = FIRST_DAY; day <= LAST_DAY; day += 3) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            int monthIndex = IstDate.monthIndex(day);
+            assertEquals(date.getYear() * 12 + date.getMonthValue() - 1, monthIndex);
+            assertEquals(date.withDayOfMonth(1).toEpochDay(), IstDate.monthStart(monthIndex));
+            assertEquals(date.withDayOfMonth(date.lengthOfMonth()).toEpochDay(), IstDate.monthEnd(monthIndex));
+            assertEquals(date.plusMonths(1).withDayOfMonth(1).toEpochDay(), IstDate.nextMonth(day));
+            for (int months : new int[]{1, 6, 11, 12, 13, 120}) {
+                assertEquals(date.minusMonths(months).toEpochDay(), IstDate.minusMonths(day, months));
+                assertEquals(date.plusMonths(months).toEpochDay(), IstDate.plusMonths(day, months));
+            }
+        }
+    }
+
+    @Test
+    void holdingPeriodsAndFinancialYearsMatchLocalDate() {
+        for (int day = FIRST_DAY; day <= LAST_DAY; day += 5) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            // plusOneYear is the first day ChronoUnit.YEARS counts a full year, so 29 Feb maps to 1 Mar.
+            int longTermFrom = IstDate.plusOneYear(day);
+            assertEquals(1, ChronoUnit.YEARS.between(date, LocalDate.ofEpochDay(longTermFrom)));
+            assertEquals(0, ChronoUnit.YEARS.between(date, LocalDate.ofEpochDay(longTermFrom - 1)));
+            int financialYear = date.getMonthValue() >= 4 ? date.getYear() : date.getYear() - 1;
+            assertEquals(financialYear, IstDate.financialYear(day));
+            for (int later : new int[]{day + 364, day + 365, day + 366}) {
+                boolean expected = ChronoUnit.YEARS.between(date, LocalDate.ofEpochDay(later)) >= 1;
+                assertEquals(expected, IstDate.isOneYearOrMoreOld(day, later));
+            }
+        }
+    }
+
+    @Test
+    void leapDayHoldingsTurnOneYearOldOnTheFirstOfMarch() {
+        int leapDay = IstDate.of(2024, 2, 29);
+        assertEquals(IstDate.of(2025, 3, 1), IstDate.plusOneYear(leapDay));
+        assertFalse(IstDate.isOneYearOrMoreOld(leapDay, IstDate.of(2025, 2, 28)));
+        assertTrue(IstDate.isOneYearOrMoreOld(leapDay, IstDate.of(2025, 3, 1)));
+    }
+
+    @Test
+    void epochSecondsMatchKolkataZone() {
+        // India used other offsets until 1945, so the fixed +05:30 only holds from 1946 on.
+        int first = (int) LocalDate.of(1946, 1, 1).toEpochDay();
+        for (int day = first; day <= LAST_DAY; day += 7) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            long midnight = date.atStartOfDay(IST).toEpochSecond();
+            assertEquals(midnight, IstDate.toEpochSecond(day));
+            assertEquals(day, IstDate.fromEpochSecond(midnight));
+            assertEquals(day, IstDate.fromEpochSecond(midnight + 86_399));
+            assertEquals(day - 1, IstDate.fromEpochSecond(midnight - 1));
+        }
+    }
+
+    @Test
+    void parseRejectsInvalidDates() {
+        for (String invalid : new String[]{null, "", "2024-01-01", "1-1-2024", "32-01-2024", "29-02-2023", "00-01-2024", "01-13-2024", "0a-01-2024"}) {
+            assertThrows(IllegalArgumentException.class, () -> IstDate.parse(invalid));
+        }
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), IstDate.parse("29-02-2024"));
+    }
+}
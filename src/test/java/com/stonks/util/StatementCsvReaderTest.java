@@ -0,0 +1,169 @@
+package com.stonks.util;
+
+import com.stonks.util.StatementCsvReader.StatementRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementCsvReaderTest {
+
+    @Test
+    void skipsThePreambleAndMapsTheHeader() throws IOException {
+        List<StatementRow> rows = read("""
+                Consolidated Account Statement
+                Investor,A. Investor
+                PAN,ABCDE1234F
+
+                Scheme Code,Scheme Name,Transaction Date,Transaction Type,Amount,Units
+                120503,Axis Bluechip,05-01-2024,Purchase,5000,123.456
+                """);
+        assertEquals(1, rows.size());
+        StatementRow row = rows.get(0);
+        assertEquals(6, row.getLineNumber());
+        assertEquals("120503", row.getSchemeCode());
+        assertEquals("Axis Bluechip", row.getFundName());
+        assertEquals("05-01-2024", row.getDate());
+        assertEquals("Purchase", row.getTransactionType());
+        assertEquals("5000", row.getAmount());
+        assertEquals("123.456", row.getUnits());
+        assertNull(row.getError());
+    }
+
+    @Test
+    void readsHeaderAliasesInAnyOrder() throws IOException {
+        List<StatementRow> rows = read("""
+                Units Allotted,Txn Type,AMFI Code,Trade Date,Amount (INR),Fund Name
+                10.5,Redemption,118989,31-03-2024,2000,HDFC Mid-Cap
+                """);
+        StatementRow row = rows.get(0);
+        assertEquals("118989", row.getSchemeCode());
+        assertEquals("HDFC Mid-Cap", row.getFundName());
+        assertEquals("31-03-2024", row.getDate());
+        assertEquals("Redemption", row.getTransactionType());
+        assertEquals("2000", row.getAmount());
+        assertEquals("10.5", row.getUnits());
+    }
+
+    @Test
+    void prefersTheMostSpecificAlias() throws IOException {
+        // NAV Date and Value are only fallbacks for the transaction date and amount.
+        StatementRow row = read("""
+                NAV Date,Code,Value,Type,Transaction Date,Amount
+                01-01-2024,120503,999,Purchase,02-01-2024,5000
+                """).get(0);
+        assertEquals("02-01-2024", row.getDate());
+        assertEquals("5000", row.getAmount());
+
+        row = read("""
+                NAV Date,Code,Value,Type
+                01-01-2024,120503,999,Purchase
+                """).get(0);
+        assertEquals("01-01-2024", row.getDate());
+        assertEquals("999", row.getAmount());
+    }
+
+    @Test
+    void rejectsInputWithoutAHeader() {
+        assertThrows(IllegalArgumentException.class, () -> read("""
+                Scheme Name,Amount
+                Axis Bluechip,5000
+                """));
+    }
+
+    @Test
+    void handlesQuotedFields() throws IOException {
+        List<StatementRow> rows = read("""
+                Scheme Code,Scheme Name,Date,Type,Amount,Units
+                120503,"Axis Bluechip Fund, Direct Growth",05-01-2024,Purchase,"5,000.00",10
+                120504,"The ""Best"" Fund",06-01-2024,Purchase,100,1
+                120505,"Multi
+                Line Fund",07-01-2024,Purchase,200,2
+                120506,Last,08-01-2024,Purchase,300,3
+                """);
+        assertEquals(4, rows.size());
+        assertEquals("Axis Bluechip Fund, Direct Growth", rows.get(0).getFundName());
+        assertEquals("5,000.00", rows.get(0).getAmount());
+        assertEquals("The \"Best\" Fund", rows.get(1).getFundName());
+        assertEquals("Multi\nLine Fund", rows.get(2).getFundName());
+        assertEquals("07-01-2024", rows.get(2).getDate());
+        assertEquals(6, rows.get(3).getLineNumber());
+        assertEquals("120506", rows.get(3).getSchemeCode());
+    }
+
+    @Test
+    void skipsBlankRowsAndTrimsValues() throws IOException {
+        List<StatementRow> rows = read("""
+                Scheme Code,Scheme Name,Date,Type,Amount,Units
+                 120503 , Axis ,05-01-2024,Purchase,,
+                ,,,,,
+
+                120504,HDFC,06-01-2024,Purchase,100,1
+                """);
+        assertEquals(2, rows.size());
+        assertEquals("120503", rows.get(0).getSchemeCode());
+        assertEquals("Axis", rows.get(0).getFundName());
+        assertNull(rows.get(0).getAmount());
+        assertNull(rows.get(0).getUnits());
+        assertEquals(5, rows.get(1).getLineNumber());
+    }
+
+    @Test
+    void unbalancedQuoteFailsOnlyItsRow() throws IOException {
+        StringBuilder csv = new StringBuilder("Scheme Code,Scheme Name,Date,Type,Amount,Units\n");
+        csv.append("120503,\"Broken,05-01-2024,Purchase,100,1\n");
+        for (int i = 0; i < StatementCsvReader.MAX_RECORD_LINES + 5; i++) {
+            csv.append(120600 + i).append(",Fund ").append(i).append(",05-01-2024,Purchase,100,1\n");
+        }
+        List<StatementRow> rows = read(csv.toString());
+
+        StatementRow broken = rows.get(0);
+        assertEquals(2, broken.getLineNumber());
+        assertNotNull(broken.getError());
+        assertNull(broken.getSchemeCode());
+
+        // Reading resumes on the line after the broken one.
+        assertEquals(StatementCsvReader.MAX_RECORD_LINES + 6, rows.size());
+        for (int i = 1; i < rows.size(); i++) {
+            assertNull(rows.get(i).getError());
+            assertEquals(String.valueOf(120600 + i - 1), rows.get(i).getSchemeCode());
+            assertEquals(i + 2, rows.get(i).getLineNumber());
+        }
+    }
+
+    @Test
+    void unbalancedQuoteAtEndOfInputFailsOnlyItsRow() throws IOException {
+        List<StatementRow> rows = read("""
+                Scheme Code,Scheme Name,Date,Type,Amount,Units
+                120503,Axis,05-01-2024,Purchase,100,1
+                120504,"Broken,06-01-2024,Purchase,100,1
+                120505,HDFC,07-01-2024,Purchase,100,1
+                """);
+        assertEquals(3, rows.size());
+        assertEquals("120503", rows.get(0).getSchemeCode());
+        assertTrue(rows.get(1).getError().contains("end of the file"));
+        assertEquals(3, rows.get(1).getLineNumber());
+        assertEquals("120505", rows.get(2).getSchemeCode());
+        assertEquals(4, rows.get(2).getLineNumber());
+    }
+
+    private static List<StatementRow> read(String csv) throws IOException {
+        List<StatementRow> rows = new ArrayList<>();
+        try (StatementCsvReader reader = new StatementCsvReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)))) {
+            StatementRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,104 @@
+package com.stonks.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XirrUtilsTest {
+
+    // Microsoft's XIRR documentation example; Excel returns 0.373362535.
+    private static final double[] EXCEL_AMOUNTS = {-10000, 2750, 4250, 3250, 2750};
+    private static final int[] EXCEL_DAYS = {
+            IstDate.of(2008, 1, 1), IstDate.of(2008, 3, 1), IstDate.of(2008, 10, 30), IstDate.of(2009, 2, 15), IstDate.of(2009, 4, 1)};
+
+    @Test
+    void matchesExcelExample() {
+        assertEquals(0.3733625335, XirrUtils.solve(EXCEL_AMOUNTS, EXCEL_DAYS, 5, 0.10), 1e-9);
+    }
+
+    @Test
+    void listApiMatchesExcelExample() {
+        List<Long> dates = new java.util.ArrayList<>();
+        List<Double> flows = new java.util.ArrayList<>();
+        for (int i = 0; i < EXCEL_DAYS.length; i++) {
+            dates.add(IstDate.toEpochSecond(EXCEL_DAYS[i]));
+            flows.add(EXCEL_AMOUNTS[i]);
+        }
+        assertEquals(0.3733625335, XirrUtils.calculateXIRR(flows, dates), 1e-9);
+    }
+
+    @Test
+    void totalLossConvergesNearMinusOne() {
+        // 1000 invested, 1 returned a year later: (1 / 1000) - 1.
+        double[] amounts = {-1000, 1};
+        int[] days = {IstDate.of(2023, 1, 1), IstDate.of(2024, 1, 1)};
+        double rate = XirrUtils.solve(amounts, days, 2, 0.10);
+        assertEquals(Math.pow(0.001, 365.0 / (days[1] - days[0])) - 1, rate, 1e-9);
+    }
+
+    @Test
+    void fallsBackToBrentWhenNewtonLeavesTheDomain() {
+        // From 10%, the first Newton step on -1000 + 1 / (1 + r)^t lands far below -100%, so only
+        // the bracketed Brent search can find the root.
+        double[] amounts = {-1000, 1};
+        int[] days = {0, 365};
+        double npvAtGuess = -1000 + 1 / 1.1;
+        double derivativeAtGuess = -1 / (1.1 * 1.1);
+        assertTrue(0.1 - npvAtGuess / derivativeAtGuess <= -1.0);
+
+        double rate = XirrUtils.solve(amounts, days, 2, 0.10);
+        assertEquals(-0.999, rate, 1e-9);
+    }
+
+    @Test
+    void flowsOfOneSignHaveNoRate() {
+        int[] days = {IstDate.of(2023, 1, 1), IstDate.of(2023, 6, 1), IstDate.of(2024, 1, 1)};
+        assertTrue(Double.isNaN(XirrUtils.solve(new double[]{-100, -200, -300}, days, 3, 0.10)));
+        assertTrue(Double.isNaN(XirrUtils.solve(new double[]{100, 200, 300}, days, 3, 0.10)));
+        assertTrue(Double.isNaN(XirrUtils.solve(new double[]{-100}, days, 1, 0.10)));
+    }
+
+    @Test
+    void warmStartAgreesWithColdStart() {
+        Random random = new Random(42);
+        for (int ledger = 0; ledger < 200; ledger++) {
+            int months = 12 + random.nextInt(120);
+            double[] amounts = new double[months + 1];
+            int[] days = new int[months + 1];
+            int start = IstDate.of(2012, 1, 5);
+            double value = 0.0;
+            double monthlyGrowth = -0.02 + 0.04 * random.nextDouble();
+            for (int m = 0; m < months; m++) {
+                double sip = 1000 + random.nextInt(9000);
+                amounts[m] = -sip;
+                days[m] = IstDate.plusMonths(start, m);
+                value = (value + sip) * (1 + monthlyGrowth);
+            }
+            amounts[months] = value;
+            days[months] = IstDate.plusMonths(start, months);
+
+            double cold = XirrUtils.solve(amounts, days, months + 1, 0.10);
+            double warm = XirrUtils.solve(amounts, days, months + 1, cold + 0.05);
+            assertTrue(Double.isFinite(cold));
+            assertEquals(cold, warm, 1e-9 * (1 + Math.abs(cold)));
+        }
+    }
+
+    @Test
+    void prefixSolvesAgreeWithTheirOwnLedgers() {
+        // count limits the solve to a prefix of the arrays, as the rolling history relies on.
+        double[] amounts = {-10000, 2750, 4250, 3250, 2750, -99999};
+        int[] days = {EXCEL_DAYS[0], EXCEL_DAYS[1], EXCEL_DAYS[2], EXCEL_DAYS[3], EXCEL_DAYS[4], IstDate.of(2010, 1, 1)};
+        assertEquals(0.3733625335, XirrUtils.solve(amounts, days, 5, 2.0), 1e-9);
+    }
+
+    @Test
+    void rejectsMismatchedLists() {
+        assertThrows(IllegalArgumentException.class, () -> XirrUtils.calculateXIRR(List.of(-1.0, 2.0), List.of(0L)));
+    }
+}